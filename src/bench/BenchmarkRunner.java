@@ -0,0 +1,23 @@
+package bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkRunner {
+    /**
+     * Runs every benchmark whose name matches the first argument (all of them
+     * by default) and writes the results as JSON to the second argument
+     * (bench_output.json by default), so runs can be compared across changes.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "bench\\..*")
+                .resultFormat(ResultFormatType.JSON)
+                .result(args.length > 1 ? args[1] : "bench_output.json")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,137 @@
+package bench;
+
+import main.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static main.Sos.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+    @Param({"ARRAY_GRID", "BIT_GRID", "CHUNKED_GRID"})
+    public String grid;
+
+    @Param({"15"})
+    public int length;
+
+    private Sos half;
+    private Sos empty;
+    private Sos full;
+    private int[] cells;
+    private int[] moves;
+    private final int[] groupSizes = new int[2];
+    private int next;
+
+    /**
+     * Sets up an empty, a half-filled and a completely filled board.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        int type = grid.equals("BIT_GRID") ? BIT_GRID
+                : grid.equals("CHUNKED_GRID") ? CHUNKED_GRID : ARRAY_GRID;
+        SplittableRandom random = new SplittableRandom(1);
+        empty = newGame(type);
+        half = newGame(type);
+        fill(half, length * length / 2, random);
+        full = newGame(type);
+        fill(full, length * length, random);
+
+        // Empty cells of the half-filled board, for play/undo cycles
+        cells = new int[length * length];
+        int count = 0;
+        for (int r = 0; r < length; r++) {
+            for (int c = 0; c < length; c++) {
+                if (half.getCell(c, r) == EMPTY) {
+                    cells[count++] = r * length + c;
+                }
+            }
+        }
+        cells = Arrays.copyOf(cells, count);
+        moves = new int[2 * length * length];
+    }
+
+    private Sos newGame(int type) {
+        Sos game = new Sos(type);
+        game.reset(length);
+        return game;
+    }
+
+    private static void fill(Sos game, int moves, SplittableRandom random) {
+        for (int i = 0; i < moves && !game.gameIsOver(); i++) {
+            int move = RandomPlayer.randomMove(game, random);
+            game.playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+        }
+    }
+
+    @Benchmark
+    public int additionalSosOCenter() {
+        return half.getAdditionalSOS(length / 2, length / 2, O);
+    }
+
+    @Benchmark
+    public int additionalSosOEdge() {
+        return half.getAdditionalSOS(0, length / 2, O);
+    }
+
+    @Benchmark
+    public int additionalSosSCenter() {
+        return half.getAdditionalSOS(length / 2, length / 2, S);
+    }
+
+    @Benchmark
+    public int additionalSosSEdge() {
+        return half.getAdditionalSOS(0, length / 2, S);
+    }
+
+    @Benchmark
+    public void additionalSosWholeBoard(Blackhole blackhole) {
+        for (int r = 0; r < length; r++) {
+            for (int c = 0; c < length; c++) {
+                blackhole.consume(half.getAdditionalSOS(c, r, O));
+                blackhole.consume(half.getAdditionalSOS(c, r, S));
+            }
+        }
+    }
+
+    @Benchmark
+    public int generateMovesHalf() {
+        return half.generateMoves(moves);
+    }
+
+    @Benchmark
+    public int generateOrderedMovesHalf() {
+        return half.generateOrderedMoves(moves, groupSizes);
+    }
+
+    @Benchmark
+    public boolean possibleSosEmpty() {
+        return empty.possibleSOS();
+    }
+
+    @Benchmark
+    public boolean possibleSosHalf() {
+        return half.possibleSOS();
+    }
+
+    @Benchmark
+    public boolean possibleSosFull() {
+        return full.possibleSOS();
+    }
+
+    @Benchmark
+    public boolean playAndUndo() {
+        int cell = cells[next];
+        next = next + 1 == cells.length ? 0 : next + 1;
+        half.playMove(cell % length, cell / length, (cell & 1) == 0 ? S : O);
+        return half.retractMove();
+    }
+}
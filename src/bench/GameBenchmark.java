@@ -0,0 +1,43 @@
+package bench;
+
+import main.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+    @Param({"3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15"})
+    public int length;
+
+    @Param({"ARRAY_GRID", "BIT_GRID"})
+    public String grid;
+
+    private Sos game;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        game = new Sos(grid.equals("BIT_GRID") ? Sos.BIT_GRID : Sos.ARRAY_GRID);
+        random = new SplittableRandom(1);
+    }
+
+    /**
+     * Plays one complete game of random moves.
+     */
+    @Benchmark
+    public int randomGame() {
+        game.reset(length);
+        while (!game.gameIsOver()) {
+            int move = RandomPlayer.randomMove(game, random);
+            game.playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+        }
+        return game.getP1Points() - game.getP2Points();
+    }
+}
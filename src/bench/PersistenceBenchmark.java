@@ -0,0 +1,145 @@
+package bench;
+
+import main.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves and loads through SosIterator.FILE_PATH, through a temporary file
+ * in the binary format, through a journal and through a save store, both in
+ * temporary directories. The CSV file's contents are put back once the
+ * benchmark finishes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark {
+    @Param({"3", "9", "15"})
+    public int length;
+
+    private Sos saved;
+    private Sos loaded;
+    private Path backup;
+    private Path binary;
+    private Sos journaled;
+    private Path journalDirectory;
+    private SaveStore store;
+    private Path storeDirectory;
+    private int slot;
+    public static final int STORE_SLOTS = 256;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        backup = Files.createTempFile("gamestate", ".csv");
+        Path file = Paths.get(SosIterator.FILE_PATH);
+        if (Files.exists(file)) {
+            Files.copy(file, backup, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // Fill all but one cell so the game is not over and can be saved
+        saved = new Sos(Sos.BIT_GRID);
+        saved.reset(length);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < length * length - 1; i++) {
+            int move = RandomPlayer.randomMove(saved, random);
+            saved.playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+        }
+        loaded = new Sos(Sos.BIT_GRID);
+        binary = Files.createTempFile("gamestate", ".sos");
+
+        journaled = new Sos(saved);
+        journalDirectory = Files.createTempDirectory("journal");
+        journaled.setJournal(new GameJournal(journalDirectory.resolve("journal.sos"),
+                journalDirectory.resolve("journal.log"), GameJournal.DEFAULT_COMPACTION_RECORDS));
+        journaled.saveGame();
+
+        storeDirectory = Files.createTempDirectory("saves");
+        store = new SaveStore(storeDirectory);
+        for (int i = 0; i < STORE_SLOTS; i++) {
+            saved.saveGame(store, i, "Game " + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.copy(backup, Paths.get(SosIterator.FILE_PATH), StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(backup);
+        Files.delete(binary);
+        journaled.setJournal(null);
+        deleteDirectory(journalDirectory);
+        store.close();
+        deleteDirectory(storeDirectory);
+    }
+
+    @Benchmark
+    public void save() {
+        saved.saveGame();
+    }
+
+    @Benchmark
+    public int saveAndLoad() {
+        saved.saveGame();
+        loaded.loadGame();
+        return loaded.getLength();
+    }
+
+    @Benchmark
+    public void saveBinary() {
+        saved.saveBinaryGame(binary);
+    }
+
+    @Benchmark
+    public int saveAndLoadBinary() {
+        saved.saveBinaryGame(binary);
+        loaded.loadGame(binary);
+        return loaded.getLength();
+    }
+
+    /**
+     * Two autosaves as the UI makes them: one after an undo, one after a redo.
+     * Each appends a record to the journal, and every so often a save writes
+     * a snapshot instead.
+     */
+    @Benchmark
+    public void undoRedoJournaled() {
+        journaled.undoMove();
+        journaled.saveGame();
+        journaled.redoMove();
+        journaled.saveGame();
+    }
+
+    /**
+     * Loads the slots of a store holding STORE_SLOTS games in turn.
+     */
+    @Benchmark
+    public int loadSlot() {
+        slot = (slot + 1) % STORE_SLOTS;
+        loaded.loadGame(store, slot);
+        return loaded.getLength();
+    }
+
+    /**
+     * Deletes a directory and the files in it.
+     *
+     * @param directory the directory to delete
+     * @throws IOException if a file cannot be deleted
+     */
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+}
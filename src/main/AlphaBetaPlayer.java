@@ -0,0 +1,394 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static main.Sos.*;
+
+public class AlphaBetaPlayer implements Strategy {
+    private final long timeBudget;
+    private final long nodeBudget;
+    private final TranspositionTable table;
+    private final AtomicBoolean stop;
+    private final int helper;
+    private int[][] moveLists;
+    private long deadline;
+    private boolean aborted;
+    private long nodes;
+    private long elapsed;
+    private int completedDepth;
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 1000;
+    // A budget that never runs out
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    public static final int DEFAULT_TABLE_MEGABYTES = 16;
+    // The clock is checked once every CHECK_INTERVAL + 1 nodes
+    private static final int CHECK_INTERVAL = 1023;
+    private static final int INFINITY = 1 << 20;
+
+    /**
+     * Constructor that creates a player with the default time budget.
+     */
+    public AlphaBetaPlayer() {
+        this(DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * Constructor that creates a player which spends at most the given time
+     * choosing each move.
+     *
+     * @param timeBudgetMillis the time budget per move in milliseconds
+     */
+    public AlphaBetaPlayer(long timeBudgetMillis) {
+        this(timeBudgetMillis, new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * Constructor that creates a player which spends at most the given time
+     * choosing each move and remembers searched positions in the given table.
+     *
+     * @param timeBudgetMillis the time budget per move in milliseconds
+     * @param table            the transposition table to use
+     */
+    public AlphaBetaPlayer(long timeBudgetMillis, TranspositionTable table) {
+        this(timeBudgetMillis, table, new AtomicBoolean(), 0);
+    }
+
+    /**
+     * Constructor for one of several players searching the same position in
+     * parallel and sharing a table. Helper 0 is the main player; other helpers
+     * start from a rotated move order, and odd helpers only search even depths,
+     * so that the threads spread out over different parts of the tree.
+     *
+     * @param timeBudgetMillis the time budget per move in milliseconds
+     * @param table            the transposition table shared by all players
+     * @param stop             set to true to stop the search early
+     * @param helper           the index of this player among the players
+     */
+    public AlphaBetaPlayer(long timeBudgetMillis, TranspositionTable table,
+                           AtomicBoolean stop, int helper) {
+        this(timeBudgetMillis, UNLIMITED, table, stop, helper);
+    }
+
+    /**
+     * Constructor that also limits the number of positions visited for each
+     * move. A search stopped only by its node budget does not depend on the
+     * clock, so a single player given an UNLIMITED time budget chooses the
+     * same moves however fast or busy the machine is.
+     *
+     * @param timeBudgetMillis the time budget per move in milliseconds, or
+     *                         UNLIMITED
+     * @param nodeBudget       the number of nodes to search per move, or
+     *                         UNLIMITED
+     * @param table            the transposition table shared by all players
+     * @param stop             set to true to stop the search early
+     * @param helper           the index of this player among the players
+     */
+    public AlphaBetaPlayer(long timeBudgetMillis, long nodeBudget, TranspositionTable table,
+                           AtomicBoolean stop, int helper) {
+        timeBudget = timeBudgetMillis == UNLIMITED ? UNLIMITED : timeBudgetMillis * 1_000_000;
+        this.nodeBudget = nodeBudget;
+        this.table = table;
+        this.stop = stop;
+        this.helper = helper;
+        moveLists = new int[0][];
+    }
+
+    /**
+     * Chooses a move with iterative-deepening alpha-beta search. Each iteration
+     * searches one move deeper than the last, until the time or node budget
+     * runs out or the game tree is searched to the end. Moves are made and unmade on the
+     * given game with playMove and retractMove.
+     *
+     * @param game the game to choose a move in, must not be over
+     * @return the chosen move, packed with Move.pack
+     */
+    @Override
+    public int chooseMove(Sos game) {
+        long start = System.nanoTime();
+        deadline = timeBudget == UNLIMITED ? UNLIMITED : start + timeBudget;
+        aborted = false;
+        nodes = 0;
+        completedDepth = 0;
+        if (helper == 0) {
+            table.newSearch();
+        }
+
+        int emptyCells = game.getLength() * game.getLength() - game.getMoveCount();
+        ensureMoveList(0, game);
+        int[] rootMoves = moveLists[0];
+        int count = generateMoves(game, rootMoves);
+        int bestMove = rootMoves[0];
+        if (helper > 0) {
+            rotate(rootMoves, count, helper % count);
+        }
+
+        int step = 1 + (helper & 1);
+        for (int depth = step; depth <= emptyCells && !aborted; depth += step) {
+            ensureMoveList(depth, game);
+            int best = searchRoot(game, depth, rootMoves, count);
+            // A partial iteration is still usable once the previous best move,
+            // which is always searched first, has been searched.
+            if (best > 0 || !aborted) {
+                int move = rootMoves[best];
+                System.arraycopy(rootMoves, 0, rootMoves, 1, best);
+                rootMoves[0] = move;
+                bestMove = move;
+            }
+            if (!aborted) {
+                completedDepth = depth;
+            }
+        }
+
+        elapsed = System.nanoTime() - start;
+        return bestMove;
+    }
+
+    /**
+     * Searches every root move to the given depth.
+     *
+     * @param game  the game to search
+     * @param depth the number of moves to search ahead
+     * @param moves the root moves, best first
+     * @param count the number of root moves
+     * @return the index in moves of the best move found
+     */
+    private int searchRoot(Sos game, int depth, int[] moves, int count) {
+        boolean p1 = game.getCurrentPlayer();
+        int alpha = -INFINITY;
+        int best = 0;
+        for (int i = 0; i < count; i++) {
+            int value = searchMove(game, moves[i], p1, depth - 1, alpha, INFINITY, 1);
+            if (aborted) {
+                break;
+            }
+            if (value > alpha) {
+                alpha = value;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Makes a move, searches the resulting position and unmakes the move. A
+     * player who scores moves again, so the child's value is only negated
+     * when the turn has passed to the other player.
+     *
+     * @param game  the game to search
+     * @param move  the move to make
+     * @param p1    true if Player 1 is making the move
+     * @param depth the remaining search depth after this move
+     * @param alpha the lower bound for the mover
+     * @param beta  the upper bound for the mover
+     * @param ply   the distance of the resulting position from the root
+     * @return the value of the move for the mover
+     */
+    private int searchMove(Sos game, int move, boolean p1, int depth, int alpha, int beta, int ply) {
+        game.playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+        int value;
+        if (game.getCurrentPlayer() == p1) {
+            value = search(game, depth, alpha, beta, ply);
+        } else {
+            value = -search(game, depth, -beta, -alpha, ply);
+        }
+        game.retractMove();
+        return value;
+    }
+
+    /**
+     * Negamax alpha-beta search.
+     *
+     * @param game  the game to search
+     * @param depth the number of moves to search ahead
+     * @param alpha the lower bound for the player to move
+     * @param beta  the upper bound for the player to move
+     * @param ply   the distance of this position from the root
+     * @return the value of the position for the player to move
+     */
+    private int search(Sos game, int depth, int alpha, int beta, int ply) {
+        if (++nodes > nodeBudget
+                || (nodes & CHECK_INTERVAL) == 0 && (System.nanoTime() > deadline || stop.get())) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (game.gameIsOver()) {
+            return scoreDifference(game);
+        }
+        if (depth == 0) {
+            return evaluate(game);
+        }
+
+        // The table stores the points still to be won, which do not depend on
+        // the score, so positions reached with different scores share entries.
+        int difference = scoreDifference(game);
+        long key = game.getPositionHash();
+        long entry = table.probe(key);
+        int hashMove = 0;
+        if (entry != 0) {
+            hashMove = TranspositionTable.moveOf(entry);
+            if (TranspositionTable.depthOf(entry) >= depth) {
+                int value = TranspositionTable.valueOf(entry) + difference;
+                int bound = TranspositionTable.boundOf(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && value >= beta)
+                        || (bound == TranspositionTable.UPPER && value <= alpha)) {
+                    return value;
+                }
+            }
+        }
+
+        boolean p1 = game.getCurrentPlayer();
+        int[] moves = moveLists[ply];
+        int count = generateMoves(game, moves);
+        moveToFront(moves, count, hashMove);
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = 0;
+        for (int i = 0; i < count; i++) {
+            int value = searchMove(game, moves[i], p1, depth - 1, alpha, beta, ply + 1);
+            if (aborted) {
+                return 0;
+            }
+            if (value > best) {
+                best = value;
+                bestMove = moves[i];
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = TranspositionTable.EXACT;
+        if (best <= originalAlpha) {
+            bound = TranspositionTable.UPPER;
+        } else if (best >= beta) {
+            bound = TranspositionTable.LOWER;
+        }
+        table.store(key, best - difference, depth, bound, bestMove);
+        return best;
+    }
+
+    /**
+     * Moves the given move to the front of the list, keeping the order of the
+     * others. Does nothing if the move is not in the list.
+     *
+     * @param moves the move list
+     * @param count the number of moves in the list
+     * @param move  the move to search first
+     */
+    private static void moveToFront(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the score difference from the point of view of the player to move.
+     *
+     * @param game the game to score
+     * @return the player to move's points minus the opponent's points
+     */
+    private static int scoreDifference(Sos game) {
+        int difference = game.getP1Points() - game.getP2Points();
+        return game.getCurrentPlayer() ? difference : -difference;
+    }
+
+    /**
+     * Estimates the value of a position for the player to move: the score
+     * difference plus one point for every cell where they can score right away.
+     *
+     * @param game the game to evaluate
+     * @return the estimated value for the player to move
+     */
+    private static int evaluate(Sos game) {
+        return scoreDifference(game) + game.getScoringCellCount();
+    }
+
+    /**
+     * Writes every legal move into the buffer: scoring moves first, then
+     * moves that leave the opponent no SOS.
+     *
+     * @param game  the game to generate moves for
+     * @param moves buffer of at least 2 * getLength() * getLength() moves
+     * @return the number of moves written
+     */
+    private static int generateMoves(Sos game, int[] moves) {
+        int count = game.generateOrderedMoves(moves, null);
+        // The table and the chosen move hold the cell and piece only
+        for (int i = 0; i < count; i++) {
+            moves[i] = Move.placementOf(moves[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Rotates the first count moves of the list left by the given distance.
+     *
+     * @param moves    the move list
+     * @param count    the number of moves in the list
+     * @param distance the number of places to rotate by
+     */
+    private static void rotate(int[] moves, int count, int distance) {
+        for (int i = 0; i < distance; i++) {
+            int first = moves[0];
+            System.arraycopy(moves, 1, moves, 0, count - 1);
+            moves[count - 1] = first;
+        }
+    }
+
+    /**
+     * Makes sure there is a move buffer for every ply up to the given ply.
+     * Buffers are kept between searches so the search itself never allocates.
+     *
+     * @param ply  the deepest ply that needs a buffer
+     * @param game the game being searched
+     */
+    private void ensureMoveList(int ply, Sos game) {
+        int size = 2 * game.getLength() * game.getLength();
+        if (ply >= moveLists.length) {
+            int[][] grown = new int[Math.max(ply + 1, 2 * moveLists.length)][];
+            System.arraycopy(moveLists, 0, grown, 0, moveLists.length);
+            moveLists = grown;
+        }
+        for (int i = 0; i <= ply; i++) {
+            if (moveLists[i] == null || moveLists[i].length != size) {
+                moveLists[i] = new int[size];
+            }
+        }
+    }
+
+    /**
+     * Gets the number of positions visited while choosing the last move.
+     *
+     * @return the number of nodes searched
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets the search speed of the last move choice.
+     *
+     * @return nodes searched per second
+     */
+    public double getNodesPerSecond() {
+        return elapsed == 0 ? 0 : nodes * 1e9 / elapsed;
+    }
+
+    /**
+     * Gets the deepest iteration that was searched completely for the last move.
+     *
+     * @return the completed search depth in moves
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+}
@@ -0,0 +1,184 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class ArchiveStatistics {
+    // Results by board length
+    private final long[] games = new long[Sos.MAX_LENGTH + 1];
+    private final long[] p1Wins = new long[Sos.MAX_LENGTH + 1];
+    private final long[] p2Wins = new long[Sos.MAX_LENGTH + 1];
+    private final long[] p1Points = new long[Sos.MAX_LENGTH + 1];
+    private final long[] p2Points = new long[Sos.MAX_LENGTH + 1];
+    // SOS's made by move number, and the number of games reaching it
+    private long[] pointsAtMove = new long[Sos.PREALLOCATED_MOVES];
+    private long[] gamesAtMove = new long[Sos.PREALLOCATED_MOVES];
+    private long totalGames;
+    private long rejected;
+    private long elapsed;
+    // The game records are replayed on to check them, or null to trust them
+    private final Sos game;
+
+    /**
+     * Constructor that trusts the points recorded with each move, which makes
+     * scanning many times faster than replaying every game.
+     */
+    public ArchiveStatistics() {
+        this(false);
+    }
+
+    /**
+     * Constructor that may replay every game through Sos.playMove to check
+     * the records before counting them.
+     *
+     * @param replay true to replay the games, false to trust the records
+     */
+    public ArchiveStatistics(boolean replay) {
+        game = replay ? new Sos(Sos.BIT_GRID) : null;
+    }
+
+    /**
+     * Adds every game in an archive to the statistics. When replaying, games
+     * whose moves do not replay as recorded are counted as rejected instead.
+     *
+     * @param path the archive file
+     * @throws IOException if the archive cannot be read
+     */
+    public void scan(Path path) throws IOException {
+        long start = System.nanoTime();
+        try (GameArchiveReader reader = new GameArchiveReader(path)) {
+            while (reader.next()) {
+                if (game == null || reader.replay(game)) {
+                    add(reader);
+                } else {
+                    rejected++;
+                }
+            }
+        }
+        elapsed += System.nanoTime() - start;
+    }
+
+    /**
+     * Adds a reader's current record to the statistics.
+     *
+     * @param reader the reader
+     */
+    private void add(GameArchiveReader reader) {
+        int count = reader.getMoveCount();
+        if (count > gamesAtMove.length) {
+            int size = Math.max(count, 2 * gamesAtMove.length);
+            pointsAtMove = Arrays.copyOf(pointsAtMove, size);
+            gamesAtMove = Arrays.copyOf(gamesAtMove, size);
+        }
+        int p1 = 0;
+        int p2 = 0;
+        for (int i = 0; i < count; i++) {
+            int move = reader.getMove(i);
+            int points = Move.pointsOf(move);
+            if (Move.isP1TurnOf(move)) {
+                p1 += points;
+            } else {
+                p2 += points;
+            }
+            pointsAtMove[i] += points;
+            gamesAtMove[i]++;
+        }
+
+        int len = reader.getLength();
+        games[len]++;
+        totalGames++;
+        // Unfinished games count as neither player's win
+        if (count == len * len && p1 > p2) {
+            p1Wins[len]++;
+        } else if (count == len * len && p2 > p1) {
+            p2Wins[len]++;
+        }
+        p1Points[len] += p1;
+        p2Points[len] += p2;
+    }
+
+    /**
+     * Gets the number of games on boards of the given length.
+     *
+     * @param len the length of the board's sides
+     * @return the number of games
+     */
+    public long getGames(int len) {
+        return games[len];
+    }
+
+    /**
+     * Gets how much more often Player 1 wins than Player 2 on boards of the
+     * given length.
+     *
+     * @param len the length of the board's sides
+     * @return Player 1's win rate minus Player 2's, from -1 to 1
+     */
+    public double getFirstPlayerAdvantage(int len) {
+        return (p1Wins[len] - p2Wins[len]) / (double) Math.max(games[len], 1);
+    }
+
+    /**
+     * Gets the average number of SOS's made by the move with the given number,
+     * over the games that lasted that long.
+     *
+     * @param i the index of the move, 0 being the first move of a game
+     * @return SOS's per move
+     */
+    public double getSosDensity(int i) {
+        return i < gamesAtMove.length ? pointsAtMove[i] / (double) Math.max(gamesAtMove[i], 1) : 0;
+    }
+
+    /**
+     * Gets the number of games whose moves did not replay as recorded.
+     *
+     * @return the number of rejected games
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Describes the games scanned so far.
+     *
+     * @return results by board length and SOS density by move number
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder(String.format(
+                "games: %d (%,.1f games/sec), rejected: %d%n",
+                totalGames, totalGames * 1e9 / Math.max(elapsed, 1), rejected));
+        report.append("length  games  P1 wins  P2 wins  advantage  average score\n");
+        for (int len = 1; len < games.length; len++) {
+            if (games[len] > 0) {
+                double n = games[len];
+                report.append(String.format("%6d %6d %7.1f%% %7.1f%% %+9.3f  %.2f - %.2f%n", len, games[len],
+                        100 * p1Wins[len] / n, 100 * p2Wins[len] / n, getFirstPlayerAdvantage(len),
+                        p1Points[len] / n, p2Points[len] / n));
+            }
+        }
+        report.append("SOS per move by move number:");
+        for (int i = 0; i < gamesAtMove.length && gamesAtMove[i] > 0; i++) {
+            report.append(i % 10 == 0 ? String.format("%n%5d:", i) : "").append(String.format(" %.3f", getSosDensity(i)));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Scans game archives and prints their statistics.
+     * Arguments: [--replay] archive...
+     */
+    public static void main(String[] args) throws IOException {
+        boolean replay = args.length > 0 && args[0].equals("--replay");
+        if (args.length == (replay ? 1 : 0)) {
+            System.out.println("Usage: ArchiveStatistics [--replay] archive...");
+            return;
+        }
+        ArchiveStatistics statistics = new ArchiveStatistics(replay);
+        for (int i = replay ? 1 : 0; i < args.length; i++) {
+            statistics.scan(Paths.get(args[i]));
+        }
+        System.out.println(statistics.getReport());
+    }
+}
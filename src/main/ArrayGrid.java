@@ -0,0 +1,164 @@
+package main;
+
+import java.util.Arrays;
+
+import static main.Sos.*;
+
+public class ArrayGrid implements Grid {
+    private final int[][] board;
+    // The eight line directions, opposite directions next to each other
+    private static final int[] DIRECTION_COLUMNS = {-1, 1, 0, 0, -1, 1, -1, 1};
+    private static final int[] DIRECTION_ROWS = {0, 0, -1, 1, -1, 1, 1, -1};
+
+    /**
+     * Constructor that creates an empty len-by-len grid.
+     *
+     * @param len the length of each side of the grid
+     */
+    public ArrayGrid(int len) {
+        board = new int[len][len];
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other the grid to copy
+     */
+    private ArrayGrid(ArrayGrid other) {
+        board = new int[other.board.length][];
+        for (int r = 0; r < board.length; r++) {
+            board[r] = other.board[r].clone();
+        }
+    }
+
+    @Override
+    public int getCell(int c, int r) {
+        return board[r][c];
+    }
+
+    @Override
+    public void setCell(int c, int r, int m) {
+        board[r][c] = m;
+    }
+
+    @Override
+    public int getLength() {
+        return board.length;
+    }
+
+    @Override
+    public int[] getFilledCells() {
+        int count = 0;
+        int[] cells = new int[board.length * board.length];
+        for (int r = 0; r < board.length; r++) {
+            for (int c = 0; c < board.length; c++) {
+                if (board[r][c] != EMPTY) {
+                    cells[count++] = r * board.length + c;
+                }
+            }
+        }
+        return Arrays.copyOf(cells, count);
+    }
+
+    @Override
+    public Grid copy() {
+        return new ArrayGrid(this);
+    }
+
+    @Override
+    public int getAdditionalSOS(int c, int r, int m) {
+        int sosCount = 0;
+
+        if (m == O) {
+            // horizontal check
+            if (c - 1 >= 0 && c + 1 < board.length &&
+                    board[r][c - 1] == S && board[r][c + 1] == S) {
+                sosCount++;
+            }
+            // vertical check
+            if (r - 1 >= 0 && r + 1 < board.length &&
+                    board[r - 1][c] == S && board[r + 1][c] == S) {
+                sosCount++;
+            }
+            // diagonals check
+            if (c - 1 >= 0 && c + 1 < board.length && r - 1 >= 0 && r + 1 < board.length) {
+                if (board[r - 1][c - 1] == S && board[r + 1][c + 1] == S) {
+                    sosCount++;
+                }
+                if (board[r - 1][c + 1] == S && board[r + 1][c - 1] == S) {
+                    sosCount++;
+                }
+            }
+        } else {
+            // horizontal check
+            if (c - 2 >= 0 && board[r][c - 2] == S && board[r][c - 1] == O) {
+                sosCount++;
+            }
+            if (c + 2 < board.length && board[r][c + 1] == O && board[r][c + 2] == S) {
+                sosCount++;
+            }
+            // vertical check
+            if (r - 2 >= 0 && board[r - 2][c] == S && board[r - 1][c] == O) {
+                sosCount++;
+            }
+            if (r + 2 < board.length && board[r + 1][c] == O && board[r + 2][c] == S) {
+                sosCount++;
+            }
+            // left diagonals check
+            if (c - 2 >= 0) {
+                // upper left diagonal check
+                if (r - 2 >= 0 && board[r - 2][c - 2] == S && board[r - 1][c - 1] == O) {
+                    sosCount++;
+                }
+                // lower left diagonal check
+                if (r + 2 < board.length && board[r + 2][c - 2] == S && board[r + 1][c - 1] == O) {
+                    sosCount++;
+                }
+            }
+            // right diagonals check
+            if (c + 2 < board.length) {
+                // upper right diagonal check
+                if (r - 2 >= 0 && board[r - 2][c + 2] == S && board[r - 1][c + 1] == O) {
+                    sosCount++;
+                }
+                // lower right diagonal check
+                if (r + 2 < board.length && board[r + 2][c + 2] == S && board[r + 1][c + 1] == O) {
+                    sosCount++;
+                }
+            }
+        }
+
+        return sosCount;
+    }
+
+    @Override
+    public int getGains(int c, int r) {
+        int oCount = 0;
+        int sCount = 0;
+        for (int i = 0; i < DIRECTION_COLUMNS.length; i += 2) {
+            int before = cellOrEmpty(c + DIRECTION_COLUMNS[i], r + DIRECTION_ROWS[i]);
+            int after = cellOrEmpty(c + DIRECTION_COLUMNS[i + 1], r + DIRECTION_ROWS[i + 1]);
+            if (before == S && after == S) {
+                oCount++;
+            }
+            if (before == O && cellOrEmpty(c + 2 * DIRECTION_COLUMNS[i], r + 2 * DIRECTION_ROWS[i]) == S) {
+                sCount++;
+            }
+            if (after == O && cellOrEmpty(c + 2 * DIRECTION_COLUMNS[i + 1], r + 2 * DIRECTION_ROWS[i + 1]) == S) {
+                sCount++;
+            }
+        }
+        return oCount | sCount << S_GAIN_SHIFT;
+    }
+
+    /**
+     * Gets the contents of a cell, reading cells off the grid as empty.
+     *
+     * @param c column to retrieve
+     * @param r row to retrieve
+     * @return Sos.EMPTY, Sos.O or Sos.S
+     */
+    private int cellOrEmpty(int c, int r) {
+        return c >= 0 && c < board.length && r >= 0 && r < board.length ? board[r][c] : EMPTY;
+    }
+}
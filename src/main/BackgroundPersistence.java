@@ -0,0 +1,157 @@
+package main;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public class BackgroundPersistence {
+    private final ExecutorService worker;
+    private final Executor callbacks;
+    // The most recently queued save, while it has not started
+    private Task pending;
+
+    /**
+     * Constructor that starts the background thread that saves and loads.
+     *
+     * @param callbacks runs the callbacks of finished saves and loads, e.g.
+     *                  SwingUtilities::invokeLater to run them on the event
+     *                  dispatch thread
+     */
+    public BackgroundPersistence(Executor callbacks) {
+        this.callbacks = callbacks;
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sos-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a save of a snapshot taken with Sos.snapshotForSave(). Saves and
+     * loads run one at a time, in the order they were queued. If the last
+     * queued save has the same target and has not started, it is replaced by
+     * this one, and its callback is never run.
+     *
+     * @param target   what is saved to; only saves to equal targets are
+     *                 coalesced
+     * @param snapshot the game to save
+     * @param save     saves the snapshot, returning true if it was saved
+     * @param done     is given true if the save succeeded, false if not
+     */
+    public synchronized void save(Object target, Sos snapshot, Predicate<Sos> save, Consumer<Boolean> done) {
+        if (pending != null && pending.target.equals(target)) {
+            snapshot.mergeUnsaved(pending.game);
+            pending.game = snapshot;
+            pending.action = save;
+            pending.saveDone = done;
+            return;
+        }
+        Task task = new Task(target, snapshot, save);
+        task.saveDone = done;
+        pending = task;
+        worker.execute(() -> run(task));
+    }
+
+    /**
+     * Queues a load into a copy taken with Sos.copyWithSaveFiles(). It runs
+     * after every save queued before it.
+     *
+     * @param copy the game to load into
+     * @param load loads into the copy, returning true if a game was loaded
+     * @param done is given the copy if a game was loaded, null if not
+     */
+    public synchronized void load(Sos copy, Predicate<Sos> load, Consumer<Sos> done) {
+        Task task = new Task(null, copy, load);
+        task.loadDone = done;
+        // A later save must not be merged into a save queued before the load
+        pending = null;
+        worker.execute(() -> run(task));
+    }
+
+    /**
+     * Waits until every save and load queued so far has finished. Their
+     * callbacks may not have run yet.
+     */
+    public void flush() {
+        try {
+            worker.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.out.println("The background save thread failed.");
+        }
+    }
+
+    /**
+     * Stops the background thread once the queued saves and loads finish.
+     */
+    public void shutdown() {
+        worker.shutdown();
+    }
+
+    /**
+     * Runs a task on the background thread and hands its result to the
+     * callback executor.
+     *
+     * @param task the task to run
+     */
+    private void run(Task task) {
+        Sos game;
+        Predicate<Sos> action;
+        synchronized (this) {
+            // From here on the task can no longer be coalesced
+            if (pending == task) {
+                pending = null;
+            }
+            game = task.game;
+            action = task.action;
+        }
+
+        boolean succeeded;
+        try {
+            succeeded = action.test(game);
+        } catch (RuntimeException e) {
+            System.out.println("Could not save or load the game: " + e);
+            succeeded = false;
+        }
+
+        boolean result = succeeded;
+        if (task.loadDone != null) {
+            Consumer<Sos> done = task.loadDone;
+            callbacks.execute(() -> done.accept(result ? game : null));
+        } else {
+            Consumer<Boolean> done;
+            synchronized (this) {
+                done = task.saveDone;
+            }
+            callbacks.execute(() -> done.accept(result));
+        }
+    }
+
+    /**
+     * A queued save or load.
+     */
+    private static class Task {
+        private final Object target;
+        private Sos game;
+        private Predicate<Sos> action;
+        private Consumer<Boolean> saveDone;
+        private Consumer<Sos> loadDone;
+
+        /**
+         * Constructor.
+         *
+         * @param target what is saved to, or null for a load
+         * @param game   the game to save or load into
+         * @param action saves or loads the game
+         */
+        private Task(Object target, Sos game, Predicate<Sos> action) {
+            this.target = target;
+            this.game = game;
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+public class BinaryGameFile {
+    private final ByteBuffer buffer;
+    public static final String FILE_PATH = "files/gamestate.sos";
+    public static final int MAGIC = 0x534F5342; // "SOSB"
+    public static final int VERSION = 1;
+    // Header layout; the checksum covers everything except itself
+    private static final int VERSION_OFFSET = 4;
+    private static final int FLAGS_OFFSET = 6;
+    private static final int LENGTH_OFFSET = 8;
+    private static final int P1_POINTS_OFFSET = 12;
+    private static final int P2_POINTS_OFFSET = 16;
+    private static final int PIECE_OFFSET = 20;
+    private static final int MOVE_COUNT_OFFSET = 24;
+    private static final int RECORDED_COUNT_OFFSET = 28;
+    private static final int CHECKSUM_OFFSET = 32;
+    private static final int HEADER_SIZE = 36;
+    private static final int P1_TURN_FLAG = 1;
+
+    /**
+     * Constructor that wraps a buffer holding a whole, already validated file.
+     *
+     * @param contents the file's contents
+     */
+    private BinaryGameFile(ByteBuffer contents) {
+        buffer = contents;
+    }
+
+    /**
+     * Reads a binary game file and checks its header and checksum. The file
+     * is read into memory rather than mapped, so nothing keeps it open
+     * afterwards and it can be overwritten straight away on every platform.
+     *
+     * @param path the file to open
+     * @return the opened file, or null if the file is not a valid binary save
+     */
+    public static BinaryGameFile open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer contents = ByteBuffer.allocate((int) size);
+            while (contents.hasRemaining()) {
+                if (channel.read(contents, contents.position()) < 0) {
+                    return null;
+                }
+            }
+            return wrap(contents);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks the header and checksum of a game encoded in the binary format,
+     * e.g. one read from a SaveStore.
+     *
+     * @param contents the encoded game, from index 0 to its capacity
+     * @return the game, or null if the contents are not a valid binary save,
+     * including one whose checksum matches but whose counts cannot be loaded
+     */
+    public static BinaryGameFile wrap(ByteBuffer contents) {
+        if (contents.capacity() < HEADER_SIZE || contents.getInt(0) != MAGIC
+                || contents.getShort(VERSION_OFFSET) != VERSION) {
+            return null;
+        }
+        int len = contents.getInt(LENGTH_OFFSET);
+        int moveCount = contents.getInt(MOVE_COUNT_OFFSET);
+        int recordedCount = contents.getInt(RECORDED_COUNT_OFFSET);
+        if (len < 1 || len > Move.MAX_COORDINATE + 1 || moveCount < 0
+                || moveCount > recordedCount || recordedCount > len * len) {
+            return null;
+        }
+        long expectedSize = HEADER_SIZE + cellBytes(len) + 4L * recordedCount;
+        if (contents.capacity() != expectedSize || contents.getInt(CHECKSUM_OFFSET) != checksum(contents)) {
+            return null;
+        }
+        return new BinaryGameFile(contents);
+    }
+
+    /**
+     * Returns true if the file starts with the binary save format's magic number.
+     *
+     * @param path the file to check
+     * @return true if the file looks like a binary save
+     */
+    public static boolean isBinary(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            return channel.read(magic, 0) == 4 && magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the given game state to a file in the binary format. Cells take
+     * 2 bits each and moves one int each, as packed in the move history.
+     *
+     * @param path     the file to write
+     * @param board    the current board
+     * @param p1Points the points Player 1 has
+     * @param p2Points the points Player 2 has
+     * @param p1Turn   true if Player 1's turn, false if Player 2's turn
+     * @param piece    the selected piece
+     * @param moves    the moves made in the game thus far, including those
+     *                 that can be redone
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(
+            Path path, Grid board, int p1Points, int p2Points,
+            boolean p1Turn, int piece, MoveHistory moves
+    ) throws IOException {
+        ByteBuffer contents = encode(board, p1Points, p2Points, p1Turn, piece, moves);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+        }
+    }
+
+    /**
+     * Encodes the given game state in the binary format.
+     *
+     * @param board    the current board
+     * @param p1Points the points Player 1 has
+     * @param p2Points the points Player 2 has
+     * @param p1Turn   true if Player 1's turn, false if Player 2's turn
+     * @param piece    the selected piece
+     * @param moves    the moves made in the game thus far
+     * @return a buffer holding the encoded game, ready to be read
+     */
+    public static ByteBuffer encode(
+            Grid board, int p1Points, int p2Points,
+            boolean p1Turn, int piece, MoveHistory moves
+    ) {
+        int len = board.getLength();
+        ByteBuffer contents = ByteBuffer.allocate(HEADER_SIZE + cellBytes(len) + 4 * moves.recordedSize());
+        contents.putInt(MAGIC);
+        contents.putShort((short) VERSION);
+        contents.putShort((short) (p1Turn ? P1_TURN_FLAG : 0));
+        contents.putInt(len);
+        contents.putInt(p1Points);
+        contents.putInt(p2Points);
+        contents.putInt(piece);
+        contents.putInt(moves.size());
+        contents.putInt(moves.recordedSize());
+        contents.putInt(0);
+
+        int packed = 0;
+        int cell = 0;
+        for (int r = 0; r < len; r++) {
+            for (int c = 0; c < len; c++) {
+                packed |= board.getCell(c, r) << (2 * (cell & 3));
+                if ((++cell & 3) == 0) {
+                    contents.put((byte) packed);
+                    packed = 0;
+                }
+            }
+        }
+        if ((cell & 3) != 0) {
+            contents.put((byte) packed);
+        }
+        for (int i = 0; i < moves.recordedSize(); i++) {
+            contents.putInt(moves.get(i));
+        }
+
+        contents.putInt(CHECKSUM_OFFSET, checksum(contents));
+        contents.flip();
+        return contents;
+    }
+
+    /**
+     * Gets the checksum stored in an encoded game, which identifies the saved
+     * state.
+     *
+     * @param contents a game encoded by encode()
+     * @return the stored checksum
+     */
+    public static int checksumOf(ByteBuffer contents) {
+        return contents.getInt(CHECKSUM_OFFSET);
+    }
+
+    /**
+     * Computes the checksum of an encoded game, skipping the checksum field.
+     *
+     * @param contents the encoded game
+     * @return the CRC32 of every other byte
+     */
+    private static int checksum(ByteBuffer contents) {
+        CRC32 crc = new CRC32();
+        ByteBuffer view = contents.duplicate();
+        view.position(0).limit(CHECKSUM_OFFSET);
+        crc.update(view);
+        view.limit(contents.capacity()).position(HEADER_SIZE);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Gets the number of bytes used by the cells of a board.
+     *
+     * @param len the length of the board's sides
+     * @return the number of bytes holding the cells
+     */
+    private static int cellBytes(int len) {
+        return (len * len + 3) / 4;
+    }
+
+    /**
+     * Gets the checksum stored in the file, which identifies the saved state.
+     *
+     * @return the stored checksum
+     */
+    public int getChecksum() {
+        return checksumOf(buffer);
+    }
+
+    /**
+     * Get the length of each side of the saved board.
+     *
+     * @return the length of each side of the board
+     */
+    public int getLength() {
+        return buffer.getInt(LENGTH_OFFSET);
+    }
+
+    /**
+     * Gets the contents of a saved cell.
+     *
+     * @param c column to retrieve
+     * @param r row to retrieve
+     * @return Sos.EMPTY, Sos.O or Sos.S
+     */
+    public int getCell(int c, int r) {
+        int cell = r * getLength() + c;
+        return (buffer.get(HEADER_SIZE + (cell >> 2)) >> (2 * (cell & 3))) & 3;
+    }
+
+    /**
+     * Gets the number of points Player 1 has.
+     *
+     * @return Player 1's points
+     */
+    public int getP1Points() {
+        return buffer.getInt(P1_POINTS_OFFSET);
+    }
+
+    /**
+     * Gets the number of points Player 2 has.
+     *
+     * @return Player 2's points
+     */
+    public int getP2Points() {
+        return buffer.getInt(P2_POINTS_OFFSET);
+    }
+
+    /**
+     * Returns true if it was Player 1's turn when the game was saved.
+     *
+     * @return true if it was Player 1's turn
+     */
+    public boolean isP1Turn() {
+        return (buffer.getShort(FLAGS_OFFSET) & P1_TURN_FLAG) != 0;
+    }
+
+    /**
+     * Gets the piece that was selected when the game was saved.
+     *
+     * @return the selected piece
+     */
+    public int getPiece() {
+        return buffer.getInt(PIECE_OFFSET);
+    }
+
+    /**
+     * Gets the number of moves that had been played.
+     *
+     * @return the number of moves played
+     */
+    public int getMoveCount() {
+        return buffer.getInt(MOVE_COUNT_OFFSET);
+    }
+
+    /**
+     * Gets the number of moves played plus the number that could be redone.
+     *
+     * @return the number of recorded moves
+     */
+    public int getRecordedCount() {
+        return buffer.getInt(RECORDED_COUNT_OFFSET);
+    }
+
+    /**
+     * Gets a recorded move.
+     *
+     * @param i the index of the move, 0 being the first move of the game
+     * @return the move, packed as in the move history
+     */
+    public int getMove(int i) {
+        return buffer.getInt(HEADER_SIZE + cellBytes(getLength()) + 4 * i);
+    }
+}
@@ -0,0 +1,149 @@
+package main;
+
+import static main.Sos.*;
+
+public class BitGrid implements Grid {
+    private final long[] sRows;
+    private final long[] oRows;
+    private final int length;
+    public static final int MAX_LENGTH = 60;
+    // Every row is padded by PADDING empty cells on each side so that
+    // neighbor lookups never need bounds checks.
+    private static final int PADDING = 2;
+    // Moves the S bits of a 5-cell window from positions 0, 2 and 4 onto
+    // the O positions 1, 2 and 3 they pair up with along a line.
+    private static final int[] ALIGN_S = new int[32];
+    // Mirrors a 3-cell window so that opposite ends of a line line up.
+    private static final int[] MIRROR = {0, 4, 2, 6, 1, 5, 3, 7};
+
+    static {
+        for (int w = 0; w < ALIGN_S.length; w++) {
+            ALIGN_S[w] = ((w & 1) << 1) | (w & 4) | ((w >>> 1) & 8);
+        }
+    }
+
+    /**
+     * Constructor that creates an empty len-by-len grid. Each row is stored
+     * as one bit plane for S's and one for O's.
+     *
+     * @param len the length of each side of the grid, at most MAX_LENGTH
+     */
+    public BitGrid(int len) {
+        if (len > MAX_LENGTH) {
+            throw new IllegalArgumentException("BitGrid supports at most " + MAX_LENGTH + " columns");
+        }
+        length = len;
+        sRows = new long[len + 2 * PADDING];
+        oRows = new long[len + 2 * PADDING];
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other the grid to copy
+     */
+    private BitGrid(BitGrid other) {
+        length = other.length;
+        sRows = other.sRows.clone();
+        oRows = other.oRows.clone();
+    }
+
+    @Override
+    public int getCell(int c, int r) {
+        long bit = 1L << (c + PADDING);
+        if ((sRows[r + PADDING] & bit) != 0) {
+            return S;
+        } else if ((oRows[r + PADDING] & bit) != 0) {
+            return O;
+        }
+        return EMPTY;
+    }
+
+    @Override
+    public void setCell(int c, int r, int m) {
+        long bit = 1L << (c + PADDING);
+        sRows[r + PADDING] &= ~bit;
+        oRows[r + PADDING] &= ~bit;
+        if (m == S) {
+            sRows[r + PADDING] |= bit;
+        } else if (m == O) {
+            oRows[r + PADDING] |= bit;
+        }
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public int[] getFilledCells() {
+        int count = 0;
+        for (int r = 0; r < length; r++) {
+            count += Long.bitCount(sRows[r + PADDING] | oRows[r + PADDING]);
+        }
+        int[] cells = new int[count];
+        count = 0;
+        for (int r = 0; r < length; r++) {
+            long filled = (sRows[r + PADDING] | oRows[r + PADDING]) >>> PADDING;
+            while (filled != 0) {
+                cells[count++] = r * length + Long.numberOfTrailingZeros(filled);
+                filled &= filled - 1;
+            }
+        }
+        return cells;
+    }
+
+    @Override
+    public Grid copy() {
+        return new BitGrid(this);
+    }
+
+    @Override
+    public int getAdditionalSOS(int c, int r, int m) {
+        int row = r + PADDING;
+
+        if (m == O) {
+            // 3-cell windows of S's centered on column c
+            int shift = c + PADDING - 1;
+            int above = (int) (sRows[row - 1] >>> shift) & 7;
+            int middle = (int) (sRows[row] >>> shift) & 7;
+            int below = (int) (sRows[row + 1] >>> shift) & 7;
+            // horizontal, then vertical and both diagonals at once
+            return ((middle & 5) == 5 ? 1 : 0) + Integer.bitCount(above & MIRROR[below]);
+        }
+
+        // 5-cell windows centered on column c
+        int s = (int) (sRows[row] >>> c) & 31;
+        int o = (int) (oRows[row] >>> c) & 31;
+        int sosCount = s & (o >>> 1) & 1;               // S O [S]
+        sosCount += (s & (o << 1) & 16) >>> 4;          // [S] O S
+        // vertical and diagonals, upwards and downwards
+        sosCount += Integer.bitCount((int) (oRows[row - 1] >>> c) & 14
+                & ALIGN_S[(int) (sRows[row - 2] >>> c) & 31]);
+        sosCount += Integer.bitCount((int) (oRows[row + 1] >>> c) & 14
+                & ALIGN_S[(int) (sRows[row + 2] >>> c) & 31]);
+        return sosCount;
+    }
+
+    @Override
+    public int getGains(int c, int r) {
+        int row = r + PADDING;
+        long s = sRows[row] >>> c;
+        int o = (int) (oRows[row] >>> c) & 31;
+        // The O count, as in getAdditionalSOS, from the S's around the cell
+        int above = (int) (sRows[row - 1] >>> (c + PADDING - 1)) & 7;
+        int middle = (int) (s >>> (PADDING - 1)) & 7;
+        int below = (int) (sRows[row + 1] >>> (c + PADDING - 1)) & 7;
+        int oCount = ((middle & 5) == 5 ? 1 : 0) + Integer.bitCount(above & MIRROR[below]);
+        // The S count, from the 5-cell windows centered on the cell
+        int window = (int) s & 31;
+        int sCount = window & (o >>> 1) & 1;
+        sCount += (window & (o << 1) & 16) >>> 4;
+        sCount += Integer.bitCount((int) (oRows[row - 1] >>> c) & 14
+                & ALIGN_S[(int) (sRows[row - 2] >>> c) & 31]);
+        sCount += Integer.bitCount((int) (oRows[row + 1] >>> c) & 14
+                & ALIGN_S[(int) (sRows[row + 2] >>> c) & 31]);
+        return oCount | sCount << S_GAIN_SHIFT;
+    }
+}
@@ -0,0 +1,45 @@
+package main;
+
+public class BookPlayer implements Strategy {
+    private final Strategy fallback;
+    private final OpeningBook[] books;
+
+    /**
+     * Constructor that creates a player which plays book moves while the
+     * game is in one of its books, and like another strategy afterwards. Book
+     * moves are looked up rather than searched, so a search-based fallback
+     * only spends its time once the game has left the book.
+     *
+     * @param fallback the strategy used out of book
+     * @param books    opening books, at most one per board length
+     */
+    public BookPlayer(Strategy fallback, OpeningBook... books) {
+        this.fallback = fallback;
+        this.books = new OpeningBook[Sos.MAX_LENGTH + 1];
+        for (OpeningBook book : books) {
+            this.books[book.getLength()] = book;
+        }
+    }
+
+    /**
+     * Creates a player using whichever books of board lengths 3 to 15 have
+     * been built in their default files.
+     *
+     * @param fallback the strategy used out of book
+     * @return the player
+     */
+    public static BookPlayer withDefaultBooks(Strategy fallback) {
+        BookPlayer player = new BookPlayer(fallback);
+        for (int len = Tournament.MIN_LENGTH; len <= Tournament.MAX_LENGTH; len++) {
+            player.books[len] = OpeningBook.open(OpeningBook.defaultPath(len));
+        }
+        return player;
+    }
+
+    @Override
+    public int chooseMove(Sos game) {
+        OpeningBook book = books[game.getLength()];
+        int move = book == null ? OpeningBook.NO_MOVE : book.probe(game);
+        return move != OpeningBook.NO_MOVE ? move : fallback.chooseMove(game);
+    }
+}
@@ -0,0 +1,217 @@
+package main;
+
+import java.util.Arrays;
+
+public class CellSet {
+    private int[] cells;
+    // positions[cell] is the cell's index in cells plus one, or 0 if absent.
+    // Null for large capacities, which use the hashed table below instead.
+    private final int[] positions;
+    // Open addressing table of cell plus one, or 0 for a free slot, and the
+    // cell's index in cells plus one
+    private int[] hashedCells;
+    private int[] hashedPositions;
+    private int size;
+    // Capacities above this are hashed, so memory follows the set's size
+    public static final int MAX_DIRECT_CAPACITY = 1 << 16;
+    private static final int INITIAL_HASHED_SIZE = 16;
+
+    /**
+     * Constructor that creates an empty set able to hold cell indices in
+     * [0, capacity).
+     *
+     * @param capacity one more than the largest cell index that can be stored
+     */
+    public CellSet(int capacity) {
+        if (capacity <= MAX_DIRECT_CAPACITY) {
+            cells = new int[capacity];
+            positions = new int[capacity];
+        } else {
+            cells = new int[INITIAL_HASHED_SIZE];
+            positions = null;
+            hashedCells = new int[2 * INITIAL_HASHED_SIZE];
+            hashedPositions = new int[2 * INITIAL_HASHED_SIZE];
+        }
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other the set to copy
+     */
+    public CellSet(CellSet other) {
+        cells = other.cells.clone();
+        size = other.size;
+        if (other.positions != null) {
+            positions = other.positions.clone();
+        } else {
+            positions = null;
+            hashedCells = other.hashedCells.clone();
+            hashedPositions = other.hashedPositions.clone();
+        }
+    }
+
+    /**
+     * Adds a cell to the set if it is not already present.
+     *
+     * @param cell the cell index to add
+     */
+    public void add(int cell) {
+        if (positions != null) {
+            if (positions[cell] == 0) {
+                cells[size] = cell;
+                positions[cell] = ++size;
+            }
+            return;
+        }
+        int slot = slotOf(cell);
+        if (hashedCells[slot] == 0) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, 2 * size);
+                rehash(2 * cells.length);
+                slot = slotOf(cell);
+            }
+            cells[size] = cell;
+            hashedCells[slot] = cell + 1;
+            hashedPositions[slot] = ++size;
+        }
+    }
+
+    /**
+     * Removes a cell from the set if it is present.
+     *
+     * @param cell the cell index to remove
+     */
+    public void remove(int cell) {
+        if (positions != null) {
+            int position = positions[cell];
+            if (position != 0) {
+                int last = cells[--size];
+                cells[position - 1] = last;
+                positions[last] = position;
+                positions[cell] = 0;
+            }
+            return;
+        }
+        int slot = slotOf(cell);
+        int position = hashedPositions[slot];
+        if (position != 0) {
+            int last = cells[--size];
+            cells[position - 1] = last;
+            hashedPositions[slotOf(last)] = position;
+            removeSlot(slot);
+        }
+    }
+
+    /**
+     * Returns true if the cell is in the set, false otherwise.
+     *
+     * @param cell the cell index to check
+     * @return true if the cell is in the set
+     */
+    public boolean contains(int cell) {
+        if (positions != null) {
+            return positions[cell] != 0;
+        }
+        return hashedCells[slotOf(cell)] != 0;
+    }
+
+    /**
+     * Gets the number of cells in the set.
+     *
+     * @return the number of cells in the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the cell stored at the given position. Positions run from 0 to
+     * size() - 1 in no particular order.
+     *
+     * @param i the position to read
+     * @return the cell index at that position
+     */
+    public int get(int i) {
+        return cells[i];
+    }
+
+    /**
+     * Removes every cell from the set.
+     */
+    public void clear() {
+        if (positions != null) {
+            for (int i = 0; i < size; i++) {
+                positions[cells[i]] = 0;
+            }
+        } else {
+            Arrays.fill(hashedCells, 0);
+            Arrays.fill(hashedPositions, 0);
+        }
+        size = 0;
+    }
+
+    /**
+     * Finds the hashed slot of a cell, or the free slot where it would go.
+     *
+     * @param cell the cell index
+     * @return the slot's index in hashedCells and hashedPositions
+     */
+    private int slotOf(int cell) {
+        int mask = hashedCells.length - 1;
+        int slot = homeSlotOf(cell, mask);
+        while (hashedCells[slot] != 0 && hashedCells[slot] != cell + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Gets the slot a cell's probe sequence starts at.
+     *
+     * @param cell the cell index
+     * @param mask the table size minus one
+     * @return the first slot to probe
+     */
+    private static int homeSlotOf(int cell, int mask) {
+        return ((cell + 1) * 0x9E3779B1 >>> 16) & mask;
+    }
+
+    /**
+     * Frees a hashed slot, moving later entries of the same probe run back so
+     * that lookups never stop at the freed slot too early.
+     *
+     * @param slot the slot to free
+     */
+    private void removeSlot(int slot) {
+        int mask = hashedCells.length - 1;
+        int next = (slot + 1) & mask;
+        while (hashedCells[next] != 0) {
+            int home = homeSlotOf(hashedCells[next] - 1, mask);
+            // Move the entry unless its home lies cyclically in (slot, next]
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                hashedCells[slot] = hashedCells[next];
+                hashedPositions[slot] = hashedPositions[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        hashedCells[slot] = 0;
+        hashedPositions[slot] = 0;
+    }
+
+    /**
+     * Moves the hashed entries into a table of the given size.
+     *
+     * @param tableSize the new table size, a power of two
+     */
+    private void rehash(int tableSize) {
+        hashedCells = new int[tableSize];
+        hashedPositions = new int[tableSize];
+        for (int i = 0; i < size; i++) {
+            int slot = slotOf(cells[i]);
+            hashedCells[slot] = cells[i] + 1;
+            hashedPositions[slot] = i + 1;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package main;
+
+import java.util.Arrays;
+
+import static main.Sos.*;
+
+public class ChunkedGrid implements Grid {
+    private final int length;
+    // Open addressing table of chunks. Each chunk is CHUNK_SIZE rows of
+    // CHUNK_SIZE cells, packed 2 bits per cell into one long per row.
+    private long[] keys;
+    private long[][] chunks;
+    private int chunkCount;
+    private int filledCount;
+    // The chunk of the last lookup, so that neighboring cells are found
+    // without hashing; null if that chunk does not exist
+    private long cachedKey;
+    private long[] cachedChunk;
+    // Cells around a move that straddles chunks, in the layout of a chunk
+    private final long[] window = new long[5];
+    public static final int CHUNK_SIZE = 32;
+    private static final int CHUNK_SHIFT = 5;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final long NO_KEY = Long.MIN_VALUE;
+    private static final int INITIAL_TABLE_SIZE = 16;
+    // The eight line directions
+    private static final int[] DIRECTION_COLUMNS = {-1, 1, 0, 0, -1, 1, -1, 1};
+    private static final int[] DIRECTION_ROWS = {0, 0, -1, 1, -1, 1, 1, -1};
+
+    /**
+     * Constructor that creates an empty len-by-len grid. Only chunks holding
+     * a filled cell are stored, so memory grows with the number of moves
+     * played rather than with the size of the grid.
+     *
+     * @param len the length of each side of the grid
+     */
+    public ChunkedGrid(int len) {
+        length = len;
+        keys = new long[INITIAL_TABLE_SIZE];
+        chunks = new long[INITIAL_TABLE_SIZE][];
+        Arrays.fill(keys, NO_KEY);
+        cachedKey = NO_KEY;
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other the grid to copy
+     */
+    private ChunkedGrid(ChunkedGrid other) {
+        length = other.length;
+        keys = other.keys.clone();
+        chunks = new long[other.chunks.length][];
+        for (int i = 0; i < chunks.length; i++) {
+            if (other.chunks[i] != null) {
+                chunks[i] = other.chunks[i].clone();
+            }
+        }
+        chunkCount = other.chunkCount;
+        filledCount = other.filledCount;
+        cachedKey = NO_KEY;
+    }
+
+    @Override
+    public int getCell(int c, int r) {
+        long[] chunk = chunkAt(c, r);
+        if (chunk == null) {
+            return EMPTY;
+        }
+        return cellOf(chunk, c & CHUNK_MASK, r & CHUNK_MASK);
+    }
+
+    @Override
+    public void setCell(int c, int r, int m) {
+        long[] chunk = chunkAt(c, r);
+        if (chunk == null) {
+            if (m == EMPTY) {
+                return;
+            }
+            chunk = addChunk(keyOf(c, r));
+        }
+        int shift = 2 * (c & CHUNK_MASK);
+        int row = r & CHUNK_MASK;
+        if (((chunk[row] >>> shift) & 3) != EMPTY) {
+            filledCount--;
+        }
+        if (m != EMPTY) {
+            filledCount++;
+        }
+        chunk[row] = (chunk[row] & ~(3L << shift)) | ((long) m << shift);
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public Grid copy() {
+        return new ChunkedGrid(this);
+    }
+
+    @Override
+    public int getAdditionalSOS(int c, int r, int m) {
+        int x = c & CHUNK_MASK;
+        int y = r & CHUNK_MASK;
+        if (x >= 2 && x < CHUNK_SIZE - 2 && y >= 2 && y < CHUNK_SIZE - 2) {
+            // Every cell that can be part of the SOS is in this chunk
+            long[] chunk = chunkAt(c, r);
+            return chunk == null ? 0 : countSOS(chunk, x, y, m);
+        }
+        fillWindow(c, r);
+        return countSOS(window, 2, 2, m);
+    }
+
+    @Override
+    public int getGains(int c, int r) {
+        int x = c & CHUNK_MASK;
+        int y = r & CHUNK_MASK;
+        if (x >= 2 && x < CHUNK_SIZE - 2 && y >= 2 && y < CHUNK_SIZE - 2) {
+            long[] chunk = chunkAt(c, r);
+            return chunk == null ? 0 : countGains(chunk, x, y);
+        }
+        fillWindow(c, r);
+        return countGains(window, 2, 2);
+    }
+
+    /**
+     * Copies the 5-by-5 cells around a move into a chunk-shaped window. Cells
+     * outside the grid were never filled, so they read as empty.
+     *
+     * @param c column of the move
+     * @param r row of the move
+     */
+    private void fillWindow(int c, int r) {
+        for (int dy = -2; dy <= 2; dy++) {
+            long row = 0;
+            for (int dx = -2; dx <= 2; dx++) {
+                row |= (long) getCell(c + dx, r + dy) << (2 * (dx + 2));
+            }
+            window[dy + 2] = row;
+        }
+    }
+
+    @Override
+    public int[] getFilledCells() {
+        int[] cells = new int[filledCount];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (chunks[i] == null) {
+                continue;
+            }
+            int firstColumn = (int) keys[i] << CHUNK_SHIFT;
+            int firstRow = (int) (keys[i] >> 32) << CHUNK_SHIFT;
+            for (int y = 0; y < CHUNK_SIZE; y++) {
+                long row = chunks[i][y];
+                while (row != 0) {
+                    int x = Long.numberOfTrailingZeros(row) >>> 1;
+                    row &= ~(3L << (2 * x));
+                    cells[count++] = (firstRow + y) * length + firstColumn + x;
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Gets the number of chunks that are stored.
+     *
+     * @return the number of chunks
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Counts the SOS's that playing piece m at the given position of a block
+     * of chunk rows would make.
+     *
+     * @param rows chunk-shaped rows of cells
+     * @param x    column of the move within the rows, at least 2 from either end
+     * @param y    index of the move's row, at least 2 from either end
+     * @param m    move that could be played
+     * @return number of potential additional SOS's
+     */
+    private static int countSOS(long[] rows, int x, int y, int m) {
+        int sosCount = 0;
+        if (m == O) {
+            // Opposite directions are stored next to each other
+            for (int i = 0; i < DIRECTION_COLUMNS.length; i += 2) {
+                if (cellOf(rows, x + DIRECTION_COLUMNS[i], y + DIRECTION_ROWS[i]) == S
+                        && cellOf(rows, x + DIRECTION_COLUMNS[i + 1], y + DIRECTION_ROWS[i + 1]) == S) {
+                    sosCount++;
+                }
+            }
+        } else {
+            for (int i = 0; i < DIRECTION_COLUMNS.length; i++) {
+                int dx = DIRECTION_COLUMNS[i];
+                int dy = DIRECTION_ROWS[i];
+                if (cellOf(rows, x + dx, y + dy) == O && cellOf(rows, x + 2 * dx, y + 2 * dy) == S) {
+                    sosCount++;
+                }
+            }
+        }
+        return sosCount;
+    }
+
+    /**
+     * Counts the SOS's that playing either piece at the given position of a
+     * block of chunk rows would make, reading each neighbor once.
+     *
+     * @param rows chunk-shaped rows of cells
+     * @param x    column of the move within the rows, at least 2 from either end
+     * @param y    index of the move's row, at least 2 from either end
+     * @return the O count in the low bits and the S count shifted left by
+     *         S_GAIN_SHIFT
+     */
+    private static int countGains(long[] rows, int x, int y) {
+        int oCount = 0;
+        int sCount = 0;
+        for (int i = 0; i < DIRECTION_COLUMNS.length; i += 2) {
+            int before = cellOf(rows, x + DIRECTION_COLUMNS[i], y + DIRECTION_ROWS[i]);
+            int after = cellOf(rows, x + DIRECTION_COLUMNS[i + 1], y + DIRECTION_ROWS[i + 1]);
+            if (before == S && after == S) {
+                oCount++;
+            }
+            if (before == O && cellOf(rows, x + 2 * DIRECTION_COLUMNS[i], y + 2 * DIRECTION_ROWS[i]) == S) {
+                sCount++;
+            }
+            if (after == O && cellOf(rows, x + 2 * DIRECTION_COLUMNS[i + 1], y + 2 * DIRECTION_ROWS[i + 1]) == S) {
+                sCount++;
+            }
+        }
+        return oCount | sCount << S_GAIN_SHIFT;
+    }
+
+    /**
+     * Reads a cell of a chunk.
+     *
+     * @param chunk the chunk's rows
+     * @param x     column within the chunk
+     * @param y     row within the chunk
+     * @return Sos.EMPTY, Sos.O or Sos.S
+     */
+    private static int cellOf(long[] chunk, int x, int y) {
+        return (int) (chunk[y] >>> (2 * x)) & 3;
+    }
+
+    /**
+     * Gets the key of the chunk holding the given cell.
+     *
+     * @param c column of the cell
+     * @param r row of the cell
+     * @return the chunk's row and column, packed into a long
+     */
+    private static long keyOf(int c, int r) {
+        return ((long) (r >> CHUNK_SHIFT) << 32) | ((c >> CHUNK_SHIFT) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the chunk holding the given cell. The last chunk looked up is
+     * remembered, so runs of nearby lookups only hash once. Because of this,
+     * even reads must not happen on several threads at once; copy the grid
+     * instead.
+     *
+     * @param c column of the cell
+     * @param r row of the cell
+     * @return the chunk, or null if none of its cells were filled
+     */
+    private long[] chunkAt(int c, int r) {
+        long key = keyOf(c, r);
+        if (key != cachedKey) {
+            cachedKey = key;
+            cachedChunk = chunks[slotOf(key)];
+        }
+        return cachedChunk;
+    }
+
+    /**
+     * Finds the slot of a key, or the empty slot where it would go.
+     *
+     * @param key the chunk's key
+     * @return the slot's index in keys and chunks
+     */
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (keys[slot] != key && keys[slot] != NO_KEY) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Adds an empty chunk, growing the table when it gets half full.
+     *
+     * @param key the chunk's key
+     * @return the new chunk
+     */
+    private long[] addChunk(long key) {
+        if (2 * (chunkCount + 1) > keys.length) {
+            long[] oldKeys = keys;
+            long[][] oldChunks = chunks;
+            keys = new long[2 * oldKeys.length];
+            chunks = new long[keys.length][];
+            Arrays.fill(keys, NO_KEY);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldChunks[i] != null) {
+                    int slot = slotOf(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    chunks[slot] = oldChunks[i];
+                }
+            }
+        }
+        long[] chunk = new long[CHUNK_SIZE];
+        int slot = slotOf(key);
+        keys[slot] = key;
+        chunks[slot] = chunk;
+        chunkCount++;
+        cachedKey = key;
+        cachedChunk = chunk;
+        return chunk;
+    }
+}
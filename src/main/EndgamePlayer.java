@@ -0,0 +1,45 @@
+package main;
+
+public class EndgamePlayer implements Strategy {
+    private final Strategy fallback;
+    private final EndgameTable[] tables;
+
+    /**
+     * Constructor that creates a player which plays perfectly on boards it has
+     * an endgame table for, and like another strategy on other boards.
+     *
+     * @param fallback the strategy used on boards without a table
+     * @param tables   endgame tables, at most one per board length
+     */
+    public EndgamePlayer(Strategy fallback, EndgameTable... tables) {
+        this.fallback = fallback;
+        this.tables = new EndgameTable[EndgameTable.MAX_LENGTH + 1];
+        for (EndgameTable table : tables) {
+            this.tables[table.getLength()] = table;
+        }
+    }
+
+    /**
+     * Creates a player using whichever tables have been generated in their
+     * default files.
+     *
+     * @param fallback the strategy used on boards without a table
+     * @return the player
+     */
+    public static EndgamePlayer withDefaultTables(Strategy fallback) {
+        EndgamePlayer player = new EndgamePlayer(fallback);
+        for (int len = 1; len <= EndgameTable.MAX_LENGTH; len++) {
+            player.tables[len] = EndgameTable.open(EndgameTable.defaultPath(len));
+        }
+        return player;
+    }
+
+    @Override
+    public int chooseMove(Sos game) {
+        int len = game.getLength();
+        if (len < tables.length && tables[len] != null) {
+            return tables[len].bestMove(game);
+        }
+        return fallback.chooseMove(game);
+    }
+}
@@ -0,0 +1,407 @@
+package main;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static main.Sos.*;
+
+public class EndgameTable {
+    private final MappedByteBuffer table;
+    private final int length;
+    private final int[] powers;
+    public static final int MAGIC = 0x534F5345; // "SOSE"
+    public static final int VERSION = 1;
+    // 3^25 positions of 5x5 boards would not fit in one mapped buffer
+    public static final int MAX_LENGTH = 4;
+    // Header layout
+    private static final int VERSION_OFFSET = 4;
+    private static final int LENGTH_OFFSET = 8;
+    private static final int SOLVED_LAYERS_OFFSET = 12;
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Constructor that wraps a mapped, already validated table.
+     *
+     * @param table the file's contents
+     * @param len   the length of the board's sides
+     */
+    private EndgameTable(MappedByteBuffer table, int len) {
+        this.table = table;
+        length = len;
+        powers = powersOfThree(len * len);
+    }
+
+    /**
+     * Gets the usual file for the table of boards of the given length.
+     *
+     * @param len the length of the board's sides
+     * @return files/endgame-LENxLEN.sose
+     */
+    public static Path defaultPath(int len) {
+        return Paths.get("files", "endgame-" + len + "x" + len + ".sose");
+    }
+
+    /**
+     * Memory-maps a fully generated table and checks its header.
+     *
+     * @param path the file to open
+     * @return the opened table, or null if the file is not a complete table
+     */
+    public static EndgameTable open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int len = contents.getInt(LENGTH_OFFSET);
+            if (contents.getInt(0) != MAGIC || contents.getShort(VERSION_OFFSET) != VERSION
+                    || len < 1 || len > MAX_LENGTH || channel.size() != fileSize(len)
+                    || contents.getInt(SOLVED_LAYERS_OFFSET) != len * len + 1) {
+                return null;
+            }
+            return new EndgameTable(contents, len);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Solves every position of boards of the given length and writes the
+     * results to a table. Position values are worked out backwards from full
+     * boards: every position with k filled cells is solved, in parallel, from
+     * the already solved positions with k + 1. The number of solved layers is
+     * written to the header after each layer has been flushed, so if
+     * generation is interrupted, calling this again picks up from the last
+     * finished layer.
+     *
+     * @param path    the file to write
+     * @param len     the length of the board's sides, from 1 to MAX_LENGTH
+     * @param threads the number of worker threads
+     * @return the generated table
+     * @throws IOException if the file cannot be written
+     */
+    public static EndgameTable generate(Path path, int len, int threads) throws IOException {
+        if (len < 1 || len > MAX_LENGTH) {
+            throw new IllegalArgumentException("Endgame tables are for boards 1 to " + MAX_LENGTH + " cells long");
+        }
+        int cells = len * len;
+        MappedByteBuffer contents;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean resumable = channel.size() == fileSize(len);
+            contents = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(len));
+            if (!resumable || contents.getInt(0) != MAGIC || contents.getShort(VERSION_OFFSET) != VERSION
+                    || contents.getInt(LENGTH_OFFSET) != len) {
+                contents.putInt(0, MAGIC);
+                contents.putShort(VERSION_OFFSET, (short) VERSION);
+                contents.putInt(LENGTH_OFFSET, len);
+                contents.putInt(SOLVED_LAYERS_OFFSET, 0);
+            }
+        }
+
+        Solver solver = new Solver(contents, len);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int layer = contents.getInt(SOLVED_LAYERS_OFFSET); layer <= cells; layer++) {
+                solver.solveLayer(cells - layer, pool, threads);
+                // The header only counts a layer once its values are on disk
+                contents.force();
+                contents.putInt(SOLVED_LAYERS_OFFSET, layer + 1);
+                contents.force();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Endgame table generation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Endgame table generation failed", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        return new EndgameTable(contents, len);
+    }
+
+    /**
+     * Gets the size of the table file for boards of the given length.
+     *
+     * @param len the length of the board's sides
+     * @return the header plus one byte per position
+     */
+    private static long fileSize(int len) {
+        return HEADER_SIZE + powersOfThree(len * len + 1)[len * len];
+    }
+
+    /**
+     * Gets the powers of three, which weight the cells of a position's index.
+     *
+     * @param count the number of powers
+     * @return 3^0 to 3^(count - 1)
+     */
+    private static int[] powersOfThree(int count) {
+        int[] powers = new int[count];
+        for (int i = 0, power = 1; i < count; i++, power *= 3) {
+            powers[i] = power;
+        }
+        return powers;
+    }
+
+    /**
+     * Gets the length of the boards this table is for.
+     *
+     * @return the length of the board's sides
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the index of a game's position in the table: its cells, read as the
+     * digits of a base 3 number with the cell at row r and column c weighted
+     * 3^(r * length + c). Whose turn it is does not matter, as both players
+     * have the same moves.
+     *
+     * @param game a game on a board of this table's length
+     * @return the position's index
+     */
+    public int indexOf(Sos game) {
+        int index = 0;
+        for (int r = 0, cell = 0; r < length; r++) {
+            for (int c = 0; c < length; c++, cell++) {
+                index += game.getCell(c, r) * powers[cell];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gets the number of points the player to move gains over the other
+     * player from the given position to the end of the game, with perfect play
+     * from both.
+     *
+     * @param index the position's index
+     * @return the player to move's points minus the other player's
+     */
+    public int probe(int index) {
+        return table.get(HEADER_SIZE + index);
+    }
+
+    /**
+     * Gets the number of points the player to move gains over the other
+     * player from the game's position to the end of the game, with perfect
+     * play from both. Probes neither lock nor allocate.
+     *
+     * @param game a game on a board of this table's length
+     * @return the player to move's points minus the other player's
+     */
+    public int probe(Sos game) {
+        return probe(indexOf(game));
+    }
+
+    /**
+     * Chooses a move that is best with perfect play, by probing the position
+     * after each move.
+     *
+     * @param game a game on a board of this table's length, must not be over
+     * @return the chosen move, packed with Move.pack
+     */
+    public int bestMove(Sos game) {
+        int index = indexOf(game);
+        int best = Integer.MIN_VALUE;
+        int bestMove = 0;
+        for (int r = 0, cell = 0; r < length; r++) {
+            for (int c = 0; c < length; c++, cell++) {
+                if (game.getCell(c, r) != EMPTY) {
+                    continue;
+                }
+                for (int m = O; m <= S; m++) {
+                    int gain = game.getAdditionalSOS(c, r, m);
+                    int rest = probe(index + m * powers[cell]);
+                    // Scoring moves keep the turn
+                    int value = gain > 0 ? gain + rest : -rest;
+                    if (value > best) {
+                        best = value;
+                        bestMove = Move.pack(c, r, m);
+                    }
+                }
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Solves the positions of one layer of the table. Positions are visited
+     * in index order, decoding each index by counting its digits up like an
+     * odometer, so that finding the positions of a layer costs little more
+     * than scanning the indices.
+     */
+    private static class Solver {
+        private final MappedByteBuffer table;
+        private final int len;
+        private final int cells;
+        private final int[] powers;
+        // For each cell, pairs of cells that make an SOS with an O played there
+        private final int[][] oLines;
+        // For each cell, pairs of the middle and far cells that make an SOS
+        // with an S played there
+        private final int[][] sLines;
+
+        /**
+         * Constructor.
+         *
+         * @param table the table being generated
+         * @param len   the length of the board's sides
+         */
+        private Solver(MappedByteBuffer table, int len) {
+            this.table = table;
+            this.len = len;
+            cells = len * len;
+            powers = powersOfThree(cells + 1);
+            oLines = new int[cells][];
+            sLines = new int[cells][];
+            int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {1, -1}, {-1, 0}, {0, -1}, {-1, -1}, {-1, 1}};
+            for (int r = 0; r < len; r++) {
+                for (int c = 0; c < len; c++) {
+                    List<Integer> o = new ArrayList<>();
+                    List<Integer> s = new ArrayList<>();
+                    for (int d = 0; d < directions.length; d++) {
+                        int dc = directions[d][0];
+                        int dr = directions[d][1];
+                        // Each line through an O is counted from one direction
+                        if (d < 4 && onBoard(c - dc, r - dr) && onBoard(c + dc, r + dr)) {
+                            o.add((r - dr) * len + c - dc);
+                            o.add((r + dr) * len + c + dc);
+                        }
+                        if (onBoard(c + 2 * dc, r + 2 * dr)) {
+                            s.add((r + dr) * len + c + dc);
+                            s.add((r + 2 * dr) * len + c + 2 * dc);
+                        }
+                    }
+                    oLines[r * len + c] = o.stream().mapToInt(Integer::intValue).toArray();
+                    sLines[r * len + c] = s.stream().mapToInt(Integer::intValue).toArray();
+                }
+            }
+        }
+
+        /**
+         * Returns true if the cell is on the board.
+         *
+         * @param c column of the cell
+         * @param r row of the cell
+         * @return true if the cell is on the board
+         */
+        private boolean onBoard(int c, int r) {
+            return c >= 0 && c < len && r >= 0 && r < len;
+        }
+
+        /**
+         * Solves every position with the given number of filled cells, split
+         * into one range of indices per thread.
+         *
+         * @param filled  the number of filled cells
+         * @param pool    the worker threads
+         * @param threads the number of ranges
+         * @throws InterruptedException if interrupted while waiting
+         * @throws ExecutionException   if a worker failed
+         */
+        private void solveLayer(int filled, ExecutorService pool, int threads)
+                throws InterruptedException, ExecutionException {
+            int total = powers[cells];
+            List<Future<?>> ranges = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int from = (int) ((long) total * t / threads);
+                int to = (int) ((long) total * (t + 1) / threads);
+                ranges.add(pool.submit(() -> solveRange(filled, from, to)));
+            }
+            for (Future<?> range : ranges) {
+                range.get();
+            }
+        }
+
+        /**
+         * Solves the positions with the given number of filled cells whose
+         * indices are in the given range.
+         *
+         * @param filled the number of filled cells
+         * @param from   the first index, inclusive
+         * @param to     the last index, exclusive
+         */
+        private void solveRange(int filled, int from, int to) {
+            int[] digits = new int[cells + 1];
+            int count = 0;
+            for (int i = 0, rest = from; i < cells; i++, rest /= 3) {
+                digits[i] = rest % 3;
+                count += digits[i] == EMPTY ? 0 : 1;
+            }
+            for (int index = from; index < to; index++) {
+                if (count == filled) {
+                    table.put(HEADER_SIZE + index, (byte) solve(index, digits));
+                }
+                // Count up to the next index
+                int i = 0;
+                while (digits[i] == S) {
+                    digits[i++] = EMPTY;
+                    count--;
+                }
+                digits[i]++;
+                count += digits[i] == O ? 1 : 0;
+            }
+        }
+
+        /**
+         * Works out a position's value from the values of the positions after
+         * each of its moves.
+         *
+         * @param index  the position's index
+         * @param digits the position's cells
+         * @return the player to move's points minus the other player's
+         */
+        private int solve(int index, int[] digits) {
+            int best = Integer.MIN_VALUE;
+            for (int cell = 0; cell < cells; cell++) {
+                if (digits[cell] != EMPTY) {
+                    continue;
+                }
+                for (int m = O; m <= S; m++) {
+                    int gain = 0;
+                    int[] lines = m == O ? oLines[cell] : sLines[cell];
+                    int first = m == O ? S : O;
+                    for (int i = 0; i < lines.length; i += 2) {
+                        if (digits[lines[i]] == first && digits[lines[i + 1]] == S) {
+                            gain++;
+                        }
+                    }
+                    int rest = table.get(HEADER_SIZE + index + m * powers[cell]);
+                    best = Math.max(best, gain > 0 ? gain + rest : -rest);
+                }
+            }
+            // A full board has no moves and nothing left to win
+            return best == Integer.MIN_VALUE ? 0 : best;
+        }
+    }
+
+    /**
+     * Generates the table for boards of the given length in its default file.
+     * Arguments: length [threads]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: EndgameTable length [threads]");
+            return;
+        }
+        int len = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        EndgameTable table = generate(defaultPath(len), len, threads);
+        System.out.printf("Solved %dx%d boards in %.1f s; the first player gains %d with perfect play%n",
+                len, len, (System.nanoTime() - start) / 1e9, table.probe(0));
+    }
+}
@@ -0,0 +1,161 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class GameArchive implements AutoCloseable {
+    private final FileChannel channel;
+    private ByteBuffer pending;
+    private long games;
+    public static final int MAGIC = 0x534F5341; // "SOSA"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    // A record is its board length and move count as varints, its seed, its
+    // moves as varints and a check of everything before it
+    static final int SEED_SIZE = 8;
+    static final int CHECK_SIZE = 4;
+    static final int MAX_VARINT_SIZE = 5;
+    // A move is stored as its cell, whether it is an S and the points it
+    // gained; whose turn it was follows from replaying the game
+    static final int POINTS_BITS = 4;
+    static final int POINTS_MASK = (1 << POINTS_BITS) - 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Constructor that opens an archive for appending, creating it if it does
+     * not exist. If the archive ends in a record torn by a crash, the torn
+     * record is cut off so that new records follow the last complete one.
+     *
+     * @param path the archive file
+     * @throws IOException if the file cannot be opened or is not an archive
+     */
+    public GameArchive(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                channel.write(header.flip(), 0);
+                channel.position(HEADER_SIZE);
+            } else {
+                try (GameArchiveReader reader = new GameArchiveReader(channel, false)) {
+                    while (reader.next()) {
+                        games++;
+                    }
+                    channel.truncate(reader.getPosition());
+                    channel.position(reader.getPosition());
+                }
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        pending = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /**
+     * Adds a finished game to the archive. Records are buffered, so they are
+     * only certain to be in the file after flush or close. This may be called
+     * by several threads at once.
+     *
+     * @param game the game, whose history is archived
+     * @param seed the seed the game was played with, kept so that it can be
+     *             played again
+     * @throws IOException if the buffered records cannot be written
+     */
+    public synchronized void append(Sos game, long seed) throws IOException {
+        int count = game.getMoveCount();
+        int size = 2 * MAX_VARINT_SIZE + SEED_SIZE + count * MAX_VARINT_SIZE + CHECK_SIZE;
+        if (pending.remaining() < size) {
+            flush();
+            if (pending.capacity() < size) {
+                pending = ByteBuffer.allocate(size);
+            }
+        }
+
+        int start = pending.position();
+        int len = game.getLength();
+        putVarint(pending, len);
+        putVarint(pending, count);
+        pending.putLong(seed);
+        for (int i = 0; i < count; i++) {
+            int move = game.getPackedMove(i);
+            long cell = (long) Move.rowOf(move) * len + Move.columnOf(move);
+            putVarint(pending, (int) ((cell << 1 | (Move.pieceOf(move) == Sos.S ? 1 : 0)) << POINTS_BITS)
+                    | Move.pointsOf(move));
+        }
+        pending.putInt(check(pending.array(), start, pending.position()));
+        games++;
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     *
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        pending.flip();
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Writes the buffered records and closes the file.
+     *
+     * @throws IOException if the records cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Gets the number of games in the archive, including those still buffered.
+     *
+     * @return the number of games
+     */
+    public synchronized long getGameCount() {
+        return games;
+    }
+
+    /**
+     * Writes a non-negative value in as few bytes as it needs, seven bits
+     * per byte with the high bit set on every byte but the last.
+     *
+     * @param buffer the buffer to write to
+     * @param value  the value
+     */
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Computes the check stored after a record, so that a record torn by a
+     * crash or overwritten by garbage is not mistaken for a valid one.
+     *
+     * @param bytes the bytes holding the record
+     * @param from  the index of the record's first byte
+     * @param to    the index after the record's last byte
+     * @return the check
+     */
+    static int check(byte[] bytes, int from, int to) {
+        int h = 0x811C9DC5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 15);
+    }
+}
@@ -0,0 +1,273 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class GameArchiveReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    // The part of the file read so far that has not been consumed. data[0]
+    // is at fileOffset in the file, and the current record starts at
+    // recordStart and is being read at pos.
+    private byte[] data;
+    private long fileOffset;
+    private int recordStart;
+    private int pos;
+    private int limit;
+    private boolean endOfFile;
+    // The current record
+    private int len;
+    private long seed;
+    private int moveCount;
+    private int[] moves;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Constructor that opens an archive for reading.
+     *
+     * @param path the archive file
+     * @throws IOException if the file cannot be read or is not an archive
+     */
+    public GameArchiveReader(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), true);
+    }
+
+    /**
+     * Constructor that reads an archive from an open file. The file's
+     * position is not changed.
+     *
+     * @param channel     the archive file
+     * @param ownsChannel true if closing the reader should close the file
+     * @throws IOException if the file cannot be read or is not an archive
+     */
+    GameArchiveReader(FileChannel channel, boolean ownsChannel) throws IOException {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        data = new byte[BUFFER_SIZE];
+        moves = new int[Sos.PREALLOCATED_MOVES];
+        if (!fill(GameArchive.HEADER_SIZE)
+                || getInt() != GameArchive.MAGIC || getInt() != GameArchive.VERSION) {
+            close();
+            throw new IOException("Not a game archive");
+        }
+        recordStart = pos;
+    }
+
+    /**
+     * Reads the next record. Reading stops at the end of the archive or at
+     * the first record that is incomplete or fails its check, such as one
+     * torn by a crash.
+     *
+     * @return true if a record was read, false if there are no more
+     * @throws IOException if the file cannot be read
+     */
+    public boolean next() throws IOException {
+        recordStart = pos;
+        // Short records may be all that is left, so a partial fill is fine
+        fill(2 * GameArchive.MAX_VARINT_SIZE + GameArchive.SEED_SIZE);
+        int length = getVarint();
+        int count = getVarint();
+        if (length < 1 || length > Sos.MAX_LENGTH || count < 0
+                || count > (long) length * length || !fill(GameArchive.SEED_SIZE)) {
+            return invalid();
+        }
+        long recordSeed = (long) getInt() << 32 | (getInt() & 0xFFFFFFFFL);
+        if (moves.length < count) {
+            moves = new int[Math.max(count, 2 * moves.length)];
+        }
+
+        boolean p1Turn = true;
+        for (int i = 0; i < count; i++) {
+            if (limit - pos < GameArchive.MAX_VARINT_SIZE) {
+                fill(GameArchive.MAX_VARINT_SIZE);
+            }
+            int value = getVarint();
+            int cell = value >>> (GameArchive.POINTS_BITS + 1);
+            if (value < 0 || cell >= length * length) {
+                return invalid();
+            }
+            int points = value & GameArchive.POINTS_MASK;
+            int piece = (value >>> GameArchive.POINTS_BITS & 1) != 0 ? Sos.S : Sos.O;
+            moves[i] = Move.pack(cell % length, cell / length, piece, p1Turn, points);
+            if (points == 0) {
+                p1Turn = !p1Turn;
+            }
+        }
+        int end = pos;
+        if (!fill(GameArchive.CHECK_SIZE) || getInt() != GameArchive.check(data, recordStart, end)) {
+            return invalid();
+        }
+
+        len = length;
+        seed = recordSeed;
+        moveCount = count;
+        return true;
+    }
+
+    /**
+     * Plays the current record's moves on a game, which is reset to the
+     * record's board length first.
+     *
+     * @param game the game to play the moves on
+     * @return true if every move could be played and scored the points it
+     * was recorded with, false otherwise
+     */
+    public boolean replay(Sos game) {
+        game.reset(len);
+        for (int i = 0; i < moveCount; i++) {
+            int move = moves[i];
+            int c = Move.columnOf(move);
+            int r = Move.rowOf(move);
+            if (!game.playMove(c, r, Move.pieceOf(move))
+                    || Move.pointsOf(game.getPackedMove(i)) != Move.pointsOf(move)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the length of the current record's board.
+     *
+     * @return the length of the board's sides
+     */
+    public int getLength() {
+        return len;
+    }
+
+    /**
+     * Gets the seed the current record's game was played with.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the number of moves in the current record.
+     *
+     * @return the number of moves
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Gets one of the current record's moves without replaying it.
+     *
+     * @param i the index of the move, 0 being the first move of the game
+     * @return the move, packed with Move.pack, including player and points
+     */
+    public int getMove(int i) {
+        if (i < 0 || i >= moveCount) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return moves[i];
+    }
+
+    /**
+     * Gets the current record's moves without replaying them.
+     *
+     * @return the moves, packed with Move.pack, including player and points
+     */
+    public int[] getMoves() {
+        return Arrays.copyOf(moves, moveCount);
+    }
+
+    /**
+     * Gets the position in the file just after the last valid record read.
+     *
+     * @return the offset of the end of the last valid record
+     */
+    public long getPosition() {
+        return fileOffset + pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Stops reading at the current record, which is not valid.
+     *
+     * @return false
+     */
+    private boolean invalid() {
+        pos = recordStart;
+        limit = recordStart;
+        endOfFile = true;
+        return false;
+    }
+
+    /**
+     * Reads from the file until at least the given number of unconsumed bytes
+     * are buffered, keeping the current record's bytes so that they can be
+     * checked. The buffer grows if the record does not fit.
+     *
+     * @param need the number of bytes needed
+     * @return true if they were read, false if the file ends first
+     * @throws IOException if the file cannot be read
+     */
+    private boolean fill(int need) throws IOException {
+        if (limit - pos >= need) {
+            return true;
+        }
+        if (pos + need > data.length) {
+            int kept = limit - recordStart;
+            byte[] target = pos - recordStart + need > data.length
+                    ? new byte[Math.max(2 * data.length, pos - recordStart + need)] : data;
+            System.arraycopy(data, recordStart, target, 0, kept);
+            data = target;
+            fileOffset += recordStart;
+            pos -= recordStart;
+            limit = kept;
+            recordStart = 0;
+        }
+        while (limit - pos < need && !endOfFile) {
+            int read = channel.read(ByteBuffer.wrap(data, limit, data.length - limit), fileOffset + limit);
+            if (read < 0) {
+                endOfFile = true;
+            } else {
+                limit += read;
+            }
+        }
+        return limit - pos >= need;
+    }
+
+    /**
+     * Reads a big-endian int from the buffer.
+     *
+     * @return the int
+     */
+    private int getInt() {
+        int value = (data[pos] & 0xFF) << 24 | (data[pos + 1] & 0xFF) << 16
+                | (data[pos + 2] & 0xFF) << 8 | (data[pos + 3] & 0xFF);
+        pos += 4;
+        return value;
+    }
+
+    /**
+     * Reads a value written by GameArchive.putVarint from the buffer.
+     *
+     * @return the value, or -1 if the buffer ends first or it is too long
+     */
+    private int getVarint() {
+        int value = 0;
+        for (int shift = 0; shift < 7 * GameArchive.MAX_VARINT_SIZE && pos < limit; shift += 7) {
+            byte b = data[pos++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,302 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class GameJournal {
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final int compactionRecords;
+    private FileChannel channel;
+    // The history as the snapshot plus the journal replay it, or null if the
+    // next save has to write a new snapshot
+    private MoveHistory journaled;
+    private int journaledPiece;
+    private int snapshotChecksum;
+    private int records;
+    private ByteBuffer pending;
+    public static final String SNAPSHOT_PATH = "files/journal.sos";
+    public static final String JOURNAL_PATH = "files/journal.log";
+    public static final int DEFAULT_COMPACTION_RECORDS = 256;
+    public static final int MAGIC = 0x534F534A; // "SOSJ"
+    // Records that are not moves; moves are never negative
+    public static final int UNDO = -1;
+    public static final int DISCARD_REDO = -2;
+    public static final int SELECT_PIECE = Integer.MIN_VALUE;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 8;
+
+    /**
+     * Constructor that journals to SNAPSHOT_PATH and JOURNAL_PATH.
+     */
+    public GameJournal() {
+        this(Paths.get(SNAPSHOT_PATH), Paths.get(JOURNAL_PATH), DEFAULT_COMPACTION_RECORDS);
+    }
+
+    /**
+     * Constructor that journals to the given files.
+     *
+     * @param snapshot          the file holding the last snapshot, in the
+     *                          binary save format
+     * @param journal           the file the changes since the snapshot are
+     *                          appended to
+     * @param compactionRecords the number of journal records after which the
+     *                          next save writes a new snapshot instead
+     */
+    public GameJournal(Path snapshot, Path journal, int compactionRecords) {
+        snapshotPath = snapshot;
+        journalPath = journal;
+        this.compactionRecords = compactionRecords;
+        pending = ByteBuffer.allocate(64 * RECORD_SIZE);
+    }
+
+    /**
+     * Saves the game state. Only the changes since the last save are appended
+     * to the journal, so a save costs about as much as the moves made since
+     * the last one. When the journal gets long, or the game was replaced, a
+     * new snapshot is written and the journal is emptied instead.
+     *
+     * @param board    the current board
+     * @param p1Points the points Player 1 has
+     * @param p2Points the points Player 2 has
+     * @param p1Turn   true if Player 1's turn, false if Player 2's turn
+     * @param piece    the selected piece
+     * @param moves    the moves made in the game thus far
+     * @throws IOException if the files cannot be written
+     */
+    public synchronized void save(
+            Grid board, int p1Points, int p2Points,
+            boolean p1Turn, int piece, MoveHistory moves
+    ) throws IOException {
+        if (journaled == null || channel == null || records >= compactionRecords) {
+            compact(board, p1Points, p2Points, p1Turn, piece, moves);
+            return;
+        }
+
+        pending.clear();
+        int first = records;
+        appendChanges(moves, piece);
+        pending.flip();
+        long position = HEADER_SIZE + (long) first * RECORD_SIZE;
+        while (pending.hasRemaining()) {
+            position += channel.write(pending, position);
+        }
+        moves.markUnchanged();
+    }
+
+    /**
+     * Writes a snapshot of the game state and empties the journal. The
+     * snapshot replaces the old one atomically, and the journal names the
+     * snapshot it belongs to, so a crash at any point leaves a state that
+     * recovers to either the old or the new save.
+     *
+     * @param board    the current board
+     * @param p1Points the points Player 1 has
+     * @param p2Points the points Player 2 has
+     * @param p1Turn   true if Player 1's turn, false if Player 2's turn
+     * @param piece    the selected piece
+     * @param moves    the moves made in the game thus far
+     * @throws IOException if the files cannot be written
+     */
+    public synchronized void compact(
+            Grid board, int p1Points, int p2Points,
+            boolean p1Turn, int piece, MoveHistory moves
+    ) throws IOException {
+        journaled = null;
+        ByteBuffer snapshot = BinaryGameFile.encode(board, p1Points, p2Points, p1Turn, piece, moves);
+        Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                out.write(snapshot);
+            }
+            out.force(true);
+        }
+        try {
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        snapshotChecksum = BinaryGameFile.checksumOf(snapshot);
+
+        if (channel == null) {
+            channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+        // Truncate before writing the header so old records never follow it
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(snapshotChecksum).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+
+        records = 0;
+        journaled = new MoveHistory(moves);
+        journaledPiece = piece;
+        moves.markUnchanged();
+    }
+
+    /**
+     * Makes the next save write a new snapshot. Used after a failed write,
+     * since the journal file may then be missing records.
+     */
+    public synchronized void requestCompaction() {
+        journaled = null;
+    }
+
+    /**
+     * Closes the journal file. A later save reopens it and writes a new
+     * snapshot.
+     */
+    public synchronized void close() {
+        journaled = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("Could not close " + journalPath);
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Queues the records that turn the journaled history into the given one.
+     * Undone moves are popped back to the first difference, then the new
+     * moves, including those that can be redone, are pushed, then moves are
+     * popped again until the same number are played.
+     *
+     * @param moves the moves made in the game thus far
+     * @param piece the selected piece
+     */
+    private void appendChanges(MoveHistory moves, int piece) {
+        int common = moves.getUnchangedCount();
+        int limit = Math.min(journaled.recordedSize(), moves.recordedSize());
+        while (common < limit && journaled.get(common) == moves.get(common)) {
+            common++;
+        }
+
+        while (journaled.size() > common) {
+            journaled.pop();
+            append(UNDO);
+        }
+        while (journaled.size() < moves.recordedSize()) {
+            int move = moves.get(journaled.size());
+            journaled.push(move);
+            append(move);
+        }
+        if (journaled.recordedSize() > moves.recordedSize()) {
+            journaled.discardRedo();
+            append(DISCARD_REDO);
+        }
+        while (journaled.size() > moves.size()) {
+            journaled.pop();
+            append(UNDO);
+        }
+        if (journaledPiece != piece) {
+            journaledPiece = piece;
+            append(SELECT_PIECE | piece);
+        }
+    }
+
+    /**
+     * Queues one record, growing the queue if it is full.
+     *
+     * @param value the record
+     */
+    private void append(int value) {
+        if (pending.remaining() < RECORD_SIZE) {
+            ByteBuffer larger = ByteBuffer.allocate(2 * pending.capacity());
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        pending.putInt(value);
+        pending.putInt(check(value, records++, snapshotChecksum));
+    }
+
+    /**
+     * Reads the records of a journal. Reading stops at the first record that
+     * is incomplete or fails its check, such as one torn by a crash. If the
+     * journal belongs to a different snapshot, there are no records.
+     *
+     * @param journal          the journal file
+     * @param snapshotChecksum the checksum of the snapshot the records apply to
+     * @return the valid records, in the order they were written
+     */
+    public static int[] readRecords(Path journal, int snapshotChecksum) {
+        ByteBuffer contents;
+        try {
+            contents = ByteBuffer.wrap(Files.readAllBytes(journal));
+        } catch (IOException e) {
+            return new int[0];
+        }
+        if (contents.remaining() < HEADER_SIZE || contents.getInt() != MAGIC
+                || contents.getInt() != snapshotChecksum) {
+            return new int[0];
+        }
+
+        int[] values = new int[contents.remaining() / RECORD_SIZE];
+        int count = 0;
+        while (count < values.length) {
+            int value = contents.getInt();
+            if (contents.getInt() != check(value, count, snapshotChecksum)) {
+                break;
+            }
+            values[count++] = value;
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Computes the check stored with a record. It depends on the record's
+     * position and snapshot, so records left over from an older journal or
+     * zero-filled blocks after a crash are not mistaken for valid ones.
+     *
+     * @param value            the record
+     * @param index            the position of the record in the journal
+     * @param snapshotChecksum the checksum of the journal's snapshot
+     * @return the check
+     */
+    private static int check(int value, int index, int snapshotChecksum) {
+        int h = (value ^ snapshotChecksum) * 0x9E3779B1 + index;
+        h = (h ^ (h >>> 16)) * 0x85EBCA6B;
+        return h ^ (h >>> 13) ^ 0x5A5A5A5A;
+    }
+
+    /**
+     * Gets the file holding the last snapshot.
+     *
+     * @return the snapshot file
+     */
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    /**
+     * Gets the file the changes since the last snapshot are appended to.
+     *
+     * @return the journal file
+     */
+    public Path getJournalPath() {
+        return journalPath;
+    }
+
+    /**
+     * Gets the number of records in the journal since the last snapshot.
+     *
+     * @return the number of journal records
+     */
+    public synchronized int getRecordCount() {
+        return records;
+    }
+}
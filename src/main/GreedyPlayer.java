@@ -0,0 +1,47 @@
+package main;
+
+import java.util.SplittableRandom;
+
+import static main.Sos.*;
+
+public class GreedyPlayer implements Strategy {
+    private final SplittableRandom random;
+    // Move list and group sizes, kept between moves so choosing one does not allocate
+    private int[] moves = new int[0];
+    private final int[] groupSizes = new int[2];
+
+    /**
+     * Constructor that creates a player which makes the highest-scoring SOS it
+     * can, and otherwise avoids setting up an SOS for its opponent.
+     *
+     * @param seed seed for the player's random number generator
+     */
+    public GreedyPlayer(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public int chooseMove(Sos game) {
+        if (moves.length < game.getMoveBufferSize()) {
+            moves = new int[game.getMoveBufferSize()];
+        }
+        game.generateOrderedMoves(moves, groupSizes);
+        int scoringMoves = groupSizes[SCORING_MOVES];
+        int bestMove = 0;
+        for (int i = 0; i < scoringMoves; i++) {
+            if (Move.pointsOf(moves[i]) > Move.pointsOf(bestMove)) {
+                bestMove = moves[i];
+            }
+        }
+        if (scoringMoves > 0) {
+            return Move.placementOf(bestMove);
+        }
+
+        // Otherwise a random move that leaves no SOS for the opponent, if any
+        int safeMoves = groupSizes[SAFE_MOVES];
+        if (safeMoves > 0) {
+            return Move.placementOf(moves[random.nextInt(safeMoves)]);
+        }
+        return RandomPlayer.randomMove(game, random);
+    }
+}
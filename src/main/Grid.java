@@ -0,0 +1,73 @@
+package main;
+
+public interface Grid {
+    /**
+     * Position of the S gain in the value returned by getGains.
+     */
+    int S_GAIN_SHIFT = 16;
+
+    /**
+     * Gets the contents of the given cell.
+     *
+     * @param c column to retrieve
+     * @param r row to retrieve
+     * @return Sos.EMPTY, Sos.O or Sos.S
+     */
+    int getCell(int c, int r);
+
+    /**
+     * Sets the contents of the given cell.
+     *
+     * @param c column to set
+     * @param r row to set
+     * @param m Sos.EMPTY, Sos.O or Sos.S
+     */
+    void setCell(int c, int r, int m);
+
+    /**
+     * Get the length of each side of the grid.
+     *
+     * @return the length of each side of the grid
+     */
+    int getLength();
+
+    /**
+     * Gets the number of potential additional SOS's if a move m is made
+     * at a given empty spot on the grid.
+     *
+     * @param c column that could be played in
+     * @param r row that could be played in
+     * @param m move that could be played
+     * @return number of potential additional SOS's
+     */
+    int getAdditionalSOS(int c, int r, int m);
+
+    /**
+     * Gets the number of potential additional SOS's of both pieces at a given
+     * empty spot on the grid. Grids that can read the spot's neighborhood once
+     * for both pieces override this.
+     *
+     * @param c column that could be played in
+     * @param r row that could be played in
+     * @return the points an O would make in the low 16 bits, and the points
+     *         an S would make shifted left by S_GAIN_SHIFT
+     */
+    default int getGains(int c, int r) {
+        return getAdditionalSOS(c, r, Sos.O) | getAdditionalSOS(c, r, Sos.S) << S_GAIN_SHIFT;
+    }
+
+    /**
+     * Gets every filled cell of the grid.
+     *
+     * @return the filled cells, as row * getLength() + column, in no
+     *         particular order
+     */
+    int[] getFilledCells();
+
+    /**
+     * Creates an independent copy of this grid.
+     *
+     * @return a copy of this grid
+     */
+    Grid copy();
+}
@@ -0,0 +1,22 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("main.Latency")
+@Label("SOS Operation Latency")
+@Category("SOS")
+@Description("How long a timed game, board or file operation took")
+@StackTrace(false)
+public class LatencyEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+}
@@ -0,0 +1,126 @@
+package main;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyRecorder implements LatencyRecorderMXBean {
+    private final String name;
+    // LongAdders spread concurrent updates over striped cells, so recording
+    // takes no lock and threads rarely contend on the same cache line
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    // Bucket 0 counts latencies of 0, and bucket i the ones from 2^(i-1) up
+    // to 2^i nanoseconds
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private static final int BUCKETS = Long.SIZE;
+
+    /**
+     * Constructor that creates an empty recorder.
+     *
+     * @param name the name of the operation being timed
+     */
+    public LatencyRecorder(String name) {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the time since an operation started, if metrics are enabled.
+     *
+     * @param start the time the operation started, from Metrics.start()
+     */
+    public void stop(long start) {
+        if (Metrics.ENABLED) {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records how long one run of the operation took, and emits it as a
+     * flight recorder event if one is being recorded.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(nanos)].increment();
+
+        LatencyEvent event = new LatencyEvent();
+        if (event.isEnabled()) {
+            event.operation = name;
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Gets the time that the given fraction of the runs took at most.
+     *
+     * @param fraction the fraction of runs, from 0 to 1
+     * @return the latency in nanoseconds, rounded up to a power of two but
+     * no more than the maximum
+     */
+    public long getPercentileNanos(double fraction) {
+        long total = count.sum();
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen > 0 && seen >= fraction * total) {
+                return i < Long.SIZE - 1 ? Math.min(1L << i, maxNanos.get()) : maxNanos.get();
+            }
+        }
+        return maxNanos.get();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanNanos() {
+        return totalNanos.sum() / (double) Math.max(count.sum(), 1);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    @Override
+    public long getMedianNanos() {
+        return getPercentileNanos(0.5);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return getPercentileNanos(0.99);
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d calls, mean %.0f ns, median %d ns, p99 %d ns, max %d ns",
+                name, getCount(), getMeanNanos(), getMedianNanos(), getP99Nanos(), getMaxNanos());
+    }
+}
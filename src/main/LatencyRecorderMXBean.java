@@ -0,0 +1,51 @@
+package main;
+
+public interface LatencyRecorderMXBean {
+    /**
+     * Gets the name of the operation being timed.
+     *
+     * @return the operation's name, e.g. Sos.playMove
+     */
+    String getName();
+
+    /**
+     * Gets the number of times the operation has run.
+     *
+     * @return the number of recorded latencies
+     */
+    long getCount();
+
+    /**
+     * Gets the average time the operation took.
+     *
+     * @return the mean latency in nanoseconds
+     */
+    double getMeanNanos();
+
+    /**
+     * Gets the longest time the operation took.
+     *
+     * @return the maximum latency in nanoseconds
+     */
+    long getMaxNanos();
+
+    /**
+     * Gets the time that half of the runs took at most.
+     *
+     * @return the median latency in nanoseconds, rounded up to a power of two
+     */
+    long getMedianNanos();
+
+    /**
+     * Gets the time that 99% of the runs took at most.
+     *
+     * @return the 99th percentile latency in nanoseconds, rounded up to a
+     * power of two
+     */
+    long getP99Nanos();
+
+    /**
+     * Forgets every latency recorded so far.
+     */
+    void reset();
+}
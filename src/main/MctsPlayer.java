@@ -0,0 +1,377 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static main.Sos.*;
+
+public class MctsPlayer implements Strategy {
+    private final Worker[] workers;
+    private final ExecutorService pool;
+    private final long timeBudget;
+    private final long playoutBudget;
+    private long playouts;
+    private long elapsed;
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 1000;
+    public static final double EXPLORATION = Math.sqrt(2);
+    // A leaf is only expanded once it has been visited this many times
+    public static final int EXPANSION_THRESHOLD = 4;
+    // Per thread; once a tree is full, playouts start from its leaves
+    public static final int MAX_NODES = 1 << 21;
+
+    /**
+     * Constructor that creates a player using every available processor and
+     * the default time budget.
+     */
+    public MctsPlayer() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_TIME_BUDGET_MILLIS, 0,
+                System.nanoTime());
+    }
+
+    /**
+     * Constructor that creates a root-parallel Monte Carlo tree search player.
+     * Every thread grows its own UCT tree from the same position, with its own
+     * random number generator, and the visit counts of the root moves are added
+     * up to choose the move.
+     *
+     * @param threads          the number of playout threads
+     * @param timeBudgetMillis the time budget per move in milliseconds, used
+     *                         when playoutBudget is 0
+     * @param playoutBudget    the number of playouts per move across all
+     *                         threads, or 0 to use the time budget instead
+     * @param seed             seed for the random number generators
+     */
+    public MctsPlayer(int threads, long timeBudgetMillis, long playoutBudget, long seed) {
+        timeBudget = timeBudgetMillis * 1_000_000;
+        this.playoutBudget = playoutBudget;
+        workers = new Worker[threads];
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(seeds.split());
+        }
+        // A single worker runs on the calling thread
+        pool = threads == 1 ? null : Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "sos-mcts");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Chooses the root move with the most visits across all threads.
+     *
+     * @param game the game to choose a move in, must not be over
+     * @return the chosen move, packed with Move.pack
+     */
+    @Override
+    public int chooseMove(Sos game) {
+        long start = System.nanoTime();
+        List<Future<Void>> results = new ArrayList<>();
+        for (int i = 0; i < workers.length; i++) {
+            long share = playoutBudget / workers.length + (i < playoutBudget % workers.length ? 1 : 0);
+            workers[i].prepare(new Sos(game), playoutBudget == 0 ? Long.MAX_VALUE : share,
+                    start + timeBudget);
+            if (pool == null) {
+                workers[i].call();
+            } else {
+                results.add(pool.submit(workers[i]));
+            }
+        }
+        try {
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Monte Carlo tree search failed", e);
+        }
+
+        // Every tree expands the root the same way, so child i is the same move
+        Worker first = workers[0];
+        int bestChild = 0;
+        long bestVisits = -1;
+        for (int i = 0; i < first.childCount[0]; i++) {
+            long visits = 0;
+            for (Worker worker : workers) {
+                visits += worker.visits[worker.firstChild[0] + i];
+            }
+            if (visits > bestVisits) {
+                bestVisits = visits;
+                bestChild = i;
+            }
+        }
+
+        playouts = 0;
+        for (Worker worker : workers) {
+            playouts += worker.playouts;
+        }
+        elapsed = System.nanoTime() - start;
+        return first.moves[first.firstChild[0] + bestChild];
+    }
+
+    /**
+     * Gets the number of playouts run for the last move choice.
+     *
+     * @return the number of playouts across all threads
+     */
+    public long getPlayouts() {
+        return playouts;
+    }
+
+    /**
+     * Gets the playout speed of the last move choice.
+     *
+     * @return playouts per second across all threads
+     */
+    public double getPlayoutsPerSecond() {
+        return elapsed == 0 ? 0 : playouts * 1e9 / elapsed;
+    }
+
+    /**
+     * Stops the playout threads. The player cannot be used afterwards.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * One thread's search tree. Nodes are stored in parallel arrays, and the
+     * buffers used by rollouts are kept between playouts, so a playout only
+     * allocates when the tree has to grow.
+     */
+    private static class Worker implements Callable<Void> {
+        private final SplittableRandom random;
+        private Sos game;
+        private long playoutLimit;
+        private long deadline;
+        private long playouts;
+        // Tree nodes: the move leading to the node, who made it, its children,
+        // and the total reward for the player who made it
+        private int[] moves = new int[0];
+        private boolean[] p1Moved = new boolean[0];
+        private int[] firstChild = new int[0];
+        private int[] childCount = new int[0];
+        private int[] visits = new int[0];
+        private double[] rewards = new double[0];
+        private int size;
+        private int[] path = new int[0];
+        // Empty cells during a rollout, and where each cell is in that list
+        private int[] cells = new int[0];
+        private int[] where = new int[0];
+
+        /**
+         * Constructor that creates a worker with its own random number generator.
+         *
+         * @param random the generator used for this worker's rollouts
+         */
+        Worker(SplittableRandom random) {
+            this.random = random;
+        }
+
+        /**
+         * Sets up a new search.
+         *
+         * @param copy     a copy of the game owned by this worker
+         * @param limit    the number of playouts to run
+         * @param stopTime the System.nanoTime() at which to stop
+         */
+        void prepare(Sos copy, long limit, long stopTime) {
+            game = copy;
+            playoutLimit = limit;
+            deadline = stopTime;
+            playouts = 0;
+            int cellCount = game.getLength() * game.getLength();
+            if (cells.length != cellCount) {
+                cells = new int[cellCount];
+                where = new int[cellCount];
+                path = new int[cellCount + 2];
+            }
+        }
+
+        @Override
+        public Void call() {
+            size = 0;
+            addNode(0, !game.getCurrentPlayer());
+            expand(0);
+            boolean timed = playoutLimit == Long.MAX_VALUE;
+            while (playouts < playoutLimit && (!timed || System.nanoTime() < deadline)) {
+                playout();
+                playouts++;
+            }
+            return null;
+        }
+
+        /**
+         * Runs one playout: selects a path down the tree with UCT, expands the
+         * leaf if it has been visited often enough, plays random moves to the end
+         * of the game and adds the result to every node on the path.
+         */
+        private void playout() {
+            int node = 0;
+            int depth = 0;
+            path[depth++] = node;
+            while (childCount[node] > 0) {
+                node = select(node);
+                play(moves[node]);
+                path[depth++] = node;
+            }
+            if (!game.gameIsOver() && visits[node] >= EXPANSION_THRESHOLD && expand(node)) {
+                node = select(node);
+                play(moves[node]);
+                path[depth++] = node;
+            }
+
+            int played = depth - 1 + rollout();
+            double reward = 0.5;
+            if (game.getP1Points() > game.getP2Points()) {
+                reward = 1;
+            } else if (game.getP2Points() > game.getP1Points()) {
+                reward = 0;
+            }
+            for (int i = 0; i < depth; i++) {
+                int n = path[i];
+                visits[n]++;
+                rewards[n] += p1Moved[n] ? reward : 1 - reward;
+            }
+            for (int i = 0; i < played; i++) {
+                game.retractMove();
+            }
+        }
+
+        /**
+         * Picks the child with the highest upper confidence bound, or the first
+         * child that has never been visited.
+         *
+         * @param node the node to pick a child of
+         * @return the chosen child
+         */
+        private int select(int node) {
+            double logVisits = Math.log(visits[node]);
+            int best = firstChild[node];
+            double bestBound = -1;
+            int end = firstChild[node] + childCount[node];
+            for (int child = firstChild[node]; child < end; child++) {
+                if (visits[child] == 0) {
+                    return child;
+                }
+                double bound = rewards[child] / visits[child]
+                        + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+                if (bound > bestBound) {
+                    bestBound = bound;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Adds a child for every legal move from the current position.
+         *
+         * @param node the node for the current position
+         * @return true if the node was expanded, false if the tree is full
+         */
+        private boolean expand(int node) {
+            int len = game.getLength();
+            int children = 2 * (len * len - game.getMoveCount());
+            if (size + children > MAX_NODES) {
+                return false;
+            }
+            boolean p1 = game.getCurrentPlayer();
+            firstChild[node] = size;
+            for (int r = 0; r < len; r++) {
+                for (int c = 0; c < len; c++) {
+                    if (game.getCell(c, r) == EMPTY) {
+                        addNode(Move.pack(c, r, O), p1);
+                        addNode(Move.pack(c, r, S), p1);
+                    }
+                }
+            }
+            childCount[node] = size - firstChild[node];
+            return true;
+        }
+
+        /**
+         * Appends a node to the tree, growing the arrays if needed.
+         *
+         * @param move the move leading to the node
+         * @param p1   true if Player 1 made the move
+         */
+        private void addNode(int move, boolean p1) {
+            if (size == moves.length) {
+                int capacity = Math.max(1024, 2 * size);
+                moves = Arrays.copyOf(moves, capacity);
+                p1Moved = Arrays.copyOf(p1Moved, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                childCount = Arrays.copyOf(childCount, capacity);
+                visits = Arrays.copyOf(visits, capacity);
+                rewards = Arrays.copyOf(rewards, capacity);
+            }
+            moves[size] = move;
+            p1Moved[size] = p1;
+            firstChild[size] = 0;
+            childCount[size] = 0;
+            visits[size] = 0;
+            rewards[size] = 0;
+            size++;
+        }
+
+        /**
+         * Plays random moves until the game ends. A scoring move is always taken
+         * when one exists; otherwise a random piece goes on a random empty cell.
+         *
+         * @return the number of moves played
+         */
+        private int rollout() {
+            int len = game.getLength();
+            int empty = 0;
+            for (int r = 0; r < len; r++) {
+                for (int c = 0; c < len; c++) {
+                    if (game.getCell(c, r) == EMPTY) {
+                        int cell = r * len + c;
+                        cells[empty] = cell;
+                        where[cell] = empty++;
+                    }
+                }
+            }
+
+            int played = 0;
+            while (!game.gameIsOver()) {
+                int cell;
+                int m;
+                int sCount = game.getScoringMoveCount(S);
+                int scoringCount = sCount + game.getScoringMoveCount(O);
+                if (scoringCount > 0) {
+                    int i = random.nextInt(scoringCount);
+                    m = i < sCount ? S : O;
+                    cell = game.getScoringMove(m, i < sCount ? i : i - sCount);
+                } else {
+                    cell = cells[random.nextInt(empty)];
+                    m = random.nextBoolean() ? S : O;
+                }
+                int last = cells[--empty];
+                cells[where[cell]] = last;
+                where[last] = where[cell];
+                game.playMove(cell % len, cell / len, m);
+                played++;
+            }
+            return played;
+        }
+
+        /**
+         * Plays a packed move on this worker's game.
+         *
+         * @param move the move to play
+         */
+        private void play(int move) {
+            game.playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class Metrics {
+    /**
+     * Set the sos.metrics system property to true to time the operations
+     * below. Otherwise this is a constant false, so the JIT compiles the
+     * timing away and it costs nothing.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("sos.metrics");
+    public static final String DOMAIN = "main";
+    private static final List<LatencyRecorder> RECORDERS = new CopyOnWriteArrayList<>();
+    public static final LatencyRecorder PLAY_MOVE = register("Sos.playMove");
+    public static final LatencyRecorder UNDO_MOVE = register("Sos.undoMove");
+    public static final LatencyRecorder POSSIBLE_SOS = register("Sos.possibleSOS");
+    public static final LatencyRecorder LOAD_GAME = register("Sos.loadGame");
+    public static final LatencyRecorder REWRITE_TO_FILE = register("SosIterator.rewriteToFile");
+    public static final LatencyRecorder PAINT = register("SosBoard.paintComponent");
+
+    private Metrics() {
+    }
+
+    /**
+     * Gets the time an operation starts at, to be passed to
+     * LatencyRecorder.stop when it ends.
+     *
+     * @return the current time in nanoseconds, or 0 if metrics are disabled
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Creates a recorder for an operation. When metrics are enabled, it is
+     * published as an MBean named DOMAIN:type=Latency,name=the name.
+     *
+     * @param name the name of the operation
+     * @return the recorder
+     */
+    public static LatencyRecorder register(String name) {
+        LatencyRecorder recorder = new LatencyRecorder(name);
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(recorder,
+                        new ObjectName(DOMAIN + ":type=Latency,name=" + ObjectName.quote(name)));
+            } catch (JMException e) {
+                System.out.println("Could not publish metric " + name + ": " + e.getMessage());
+            }
+        }
+        RECORDERS.add(recorder);
+        return recorder;
+    }
+
+    /**
+     * Gets every recorder created so far.
+     *
+     * @return the recorders
+     */
+    public static List<LatencyRecorder> getRecorders() {
+        return List.copyOf(RECORDERS);
+    }
+
+    /**
+     * Describes the latencies of every operation run so far.
+     *
+     * @return one line per operation
+     */
+    public static String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (LatencyRecorder recorder : RECORDERS) {
+            report.append(recorder).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+}
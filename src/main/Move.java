@@ -5,6 +5,13 @@ public class Move {
     private final int row;
     private final boolean p1Turn;
     private final int pointsGained;
+    private final int piece;
+    public static final int MAX_COORDINATE = 4095;
+    private static final int ROW_SHIFT = 12;
+    private static final int PIECE_SHIFT = 24;
+    private static final int PLAYER_SHIFT = 26;
+    private static final int POINTS_SHIFT = 27;
+    private static final int COORDINATE_MASK = 0xFFF;
 
     /**
      * Constructor that constructs a move based on given arguments.
@@ -15,12 +22,37 @@ public class Move {
      * @param points number of points gained by move
      */
     public Move(int c, int r, boolean p1Move, int points) {
+        this(c, r, Sos.EMPTY, p1Move, points);
+    }
+
+    /**
+     * Constructor that constructs a move based on given arguments.
+     *
+     * @param c      column move is played in
+     * @param r      row move is played in
+     * @param m      piece that was played
+     * @param p1Move true if Player 1's move, false if Player 2's move
+     * @param points number of points gained by move
+     */
+    public Move(int c, int r, int m, boolean p1Move, int points) {
         column = c;
         row = r;
+        piece = m;
         p1Turn = p1Move;
         pointsGained = points;
     }
 
+    /**
+     * Creates a view of a packed move.
+     *
+     * @param move a move packed with Move.pack, including player and points
+     * @return the unpacked move
+     */
+    public static Move of(int move) {
+        return new Move(columnOf(move), rowOf(move), pieceOf(move),
+                isP1TurnOf(move), pointsOf(move));
+    }
+
     /**
      * Gets the column where the move was played.
      *
@@ -56,4 +88,102 @@ public class Move {
     public int getPointsGained() {
         return pointsGained;
     }
+
+    /**
+     * Gets the piece that was played.
+     *
+     * @return Sos.S or Sos.O, or Sos.EMPTY if unknown
+     */
+    public int getPiece() {
+        return piece;
+    }
+
+    /**
+     * Packs a column, row and piece into a single int, so that search code can
+     * pass moves around without allocating.
+     *
+     * @param c     column of the move, at most MAX_COORDINATE
+     * @param r     row of the move, at most MAX_COORDINATE
+     * @param piece Sos.S or Sos.O
+     * @return the packed move
+     */
+    public static int pack(int c, int r, int piece) {
+        return c | (r << ROW_SHIFT) | (piece << PIECE_SHIFT);
+    }
+
+    /**
+     * Packs a move as it is recorded in a game's history: column, row and
+     * piece as in pack(c, r, piece), plus the player who made it and the
+     * points it gained.
+     *
+     * @param c      column of the move, at most MAX_COORDINATE
+     * @param r      row of the move, at most MAX_COORDINATE
+     * @param piece  Sos.S or Sos.O
+     * @param p1Move true if Player 1's move, false if Player 2's move
+     * @param points number of points gained by the move, at most 8
+     * @return the packed move
+     */
+    public static int pack(int c, int r, int piece, boolean p1Move, int points) {
+        return pack(c, r, piece) | (p1Move ? 1 << PLAYER_SHIFT : 0) | (points << POINTS_SHIFT);
+    }
+
+    /**
+     * Gets the column of a packed move.
+     *
+     * @param move a move created by pack
+     * @return the column index of the move
+     */
+    public static int columnOf(int move) {
+        return move & COORDINATE_MASK;
+    }
+
+    /**
+     * Gets the row of a packed move.
+     *
+     * @param move a move created by pack
+     * @return the row index of the move
+     */
+    public static int rowOf(int move) {
+        return (move >>> ROW_SHIFT) & COORDINATE_MASK;
+    }
+
+    /**
+     * Gets the piece of a packed move.
+     *
+     * @param move a move created by pack
+     * @return Sos.S or Sos.O
+     */
+    public static int pieceOf(int move) {
+        return (move >>> PIECE_SHIFT) & 3;
+    }
+
+    /**
+     * Checks if a packed history move was made by Player 1.
+     *
+     * @param move a move packed with pack(c, r, piece, p1Move, points)
+     * @return true if it was Player 1's move
+     */
+    public static boolean isP1TurnOf(int move) {
+        return (move & (1 << PLAYER_SHIFT)) != 0;
+    }
+
+    /**
+     * Gets the points gained by a packed history move.
+     *
+     * @param move a move packed with pack(c, r, piece, p1Move, points)
+     * @return the number of points gained
+     */
+    public static int pointsOf(int move) {
+        return move >>> POINTS_SHIFT;
+    }
+
+    /**
+     * Strips the player and points from a packed history move.
+     *
+     * @param move a move packed with pack(c, r, piece, p1Move, points)
+     * @return the same move as pack(c, r, piece) would create it
+     */
+    public static int placementOf(int move) {
+        return move & ((1 << PLAYER_SHIFT) - 1);
+    }
 }
@@ -0,0 +1,173 @@
+package main;
+
+import java.util.Arrays;
+
+public class MoveHistory {
+    private int[] entries;
+    private int size;
+    // Moves from size up to end have been undone and can be redone
+    private int end;
+    // Entries below this index have not changed since markUnchanged()
+    private int unchanged;
+
+    /**
+     * Constructor that creates an empty history with room for the given
+     * number of moves. It grows if more moves are pushed.
+     *
+     * @param capacity the number of moves to preallocate room for
+     */
+    public MoveHistory(int capacity) {
+        entries = new int[capacity];
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other the history to copy
+     */
+    public MoveHistory(MoveHistory other) {
+        entries = other.entries.clone();
+        size = other.size;
+        end = other.end;
+        unchanged = other.unchanged;
+    }
+
+    /**
+     * Records a move. If the move is the next one that could be redone, the
+     * rest of the redo moves are kept; otherwise they are discarded.
+     *
+     * @param move a move packed with Move.pack, including player and points
+     */
+    public void push(int move) {
+        if (size < end && entries[size] == move) {
+            size++;
+            return;
+        }
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(16, 2 * size));
+        }
+        entries[size++] = move;
+        end = size;
+    }
+
+    /**
+     * Removes the most recent move. It stays available to redo until a
+     * different move is pushed.
+     *
+     * @return the removed move
+     */
+    public int pop() {
+        int move = entries[--size];
+        if (size < unchanged) {
+            unchanged = size;
+        }
+        return move;
+    }
+
+    /**
+     * Discards the moves that could be redone.
+     */
+    public void discardRedo() {
+        end = size;
+    }
+
+    /**
+     * Returns true if there is an undone move that can be redone.
+     *
+     * @return true if there is a move to redo
+     */
+    public boolean canRedo() {
+        return size < end;
+    }
+
+    /**
+     * Gets the move that would be redone next, without redoing it.
+     *
+     * @return the next move to redo
+     */
+    public int peekRedo() {
+        return entries[size];
+    }
+
+    /**
+     * Moves back or forward along the recorded line of play without changing
+     * it. Moves after the new position stay available to redo.
+     *
+     * @param index the number of moves to leave played, from 0 to
+     *              recordedSize()
+     */
+    public void seek(int index) {
+        if (index < 0 || index > end) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        size = index;
+        unchanged = Math.min(unchanged, index);
+    }
+
+    /**
+     * Gets the number of moves played.
+     *
+     * @return the number of moves played
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of moves played plus the number that can be redone.
+     *
+     * @return the length of the whole recorded line of play
+     */
+    public int recordedSize() {
+        return end;
+    }
+
+    /**
+     * Gets a recorded move. Indices from size() to recordedSize() - 1 are
+     * moves that can be redone.
+     *
+     * @param i the index of the move, 0 being the first move of the game
+     * @return the packed move
+     */
+    public int get(int i) {
+        return entries[i];
+    }
+
+    /**
+     * Removes every move, including those that could be redone.
+     */
+    public void clear() {
+        size = 0;
+        end = 0;
+        unchanged = 0;
+    }
+
+    /**
+     * Gets the number of leading entries, counting from the first move of the
+     * game, that have not been popped or overwritten since markUnchanged() was
+     * last called. Lets a journal find what changed without comparing the
+     * whole history.
+     *
+     * @return the number of entries known to be unchanged
+     */
+    public int getUnchangedCount() {
+        return unchanged;
+    }
+
+    /**
+     * Marks every move played so far as unchanged.
+     */
+    public void markUnchanged() {
+        unchanged = size;
+    }
+
+    /**
+     * Lowers the number of entries known to be unchanged, e.g. to also count
+     * changes seen by another copy of the history.
+     *
+     * @param count the most entries that may be known to be unchanged
+     */
+    public void limitUnchanged(int count) {
+        unchanged = Math.min(unchanged, count);
+    }
+}
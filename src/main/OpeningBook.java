@@ -0,0 +1,470 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+public class OpeningBook {
+    private final ByteBuffer buffer;
+    private final int length;
+    private final int depth;
+    private final int directoryBits;
+    private final int entryCount;
+    private final int entriesOffset;
+    public static final int MAGIC = 0x534F534B; // "SOSK"
+    public static final int VERSION = 1;
+    public static final int NO_MOVE = -1;
+    // Rotations and reflections of a square board
+    public static final int SYMMETRIES = 8;
+    // Header layout, followed by the directory and then the entries sorted
+    // by key as unsigned numbers
+    private static final int VERSION_OFFSET = 4;
+    private static final int LENGTH_OFFSET = 8;
+    private static final int DEPTH_OFFSET = 12;
+    private static final int DIRECTORY_BITS_OFFSET = 16;
+    private static final int COUNT_OFFSET = 20;
+    private static final int HEADER_SIZE = 24;
+    // Entries hold the key, the move, the number of games and the average result
+    private static final int MOVE_OFFSET = 8;
+    private static final int ENTRY_SIZE = 20;
+    private static final int MAX_DIRECTORY_BITS = 20;
+    // Indices into the statistics of a position and move while building
+    private static final int KEY = 0;
+    private static final int MOVE = 1;
+    private static final int GAMES = 2;
+    private static final int SCORE = 3;
+
+    /**
+     * Constructor that wraps a buffer holding a whole, already validated book.
+     *
+     * @param contents the file's contents
+     */
+    private OpeningBook(ByteBuffer contents) {
+        buffer = contents;
+        length = contents.getInt(LENGTH_OFFSET);
+        depth = contents.getInt(DEPTH_OFFSET);
+        directoryBits = contents.getInt(DIRECTORY_BITS_OFFSET);
+        entryCount = contents.getInt(COUNT_OFFSET);
+        entriesOffset = HEADER_SIZE + 4 * ((1 << directoryBits) + 1);
+    }
+
+    /**
+     * Gets the usual file for the book of boards of the given length.
+     *
+     * @param len the length of the board's sides
+     * @return files/book-LENxLEN.sosk
+     */
+    public static Path defaultPath(int len) {
+        return Paths.get("files", "book-" + len + "x" + len + ".sosk");
+    }
+
+    /**
+     * Memory-maps a book and checks its header.
+     *
+     * @param path the file to open
+     * @return the opened book, or null if the file is not a valid book
+     */
+    public static OpeningBook open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int bits = contents.getInt(DIRECTORY_BITS_OFFSET);
+            if (contents.getInt(0) != MAGIC || contents.getShort(VERSION_OFFSET) != VERSION
+                    || bits < 0 || bits > MAX_DIRECTORY_BITS || channel.size() != HEADER_SIZE
+                    + 4L * ((1 << bits) + 1) + (long) ENTRY_SIZE * contents.getInt(COUNT_OFFSET)) {
+                return null;
+            }
+            return new OpeningBook(contents);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Builds a book from self-play and writes it to a file. For every
+     * position in the first plies of every game, the results of each move
+     * played from it are added up, positions that are rotations or
+     * reflections of each other being counted as one. The book keeps, for
+     * every position, the move with the best average result among those
+     * played at least minGames times. A result is the points the player to
+     * move gained over the other player from that position to the end of the
+     * game.
+     *
+     * @param path     the file to write
+     * @param len      the length of the board's sides
+     * @param depth    the number of plies of each game to add to the book
+     * @param games    the number of games to play
+     * @param threads  the number of worker threads
+     * @param player   creates the strategy both players use from a seed
+     * @param minGames the number of games a move needs to be kept
+     * @param seed     seed for the strategies
+     * @return the built book
+     * @throws IOException if the file cannot be written
+     */
+    public static OpeningBook build(Path path, int len, int depth, int games, int threads,
+                                    LongFunction<Strategy> player, int minGames, long seed)
+            throws IOException {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Map<Long, long[]>>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                Map<Long, long[]> stats = new HashMap<>();
+                for (int i = next.getAndIncrement(); i < games; i = next.getAndIncrement()) {
+                    SplittableRandom random = new SplittableRandom(seed + i * 0x9E3779B97F4A7C15L);
+                    Sos game = SelfPlay.playGame(len, player.apply(random.nextLong()),
+                            player.apply(random.nextLong()));
+                    addGame(game, depth, stats);
+                }
+                return stats;
+            }));
+        }
+
+        Map<Long, long[]> stats = new HashMap<>();
+        try {
+            for (Future<Map<Long, long[]>> result : results) {
+                for (Map.Entry<Long, long[]> move : result.get().entrySet()) {
+                    stats.merge(move.getKey(), move.getValue(), (a, b) -> {
+                        a[GAMES] += b[GAMES];
+                        a[SCORE] += b[SCORE];
+                        return a;
+                    });
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Building the opening book failed", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        return write(path, len, depth, chooseMoves(stats.values(), minGames));
+    }
+
+    /**
+     * Adds the positions and moves of the first plies of a finished game to
+     * the statistics.
+     *
+     * @param game  a finished game
+     * @param depth the number of plies to add
+     * @param stats the statistics, keyed by position and move
+     */
+    private static void addGame(Sos game, int depth, Map<Long, long[]> stats) {
+        int len = game.getLength();
+        int finalDifference = game.getP1Points() - game.getP2Points();
+        long[] hashes = new long[SYMMETRIES];
+        int difference = 0;
+        for (int i = 0; i < Math.min(depth, game.getMoveCount()); i++) {
+            int symmetry = canonicalSymmetry(hashes);
+            int move = game.getPackedMove(i);
+            int c = Move.columnOf(move);
+            int r = Move.rowOf(move);
+            int m = Move.pieceOf(move);
+            int bookMove = Move.pack(transformColumn(symmetry, c, r, len), transformRow(symmetry, c, r, len), m);
+            int result = Move.isP1TurnOf(move) ? finalDifference - difference : difference - finalDifference;
+
+            long key = hashes[symmetry];
+            long[] entry = stats.computeIfAbsent(key ^ mixMove(bookMove), k -> new long[]{key, bookMove, 0, 0});
+            entry[GAMES]++;
+            entry[SCORE] += result;
+
+            difference += Move.isP1TurnOf(move) ? Move.pointsOf(move) : -Move.pointsOf(move);
+            for (int t = 0; t < SYMMETRIES; t++) {
+                hashes[t] ^= Zobrist.cellKey(transformColumn(t, c, r, len), transformRow(t, c, r, len), m);
+            }
+        }
+    }
+
+    /**
+     * Keeps the best move of each position, dropping moves played fewer than
+     * minGames times.
+     *
+     * @param moves    the statistics of every position and move
+     * @param minGames the number of games a move needs to be kept
+     * @return the statistics of the best move of each position, sorted by
+     *         key as unsigned numbers
+     */
+    private static List<long[]> chooseMoves(Iterable<long[]> moves, int minGames) {
+        Map<Long, long[]> best = new HashMap<>();
+        for (long[] move : moves) {
+            if (move[GAMES] < minGames) {
+                continue;
+            }
+            long[] current = best.get(move[KEY]);
+            // Compares average results without dividing
+            if (current == null || move[SCORE] * current[GAMES] > current[SCORE] * move[GAMES]
+                    || move[SCORE] * current[GAMES] == current[SCORE] * move[GAMES]
+                    && move[GAMES] > current[GAMES]) {
+                best.put(move[KEY], move);
+            }
+        }
+        List<long[]> entries = new ArrayList<>(best.values());
+        entries.sort((a, b) -> Long.compareUnsigned(a[KEY], b[KEY]));
+        return entries;
+    }
+
+    /**
+     * Writes a book. The directory splits the keys by their top bits into
+     * about one bucket per entry, so a probe reads one bucket of the sorted
+     * entries.
+     *
+     * @param path    the file to write
+     * @param len     the length of the board's sides
+     * @param depth   the number of plies the book covers
+     * @param entries the entries, sorted by key as unsigned numbers
+     * @return the written book
+     * @throws IOException if the file cannot be written
+     */
+    private static OpeningBook write(Path path, int len, int depth, List<long[]> entries) throws IOException {
+        int bits = Math.min(MAX_DIRECTORY_BITS, 32 - Integer.numberOfLeadingZeros(Math.max(entries.size() - 1, 0)));
+        ByteBuffer contents = ByteBuffer.allocate(HEADER_SIZE + 4 * ((1 << bits) + 1) + ENTRY_SIZE * entries.size());
+        contents.putInt(MAGIC);
+        contents.putShort((short) VERSION);
+        contents.putShort((short) 0);
+        contents.putInt(len);
+        contents.putInt(depth);
+        contents.putInt(bits);
+        contents.putInt(entries.size());
+        int entry = 0;
+        for (int bucket = 0; bucket <= 1 << bits; bucket++) {
+            while (entry < entries.size() && bucketOf(entries.get(entry)[KEY], bits) < bucket) {
+                entry++;
+            }
+            contents.putInt(entry);
+        }
+        for (long[] e : entries) {
+            contents.putLong(e[KEY]);
+            contents.putInt((int) e[MOVE]);
+            contents.putInt((int) Math.min(e[GAMES], Integer.MAX_VALUE));
+            contents.putFloat((float) e[SCORE] / e[GAMES]);
+        }
+        contents.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+        }
+        OpeningBook book = open(path);
+        if (book == null) {
+            throw new IOException("Could not read back " + path);
+        }
+        return book;
+    }
+
+    /**
+     * Looks up the book move for a game's position. The position is keyed by
+     * the moves played so far, hashed in each of the board's symmetries, so
+     * finding it takes time in proportion to the book's depth rather than the
+     * board's size, and the lookup itself reads a single bucket. Probes
+     * neither lock nor allocate.
+     *
+     * @param game a game on a board of this book's length
+     * @return the move, packed with Move.pack, or NO_MOVE if the position is
+     *         not in the book
+     */
+    public int probe(Sos game) {
+        int plies = game.getMoveCount();
+        if (game.getLength() != length || plies >= depth || entryCount == 0) {
+            return NO_MOVE;
+        }
+        long key = 0;
+        int symmetry = 0;
+        for (int t = 0; t < SYMMETRIES; t++) {
+            long hash = 0;
+            for (int i = 0; i < plies; i++) {
+                int move = game.getPackedMove(i);
+                int c = Move.columnOf(move);
+                int r = Move.rowOf(move);
+                hash ^= Zobrist.cellKey(transformColumn(t, c, r, length), transformRow(t, c, r, length),
+                        Move.pieceOf(move));
+            }
+            if (t == 0 || Long.compareUnsigned(hash, key) < 0) {
+                key = hash;
+                symmetry = t;
+            }
+        }
+
+        int bucket = bucketOf(key, directoryBits);
+        int end = buffer.getInt(HEADER_SIZE + 4 * (bucket + 1));
+        for (int i = buffer.getInt(HEADER_SIZE + 4 * bucket); i < end; i++) {
+            int offset = entriesOffset + i * ENTRY_SIZE;
+            if (buffer.getLong(offset) == key) {
+                int move = buffer.getInt(offset + MOVE_OFFSET);
+                int c = Move.columnOf(move);
+                int r = Move.rowOf(move);
+                int gameC = untransformColumn(symmetry, c, r, length);
+                int gameR = untransformRow(symmetry, c, r, length);
+                // Guards against the unlikely collision of two positions' keys
+                return game.getCell(gameC, gameR) == Sos.EMPTY
+                        ? Move.pack(gameC, gameR, Move.pieceOf(move)) : NO_MOVE;
+            }
+        }
+        return NO_MOVE;
+    }
+
+    /**
+     * Chooses the symmetry whose hash is the position's key: the smallest
+     * hash as an unsigned number.
+     *
+     * @param hashes the position's hash in each symmetry
+     * @return the symmetry giving the key
+     */
+    private static int canonicalSymmetry(long[] hashes) {
+        int symmetry = 0;
+        for (int t = 1; t < SYMMETRIES; t++) {
+            if (Long.compareUnsigned(hashes[t], hashes[symmetry]) < 0) {
+                symmetry = t;
+            }
+        }
+        return symmetry;
+    }
+
+    /**
+     * Gets the column a cell moves to under a symmetry. Bit 0 of the symmetry
+     * mirrors columns, bit 1 mirrors rows and bit 2 then swaps rows and
+     * columns.
+     *
+     * @param t   the symmetry, from 0 to SYMMETRIES - 1
+     * @param c   column of the cell
+     * @param r   row of the cell
+     * @param len the length of the board's sides
+     * @return the column of the transformed cell
+     */
+    private static int transformColumn(int t, int c, int r, int len) {
+        return (t & 4) == 0 ? mirror(t & 1, c, len) : mirror(t & 2, r, len);
+    }
+
+    /**
+     * Gets the row a cell moves to under a symmetry.
+     *
+     * @param t   the symmetry, from 0 to SYMMETRIES - 1
+     * @param c   column of the cell
+     * @param r   row of the cell
+     * @param len the length of the board's sides
+     * @return the row of the transformed cell
+     */
+    private static int transformRow(int t, int c, int r, int len) {
+        return (t & 4) == 0 ? mirror(t & 2, r, len) : mirror(t & 1, c, len);
+    }
+
+    /**
+     * Gets the column a transformed cell came from.
+     *
+     * @param t   the symmetry the cell was transformed by
+     * @param c   column of the transformed cell
+     * @param r   row of the transformed cell
+     * @param len the length of the board's sides
+     * @return the column of the original cell
+     */
+    private static int untransformColumn(int t, int c, int r, int len) {
+        return mirror(t & 1, (t & 4) == 0 ? c : r, len);
+    }
+
+    /**
+     * Gets the row a transformed cell came from.
+     *
+     * @param t   the symmetry the cell was transformed by
+     * @param c   column of the transformed cell
+     * @param r   row of the transformed cell
+     * @param len the length of the board's sides
+     * @return the row of the original cell
+     */
+    private static int untransformRow(int t, int c, int r, int len) {
+        return mirror(t & 2, (t & 4) == 0 ? r : c, len);
+    }
+
+    /**
+     * Mirrors a coordinate if asked to.
+     *
+     * @param flip     nonzero to mirror
+     * @param position the coordinate
+     * @param len      the length of the board's sides
+     * @return the coordinate, mirrored if flip is nonzero
+     */
+    private static int mirror(int flip, int position, int len) {
+        return flip == 0 ? position : len - 1 - position;
+    }
+
+    /**
+     * Gets the directory bucket of a key.
+     *
+     * @param key  the key
+     * @param bits the number of top bits of the key used
+     * @return the bucket
+     */
+    private static int bucketOf(long key, int bits) {
+        return bits == 0 ? 0 : (int) (key >>> (64 - bits));
+    }
+
+    /**
+     * Scrambles a move to combine it with a position's key.
+     *
+     * @param move the move
+     * @return a well-mixed value
+     */
+    private static long mixMove(int move) {
+        return Zobrist.cellKey(move, 0, 3);
+    }
+
+    /**
+     * Gets the length of the boards this book is for.
+     *
+     * @return the length of the board's sides
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the number of plies the book covers.
+     *
+     * @return the depth of the book
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the number of positions in the book.
+     *
+     * @return the number of entries
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Builds a book for boards of the given length in its default file.
+     * Arguments: length depth games threads player [minGames] [seed]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.out.println("Usage: OpeningBook length depth games threads player [minGames] [seed]");
+            System.out.println("Players: random, greedy, alphabeta, mcts");
+            return;
+        }
+        int len = Integer.parseInt(args[0]);
+        long start = System.nanoTime();
+        OpeningBook book = build(defaultPath(len), len, Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]), SelfPlay.strategy(args[4]),
+                args.length > 5 ? Integer.parseInt(args[5]) : 1, args.length > 6 ? Long.parseLong(args[6]) : 0);
+        System.out.printf("Wrote %d positions to %s in %.1f s%n", book.getEntryCount(), defaultPath(len),
+                (System.nanoTime() - start) / 1e9);
+    }
+}
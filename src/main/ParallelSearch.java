@@ -0,0 +1,176 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ParallelSearch implements Strategy {
+    private final AlphaBetaPlayer[] players;
+    private final AtomicBoolean stop;
+    private final ExecutorService pool;
+    private final long timeBudgetMillis;
+    private final TranspositionTable table;
+    private double baselineNodesPerSecond;
+    private long elapsed;
+    public static final int DEFAULT_TABLE_MEGABYTES = 256;
+
+    /**
+     * Constructor that creates a search using every available processor and
+     * the default time budget.
+     */
+    public ParallelSearch() {
+        this(Runtime.getRuntime().availableProcessors(), AlphaBetaPlayer.DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * Constructor that creates a lazy SMP search: every thread runs its own
+     * alpha-beta search of the whole position on its own copy of the game,
+     * and the threads share work only through a common transposition table.
+     *
+     * @param threads          the number of search threads
+     * @param timeBudgetMillis the time budget per move in milliseconds
+     */
+    public ParallelSearch(int threads, long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+        table = new TranspositionTable(DEFAULT_TABLE_MEGABYTES);
+        stop = new AtomicBoolean();
+        players = new AlphaBetaPlayer[threads];
+        for (int i = 0; i < threads; i++) {
+            players[i] = new AlphaBetaPlayer(timeBudgetMillis, table, stop, i);
+        }
+        pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "sos-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Chooses a move by searching the position on every thread at once. The
+     * helpers are stopped as soon as the main thread finishes, and the move
+     * from the thread that completed the deepest iteration is played.
+     *
+     * @param game the game to choose a move in, must not be over
+     * @return the chosen move, packed with Move.pack
+     */
+    @Override
+    public int chooseMove(Sos game) {
+        long start = System.nanoTime();
+        stop.set(false);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (AlphaBetaPlayer player : players) {
+            Sos copy = new Sos(game);
+            results.add(pool.submit(() -> player.chooseMove(copy)));
+        }
+
+        int bestMove = 0;
+        int bestDepth = -1;
+        try {
+            for (int i = 0; i < players.length; i++) {
+                int move = results.get(i).get();
+                if (i == 0) {
+                    stop.set(true);
+                }
+                if (players[i].getCompletedDepth() > bestDepth) {
+                    bestDepth = players[i].getCompletedDepth();
+                    bestMove = move;
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            stop.set(true);
+            throw new IllegalStateException("Parallel search failed", e);
+        }
+        elapsed = System.nanoTime() - start;
+        return bestMove;
+    }
+
+    /**
+     * Measures how fast a single thread searches the given position on its own,
+     * for use as the baseline of getParallelEfficiency().
+     *
+     * @param game the game to measure on, must not be over
+     */
+    public void measureBaseline(Sos game) {
+        AlphaBetaPlayer single = new AlphaBetaPlayer(timeBudgetMillis);
+        single.chooseMove(new Sos(game));
+        baselineNodesPerSecond = single.getNodesPerSecond();
+    }
+
+    /**
+     * Gets the number of search threads.
+     *
+     * @return the number of search threads
+     */
+    public int getThreadCount() {
+        return players.length;
+    }
+
+    /**
+     * Gets the search speed of one thread during the last move choice.
+     *
+     * @param thread the index of the thread
+     * @return nodes searched per second by that thread
+     */
+    public double getNodesPerSecond(int thread) {
+        return players[thread].getNodesPerSecond();
+    }
+
+    /**
+     * Gets the combined search speed of all threads during the last move choice.
+     *
+     * @return nodes searched per second by all threads together
+     */
+    public double getTotalNodesPerSecond() {
+        long nodes = 0;
+        for (AlphaBetaPlayer player : players) {
+            nodes += player.getNodes();
+        }
+        return elapsed == 0 ? 0 : nodes * 1e9 / elapsed;
+    }
+
+    /**
+     * Gets the combined search speed divided by the number of threads times the
+     * speed of one thread searching alone. 1.0 means perfectly linear scaling.
+     * The single-thread speed comes from measureBaseline() if it has been
+     * called, and otherwise from the fastest thread of the last move choice.
+     *
+     * @return the parallel efficiency of the last move choice
+     */
+    public double getParallelEfficiency() {
+        double baseline = baselineNodesPerSecond;
+        if (baseline == 0) {
+            for (AlphaBetaPlayer player : players) {
+                baseline = Math.max(baseline, player.getNodesPerSecond());
+            }
+        }
+        return baseline == 0 ? 0 : getTotalNodesPerSecond() / (players.length * baseline);
+    }
+
+    /**
+     * Describes the speed of every thread during the last move choice.
+     *
+     * @return a multi-line report of nodes/sec per thread and the efficiency
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < players.length; i++) {
+            report.append(String.format("thread %d: %,.0f nodes/sec, depth %d%n",
+                    i, getNodesPerSecond(i), players[i].getCompletedDepth()));
+        }
+        report.append(String.format("total: %,.0f nodes/sec, efficiency %.2f",
+                getTotalNodesPerSecond(), getParallelEfficiency()));
+        return report.toString();
+    }
+
+    /**
+     * Stops the search threads. The search cannot be used afterwards.
+     */
+    public void shutdown() {
+        stop.set(true);
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,45 @@
+package main;
+
+import java.util.SplittableRandom;
+
+import static main.Sos.*;
+
+public class RandomPlayer implements Strategy {
+    private final SplittableRandom random;
+
+    /**
+     * Constructor that creates a player which plays a random piece on a random
+     * empty cell.
+     *
+     * @param seed seed for the player's random number generator
+     */
+    public RandomPlayer(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public int chooseMove(Sos game) {
+        return randomMove(game, random);
+    }
+
+    /**
+     * Picks a random piece on a random empty cell.
+     *
+     * @param game   the game to choose a move in, must not be over
+     * @param random the random number generator to use
+     * @return the chosen move, packed with Move.pack
+     */
+    public static int randomMove(Sos game, SplittableRandom random) {
+        int len = game.getLength();
+        int skip = random.nextInt(len * len - game.getMoveCount());
+        int m = random.nextBoolean() ? S : O;
+        for (int r = 0; r < len; r++) {
+            for (int c = 0; c < len; c++) {
+                if (game.getCell(c, r) == EMPTY && skip-- == 0) {
+                    return Move.pack(c, r, m);
+                }
+            }
+        }
+        throw new IllegalStateException("The board is full");
+    }
+}
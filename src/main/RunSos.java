@@ -38,7 +38,9 @@ public class RunSos implements Runnable {
         final JPanel boardAndPoints_panel = new JPanel();
         boardAndPoints_panel.setLayout(new BoxLayout(boardAndPoints_panel, BoxLayout.X_AXIS));
         boardAndPoints_panel.add(new JPanel().add(new JLabel("           "))); // adds empty space
-        boardAndPoints_panel.add(board);
+        // Scroll pane around the board, for boards too big to show whole
+        final JScrollPane boardScroll = new JScrollPane(board);
+        boardAndPoints_panel.add(boardScroll);
         boardAndPoints_panel.add(p1Points_panel);
         boardAndPoints_panel.add(p2Points_panel);
         frame.add(boardAndPoints_panel, BorderLayout.CENTER);
@@ -58,6 +60,10 @@ public class RunSos implements Runnable {
         final JButton undo = new JButton("Undo");
         undo.addActionListener(e -> board.undo());
         control_panel.add(undo);
+        // Redo button
+        final JButton redo = new JButton("Redo");
+        redo.addActionListener(e -> board.redo());
+        control_panel.add(redo);
         // Reset button
         final JButton reset = new JButton("Reset");
         reset.addActionListener(e -> {
@@ -65,6 +71,20 @@ public class RunSos implements Runnable {
             board.revalidate();
         });
         control_panel.add(reset);
+        // Board size button
+        final JButton size = new JButton("Size...");
+        size.addActionListener(e -> {
+            board.chooseSize();
+            board.revalidate();
+        });
+        control_panel.add(size);
+        // Zoom buttons
+        final JButton zoomIn = new JButton("+");
+        zoomIn.addActionListener(e -> board.zoom(SosBoard.ZOOM_STEP));
+        control_panel.add(zoomIn);
+        final JButton zoomOut = new JButton("-");
+        zoomOut.addActionListener(e -> board.zoom(1 / SosBoard.ZOOM_STEP));
+        control_panel.add(zoomOut);
         // Save button
         final JButton save = new JButton("Save");
         save.addActionListener(e -> board.save());
@@ -76,11 +96,37 @@ public class RunSos implements Runnable {
             board.revalidate();
         });
         control_panel.add(load);
+        // Computer opponent check box
+        final JCheckBox computer = new JCheckBox("Computer");
+        computer.addActionListener(e -> board.setComputerPlayer(computer.isSelected()));
+        control_panel.add(computer);
+        // Autosave check box
+        final JCheckBox autosave = new JCheckBox("Autosave");
+        autosave.addActionListener(e -> board.setAutosave(autosave.isSelected()));
+        control_panel.add(autosave);
         // Help button
         final JButton help = new JButton("Help");
         help.addActionListener(e -> openInstructions());
         control_panel.add(help);
 
+        // Move review controls, which seek along the recorded moves
+        final BoundedRangeModel moves = board.getMoveModel();
+        final JButton first = new JButton("|<");
+        first.addActionListener(e -> board.seek(0));
+        status_panel.add(first);
+        final JButton back = new JButton("<");
+        back.addActionListener(e -> board.seek(moves.getValue() - 1));
+        status_panel.add(back);
+        final JSlider moveSlider = new JSlider(moves);
+        moveSlider.setToolTipText("Move");
+        status_panel.add(moveSlider);
+        final JButton forward = new JButton(">");
+        forward.addActionListener(e -> board.seek(moves.getValue() + 1));
+        status_panel.add(forward);
+        final JButton last = new JButton(">|");
+        last.addActionListener(e -> board.seek(moves.getMaximum()));
+        status_panel.add(last);
+
         // Put the frame on the screen
         frame.pack();
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -112,9 +158,16 @@ public class RunSos implements Runnable {
                         "Click \"S\" or \"O\" to choose a move.\n" +
                         "Click inside of a square to play a move.\n" +
                         "Click \"Undo\" to undo a move.\n" +
+                        "Click \"Redo\" to redo an undone move.\n" +
+                        "Drag the move slider, or click \"|<\", \"<\", \">\" or \">|\", to go to any move " +
+                        "of the game without losing the later ones.\n" +
                         "Click \"Reset\" to reset the game and play on a new board.\n" +
-                        "Click \"Save\" to save the current game state.\n" +
-                        "Click \"Load\" to load the most recently saved game."
+                        "Click \"Size...\" to play on a board of a chosen size, up to " + Sos.MAX_LENGTH + ".\n" +
+                        "Click \"+\" or \"-\", or hold Ctrl and turn the mouse wheel, to zoom.\n" +
+                        "Click \"Save\" to save the current game state to the default save or to a slot.\n" +
+                        "Click \"Load\" to load the default save or a saved slot.\n" +
+                        "Check \"Computer\" to have the computer play as Player 2.\n" +
+                        "Check \"Autosave\" to save the game after every move."
         );
         instructionsText.setEditable(false);
         instructionsText.setWrapStyleWord(true);
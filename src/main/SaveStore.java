@@ -0,0 +1,438 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class SaveStore {
+    private final Path directory;
+    private FileChannel indexChannel;
+    private FileChannel dataChannel;
+    // A copy of the whole index file: the header, then one entry per slot
+    private ByteBuffer index;
+    private int slots;
+    private int generation;
+    private long liveBytes;
+    public static final String DEFAULT_DIRECTORY = "files/saves";
+    public static final String INDEX_FILE = "saves.idx";
+    public static final int MAGIC = 0x534F5349; // "SOSI"
+    public static final int VERSION = 1;
+    public static final int MAX_SLOTS = 1 << 16;
+    public static final int MAX_NAME_BYTES = 32;
+    public static final long COMPACTION_MINIMUM_BYTES = 1 << 20;
+    // Index header layout
+    private static final int VERSION_OFFSET = 4;
+    private static final int SLOTS_OFFSET = 8;
+    private static final int GENERATION_OFFSET = 12;
+    private static final int HEADER_SIZE = 16;
+    // Index entry layout; an entry with a size of 0 is an empty slot
+    private static final int OFFSET_FIELD = 0;
+    private static final int SIZE_FIELD = 8;
+    private static final int LENGTH_FIELD = 12;
+    private static final int MOVE_COUNT_FIELD = 16;
+    private static final int NAME_LENGTH_FIELD = 20;
+    private static final int TIMESTAMP_FIELD = 24;
+    private static final int NAME_FIELD = 32;
+    private static final int ENTRY_SIZE = 64;
+
+    /**
+     * Constructor that opens the save store in DEFAULT_DIRECTORY.
+     *
+     * @throws IOException if the store cannot be opened or created
+     */
+    public SaveStore() throws IOException {
+        this(Paths.get(DEFAULT_DIRECTORY));
+    }
+
+    /**
+     * Constructor that opens the save store in the given directory, creating
+     * it if needed. The directory holds an index file with a fixed-size entry
+     * per slot, and a data file the saved games are appended to. The whole
+     * index is read once, so listing slots needs no further reads and
+     * loading a slot takes a single read of the data file.
+     *
+     * @param directory the directory holding the store's files
+     * @throws IOException if the store cannot be opened or created
+     */
+    public SaveStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        indexChannel = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = indexChannel.size();
+        if (size == 0) {
+            index = ByteBuffer.allocate(HEADER_SIZE + 16 * ENTRY_SIZE);
+            index.putInt(0, MAGIC);
+            index.putInt(VERSION_OFFSET, VERSION);
+            writeIndex(0, HEADER_SIZE);
+        } else {
+            if (size < HEADER_SIZE || size > HEADER_SIZE + (long) MAX_SLOTS * ENTRY_SIZE) {
+                throw new IOException(directory.resolve(INDEX_FILE) + " is not a save index");
+            }
+            index = ByteBuffer.allocate((int) size);
+            while (index.hasRemaining() && indexChannel.read(index, index.position()) >= 0) {
+                // Keep reading until the whole index is in memory
+            }
+            if (index.getInt(0) != MAGIC || index.getInt(VERSION_OFFSET) != VERSION) {
+                throw new IOException(directory.resolve(INDEX_FILE) + " is not a save index");
+            }
+            slots = Math.min(index.getInt(SLOTS_OFFSET), (index.capacity() - HEADER_SIZE) / ENTRY_SIZE);
+            generation = index.getInt(GENERATION_OFFSET);
+        }
+        for (int slot = 0; slot < slots; slot++) {
+            liveBytes += index.getInt(entry(slot) + SIZE_FIELD);
+        }
+        dataChannel = FileChannel.open(dataFile(generation), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Saves a game to a slot, replacing whatever the slot held. The game is
+     * appended to the data file and forced to disk before the slot's index
+     * entry is rewritten, and the entry is forced before returning, so a crash
+     * of the process or the machine leaves either the old or the new game in
+     * the slot. When the
+     * data file holds more replaced games than live ones, it is compacted.
+     *
+     * @param slot    the slot to save to
+     * @param name    the name to show for the slot; it is shortened to
+     *                MAX_NAME_BYTES bytes of UTF-8
+     * @param encoded a game encoded by BinaryGameFile.encode()
+     * @throws IOException if the game cannot be written
+     */
+    public synchronized void save(int slot, String name, ByteBuffer encoded) throws IOException {
+        if (slot < 0 || slot >= MAX_SLOTS) {
+            throw new IllegalArgumentException("slot " + slot + " is out of range");
+        }
+        BinaryGameFile game = BinaryGameFile.wrap(encoded);
+        if (game == null) {
+            throw new IllegalArgumentException("not an encoded game");
+        }
+
+        long offset = dataChannel.size();
+        ByteBuffer contents = encoded.duplicate();
+        contents.clear();
+        long position = offset;
+        while (contents.hasRemaining()) {
+            position += dataChannel.write(contents, position);
+        }
+        // The entry must never reach the disk before the game it points to.
+        // Appending changes the file's length, so that is forced as well.
+        dataChannel.force(true);
+
+        int added = Math.max(slots, slot + 1);
+        if (slot >= slots) {
+            ensureCapacity(added);
+            // Entries past the slot count may be left over from a crash
+            for (int i = entry(slots); i < entry(added); i++) {
+                index.put(i, (byte) 0);
+            }
+            // Fill any skipped slots so the index file never has a gap
+            writeIndex(entry(slots), entry(slot) - entry(slots));
+        }
+        int entry = entry(slot);
+        liveBytes += encoded.capacity() - index.getInt(entry + SIZE_FIELD);
+        byte[] nameBytes = encodeName(name);
+        index.putLong(entry + OFFSET_FIELD, offset);
+        index.putInt(entry + SIZE_FIELD, encoded.capacity());
+        index.putInt(entry + LENGTH_FIELD, game.getLength());
+        index.putInt(entry + MOVE_COUNT_FIELD, game.getMoveCount());
+        index.putInt(entry + NAME_LENGTH_FIELD, nameBytes.length);
+        index.putLong(entry + TIMESTAMP_FIELD, System.currentTimeMillis());
+        for (int i = 0; i < MAX_NAME_BYTES; i++) {
+            index.put(entry + NAME_FIELD + i, i < nameBytes.length ? nameBytes[i] : 0);
+        }
+        writeIndex(entry, ENTRY_SIZE);
+        if (added > slots) {
+            // The header is written last, so it never counts an unwritten entry
+            indexChannel.force(true);
+            slots = added;
+            index.putInt(SLOTS_OFFSET, slots);
+            writeIndex(0, HEADER_SIZE);
+        }
+        indexChannel.force(true);
+
+        long garbage = dataChannel.size() - liveBytes;
+        if (garbage > liveBytes && garbage > COMPACTION_MINIMUM_BYTES) {
+            compact();
+        }
+    }
+
+    /**
+     * Loads the game saved in a slot.
+     *
+     * @param slot the slot to load
+     * @return the saved game, or null if the slot is empty or its game is
+     *         damaged
+     */
+    public synchronized BinaryGameFile load(int slot) {
+        if (!isUsed(slot)) {
+            return null;
+        }
+        int entry = entry(slot);
+        ByteBuffer contents = ByteBuffer.allocate(index.getInt(entry + SIZE_FIELD));
+        long position = index.getLong(entry + OFFSET_FIELD);
+        try {
+            while (contents.hasRemaining()) {
+                int read = dataChannel.read(contents, position + contents.position());
+                if (read < 0) {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return BinaryGameFile.wrap(contents);
+    }
+
+    /**
+     * Empties a slot.
+     *
+     * @param slot the slot to empty
+     * @throws IOException if the index cannot be written
+     */
+    public synchronized void delete(int slot) throws IOException {
+        if (!isUsed(slot)) {
+            return;
+        }
+        int entry = entry(slot);
+        liveBytes -= index.getInt(entry + SIZE_FIELD);
+        for (int i = 0; i < ENTRY_SIZE; i++) {
+            index.put(entry + i, (byte) 0);
+        }
+        writeIndex(entry, ENTRY_SIZE);
+    }
+
+    /**
+     * Rewrites the data file with only the games the slots still hold. The
+     * games are copied to a data file of the next generation, then an index
+     * naming that generation atomically replaces the old index, and only then
+     * is the old data file deleted.
+     *
+     * @throws IOException if the store cannot be rewritten
+     */
+    public synchronized void compact() throws IOException {
+        int nextGeneration = generation + 1;
+        Path nextData = dataFile(nextGeneration);
+        ByteBuffer nextIndex = ByteBuffer.allocate(index.capacity());
+        nextIndex.put(index.duplicate().clear());
+        nextIndex.putInt(GENERATION_OFFSET, nextGeneration);
+        try (FileChannel out = FileChannel.open(nextData, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                int entry = entry(slot);
+                int size = index.getInt(entry + SIZE_FIELD);
+                if (size == 0) {
+                    continue;
+                }
+                long offset = index.getLong(entry + OFFSET_FIELD);
+                for (long copied = 0; copied < size; ) {
+                    copied += dataChannel.transferTo(offset + copied, size - copied, out);
+                }
+                nextIndex.putLong(entry + OFFSET_FIELD, position);
+                position += size;
+            }
+            out.force(true);
+        }
+
+        Path indexFile = directory.resolve(INDEX_FILE);
+        Path temporary = directory.resolve(INDEX_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            nextIndex.clear();
+            while (nextIndex.hasRemaining()) {
+                out.write(nextIndex);
+            }
+            out.force(true);
+        }
+        indexChannel.close();
+        try {
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        dataChannel.close();
+        Files.delete(dataFile(generation));
+
+        index = nextIndex;
+        generation = nextGeneration;
+        dataChannel = FileChannel.open(nextData, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Closes the store's files.
+     */
+    public synchronized void close() {
+        try {
+            indexChannel.close();
+            dataChannel.close();
+        } catch (IOException e) {
+            System.out.println("Could not close the save store in " + directory);
+        }
+    }
+
+    /**
+     * Gets the number of slots, which is one more than the highest slot ever
+     * saved to. Some of them may be empty.
+     *
+     * @return the number of slots
+     */
+    public synchronized int getSlotCount() {
+        return slots;
+    }
+
+    /**
+     * Gets the first empty slot.
+     *
+     * @return the first slot that holds no game
+     */
+    public synchronized int getFreeSlot() {
+        int slot = 0;
+        while (isUsed(slot)) {
+            slot++;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns true if the slot holds a game.
+     *
+     * @param slot the slot to check
+     * @return true if the slot holds a game
+     */
+    public synchronized boolean isUsed(int slot) {
+        return slot >= 0 && slot < slots && index.getInt(entry(slot) + SIZE_FIELD) != 0;
+    }
+
+    /**
+     * Gets the name of the game saved in a slot.
+     *
+     * @param slot the slot to check
+     * @return the name the game was saved under
+     */
+    public synchronized String getName(int slot) {
+        int entry = entry(slot);
+        int length = Math.min(index.getInt(entry + NAME_LENGTH_FIELD), MAX_NAME_BYTES);
+        byte[] name = new byte[Math.max(length, 0)];
+        index.get(entry + NAME_FIELD, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the length of the sides of the board saved in a slot.
+     *
+     * @param slot the slot to check
+     * @return the length of each side of the board
+     */
+    public synchronized int getLength(int slot) {
+        return index.getInt(entry(slot) + LENGTH_FIELD);
+    }
+
+    /**
+     * Gets the number of moves played in the game saved in a slot.
+     *
+     * @param slot the slot to check
+     * @return the number of moves played
+     */
+    public synchronized int getMoveCount(int slot) {
+        return index.getInt(entry(slot) + MOVE_COUNT_FIELD);
+    }
+
+    /**
+     * Gets when the game in a slot was saved.
+     *
+     * @param slot the slot to check
+     * @return the time of the save, in milliseconds since the epoch
+     */
+    public synchronized long getTimestamp(int slot) {
+        return index.getLong(entry(slot) + TIMESTAMP_FIELD);
+    }
+
+    /**
+     * Gets the size of the data file, including games that have been replaced
+     * but not yet compacted away.
+     *
+     * @return the size of the data file in bytes
+     * @throws IOException if the size cannot be read
+     */
+    public synchronized long getDataSize() throws IOException {
+        return dataChannel.size();
+    }
+
+    /**
+     * Gets the position of a slot's entry in the index.
+     *
+     * @param slot the slot
+     * @return the index of the entry's first byte
+     */
+    private static int entry(int slot) {
+        return HEADER_SIZE + slot * ENTRY_SIZE;
+    }
+
+    /**
+     * Gets the data file of a generation of the store.
+     *
+     * @param generation the number of times the store has been compacted
+     * @return the data file
+     */
+    private Path dataFile(int generation) {
+        return directory.resolve("saves." + generation + ".dat");
+    }
+
+    /**
+     * Grows the in-memory index so it has room for the given number of slots.
+     *
+     * @param capacity the number of slots needed
+     */
+    private void ensureCapacity(int capacity) {
+        if (entry(capacity) <= index.capacity()) {
+            return;
+        }
+        int slotsRoom = Math.min(MAX_SLOTS, Math.max(capacity, 2 * (index.capacity() - HEADER_SIZE) / ENTRY_SIZE));
+        ByteBuffer larger = ByteBuffer.allocate(entry(slotsRoom));
+        larger.put(index.duplicate().clear());
+        index = larger;
+    }
+
+    /**
+     * Writes part of the in-memory index to the index file.
+     *
+     * @param start  the first byte to write
+     * @param length the number of bytes to write
+     * @throws IOException if the index cannot be written
+     */
+    private void writeIndex(int start, int length) throws IOException {
+        ByteBuffer part = index.duplicate();
+        part.limit(start + length).position(start);
+        while (part.hasRemaining()) {
+            indexChannel.write(part, part.position());
+        }
+    }
+
+    /**
+     * Encodes a slot name as UTF-8, dropping whole characters from the end
+     * until it fits in MAX_NAME_BYTES bytes.
+     *
+     * @param name the name
+     * @return the encoded name
+     */
+    private static byte[] encodeName(String name) {
+        String shortened = name == null ? "" : name;
+        byte[] bytes = shortened.getBytes(StandardCharsets.UTF_8);
+        while (bytes.length > MAX_NAME_BYTES) {
+            shortened = shortened.substring(0, shortened.offsetByCodePoints(shortened.length(), -1));
+            bytes = shortened.getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,141 @@
+package main;
+
+import static main.Sos.*;
+
+public class ScoringIndex {
+    private final Grid board;
+    private final int length;
+    private final CellSet sCells;
+    private final CellSet oCells;
+    // Offsets of every cell whose score depends on a given cell: the cells
+    // one and two steps away along the eight line directions.
+    private static final int[] NEIGHBOR_COLUMNS = {
+            -1, -2, 1, 2, 0, 0, 0, 0, -1, -2, 1, 2, -1, -2, 1, 2
+    };
+    private static final int[] NEIGHBOR_ROWS = {
+            0, 0, 0, 0, -1, -2, 1, 2, -1, -2, 1, 2, 1, 2, -1, -2
+    };
+
+    /**
+     * Constructor that indexes every scoring move on the given board.
+     *
+     * @param grid the board to index
+     */
+    public ScoringIndex(Grid grid) {
+        board = grid;
+        length = grid.getLength();
+        sCells = new CellSet(length * length);
+        oCells = new CellSet(length * length);
+        rebuild();
+    }
+
+    /**
+     * Constructor that copies another index onto a copy of its board.
+     *
+     * @param other the index to copy
+     * @param grid  a copy of the other index's board
+     */
+    public ScoringIndex(ScoringIndex other, Grid grid) {
+        board = grid;
+        length = other.length;
+        sCells = new CellSet(other.sCells);
+        oCells = new CellSet(other.oCells);
+    }
+
+    /**
+     * Rescans the board. Used when the board has been changed without going
+     * through update(). Only cells near a filled cell can score, so sparse
+     * boards are rescanned around their filled cells instead of everywhere.
+     */
+    public void rebuild() {
+        sCells.clear();
+        oCells.clear();
+        int[] filled = board.getFilledCells();
+        if ((long) filled.length * (NEIGHBOR_COLUMNS.length + 1) < (long) length * length) {
+            for (int cell : filled) {
+                update(cell % length, cell / length);
+            }
+            return;
+        }
+        for (int r = 0; r < length; r++) {
+            for (int c = 0; c < length; c++) {
+                refresh(c, r);
+            }
+        }
+    }
+
+    /**
+     * Updates the index after the given cell was filled or emptied. Only the
+     * cell itself and the cells within two steps of it along a line can change.
+     *
+     * @param c column that changed
+     * @param r row that changed
+     */
+    public void update(int c, int r) {
+        refresh(c, r);
+        for (int i = 0; i < NEIGHBOR_COLUMNS.length; i++) {
+            int nc = c + NEIGHBOR_COLUMNS[i];
+            int nr = r + NEIGHBOR_ROWS[i];
+            if (nc >= 0 && nc < length && nr >= 0 && nr < length) {
+                refresh(nc, nr);
+            }
+        }
+    }
+
+    /**
+     * Recomputes whether an S or an O scores at the given cell.
+     *
+     * @param c column to recompute
+     * @param r row to recompute
+     */
+    private void refresh(int c, int r) {
+        int cell = r * length + c;
+        if (board.getCell(c, r) == EMPTY && board.getAdditionalSOS(c, r, S) > 0) {
+            sCells.add(cell);
+        } else {
+            sCells.remove(cell);
+        }
+        if (board.getCell(c, r) == EMPTY && board.getAdditionalSOS(c, r, O) > 0) {
+            oCells.add(cell);
+        } else {
+            oCells.remove(cell);
+        }
+    }
+
+    /**
+     * Returns true if an SOS can be made anywhere on the board with a single
+     * S or O, false otherwise.
+     *
+     * @return true if there is at least one scoring move
+     */
+    public boolean hasScoringMove() {
+        return sCells.size() > 0 || oCells.size() > 0;
+    }
+
+    /**
+     * Gets the set of empty cells where playing piece m makes an SOS.
+     *
+     * @param m Sos.S or Sos.O
+     * @return the cells where m scores, indexed as row * length + column
+     */
+    public CellSet getScoringCells(int m) {
+        return m == S ? sCells : oCells;
+    }
+
+    /**
+     * Gets the number of distinct empty cells where an S or an O makes an SOS.
+     *
+     * @return the number of cells with at least one scoring move
+     */
+    public int getScoringCellCount() {
+        CellSet smaller = sCells.size() <= oCells.size() ? sCells : oCells;
+        CellSet larger = smaller == sCells ? oCells : sCells;
+        int count = larger.size();
+        for (int i = 0; i < smaller.size(); i++) {
+            if (!larger.contains(smaller.get(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,282 @@
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+public class SelfPlay {
+    private final LongFunction<Strategy> player1;
+    private final LongFunction<Strategy> player2;
+    private final int minLength;
+    private final int maxLength;
+    private final long seed;
+    private long games;
+    private long p1Wins;
+    private long p2Wins;
+    private long ties;
+    private long p1Points;
+    private long p2Points;
+    private long moves;
+    private long elapsed;
+    private GameArchive archive;
+    // Budgets used for the search-based strategies created by name. Neither
+    // depends on the clock, so their games can be repeated exactly.
+    private static final long SEARCH_NODES = 20_000;
+    private static final long MCTS_PLAYOUTS = 200;
+    // Indices into a worker's totals
+    private static final int P1_WINS = 0;
+    private static final int P2_WINS = 1;
+    private static final int TIES = 2;
+    private static final int P1_POINTS = 3;
+    private static final int P2_POINTS = 4;
+    private static final int MOVES = 5;
+    private static final int TOTALS = 6;
+
+    /**
+     * Constructor that sets up games between two strategies. Game i is played
+     * on a board whose length and whose players' seeds depend only on seed and
+     * i, so a run can be repeated exactly regardless of how many threads play it.
+     *
+     * @param player1   creates Player 1's strategy from a seed
+     * @param player2   creates Player 2's strategy from a seed
+     * @param minLength the smallest board length to play on
+     * @param maxLength the largest board length to play on
+     * @param seed      seed for board lengths and strategies
+     */
+    public SelfPlay(LongFunction<Strategy> player1, LongFunction<Strategy> player2,
+                    int minLength, int maxLength, long seed) {
+        this.player1 = player1;
+        this.player2 = player2;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.seed = seed;
+    }
+
+    /**
+     * Plays the given number of games on a pool of worker threads and adds
+     * their results to the totals.
+     *
+     * @param count   the number of games to play
+     * @param threads the number of worker threads
+     */
+    public void run(int count, int threads) {
+        long start = System.nanoTime();
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                long[] totals = new long[TOTALS];
+                for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                    playGame(games + i, totals);
+                }
+                return totals;
+            }));
+        }
+
+        try {
+            for (Future<long[]> result : results) {
+                long[] totals = result.get();
+                p1Wins += totals[P1_WINS];
+                p2Wins += totals[P2_WINS];
+                ties += totals[TIES];
+                p1Points += totals[P1_POINTS];
+                p2Points += totals[P2_POINTS];
+                moves += totals[MOVES];
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Self-play failed", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        games += count;
+        elapsed += System.nanoTime() - start;
+    }
+
+    /**
+     * Sets the archive every game played from now on is appended to, along
+     * with the seed it was played from.
+     *
+     * @param archive the archive, or null to not archive games
+     */
+    public void setArchive(GameArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Plays one complete game and adds its result to the totals.
+     *
+     * @param index  the number of the game, which determines its seed
+     * @param totals the worker's running totals
+     */
+    private void playGame(long index, long[] totals) {
+        long gameSeed = seed + index * 0x9E3779B97F4A7C15L;
+        SplittableRandom random = new SplittableRandom(gameSeed);
+        int len = minLength + random.nextInt(maxLength - minLength + 1);
+        Strategy p1 = player1.apply(random.nextLong());
+        Strategy p2 = player2.apply(random.nextLong());
+
+        Sos game = playGame(len, p1, p2);
+        if (archive != null) {
+            try {
+                archive.append(game, gameSeed);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        int winner = game.checkWinner();
+        if (winner == 1) {
+            totals[P1_WINS]++;
+        } else if (winner == 2) {
+            totals[P2_WINS]++;
+        } else {
+            totals[TIES]++;
+        }
+        totals[P1_POINTS] += game.getP1Points();
+        totals[P2_POINTS] += game.getP2Points();
+        totals[MOVES] += game.getMoveCount();
+    }
+
+    /**
+     * Plays one complete game between two strategies.
+     *
+     * @param len the length of the board's sides
+     * @param p1  Player 1's strategy
+     * @param p2  Player 2's strategy
+     * @return the finished game
+     */
+    public static Sos playGame(int len, Strategy p1, Strategy p2) {
+        Sos game = new Sos(len <= BitGrid.MAX_LENGTH ? Sos.BIT_GRID : Sos.ARRAY_GRID);
+        game.reset(len);
+        while (!game.gameIsOver()) {
+            int move = (game.getCurrentPlayer() ? p1 : p2).chooseMove(game);
+            game.playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+        }
+        return game;
+    }
+
+    /**
+     * Describes the results of every game played so far.
+     *
+     * @return win rates, average scores, SOS's per move and games per second
+     */
+    public String getReport() {
+        double n = Math.max(games, 1);
+        return String.format("games: %d (%,.1f games/sec)%n", games, games * 1e9 / Math.max(elapsed, 1))
+                + String.format("Player 1 wins: %.1f%%, Player 2 wins: %.1f%%, ties: %.1f%%%n",
+                100 * p1Wins / n, 100 * p2Wins / n, 100 * ties / n)
+                + String.format("average score: %.2f - %.2f%n", p1Points / n, p2Points / n)
+                + String.format("SOS per move: %.4f", (p1Points + p2Points) / (double) Math.max(moves, 1));
+    }
+
+    /**
+     * Gets the number of games played so far.
+     *
+     * @return the number of games played
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Gets the number of games Player 1 has won.
+     *
+     * @return Player 1's wins
+     */
+    public long getP1Wins() {
+        return p1Wins;
+    }
+
+    /**
+     * Gets the number of games Player 2 has won.
+     *
+     * @return Player 2's wins
+     */
+    public long getP2Wins() {
+        return p2Wins;
+    }
+
+    /**
+     * Gets the number of tied games.
+     *
+     * @return the number of ties
+     */
+    public long getTies() {
+        return ties;
+    }
+
+    /**
+     * Gets the total number of SOS's made in every game.
+     *
+     * @return the number of SOS's made
+     */
+    public long getTotalPoints() {
+        return p1Points + p2Points;
+    }
+
+    /**
+     * Gets the total number of moves played in every game.
+     *
+     * @return the number of moves played
+     */
+    public long getTotalMoves() {
+        return moves;
+    }
+
+    /**
+     * Creates a strategy from its name.
+     *
+     * @param name random, greedy, alphabeta or mcts
+     * @return a function creating that strategy from a seed
+     */
+    public static LongFunction<Strategy> strategy(String name) {
+        switch (name) {
+            case "random":
+                return RandomPlayer::new;
+            case "greedy":
+                return GreedyPlayer::new;
+            case "alphabeta":
+                return s -> new AlphaBetaPlayer(AlphaBetaPlayer.UNLIMITED, SEARCH_NODES,
+                        new TranspositionTable(1), new AtomicBoolean(), 0);
+            case "mcts":
+                return s -> new MctsPlayer(1, 0, MCTS_PLAYOUTS, s);
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+    }
+
+    /**
+     * Plays games without a GUI and prints the results.
+     * Arguments: games threads minLength maxLength player1 player2 [seed [archive]]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            System.out.println("Usage: SelfPlay games threads minLength maxLength player1 player2 [seed [archive]]");
+            System.out.println("Players: random, greedy, alphabeta, mcts");
+            return;
+        }
+        SelfPlay selfPlay = new SelfPlay(strategy(args[4]), strategy(args[5]),
+                Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                args.length > 6 ? Long.parseLong(args[6]) : 0);
+        GameArchive archive = args.length > 7 ? new GameArchive(Paths.get(args[7])) : null;
+        selfPlay.setArchive(archive);
+        try {
+            selfPlay.run(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        } finally {
+            if (archive != null) {
+                archive.close();
+            }
+        }
+        System.out.println(selfPlay.getReport());
+    }
+}
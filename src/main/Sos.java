@@ -1,41 +1,156 @@
 package main;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 public class Sos {
-    private int[][] board;
+    private final int gridType;
+    private Grid board;
+    private ScoringIndex scoring;
+    private long cellHash;
     private int p1Points;
     private int p2Points;
     private boolean p1Turn;
     private int piece;
     private boolean gameOver;
-    private LinkedList<Move> moves;
+    private MoveHistory moves;
     private SosIterator savedGame;
+    private boolean binarySaves;
+    private GameJournal journal;
+    // True if the journal's snapshot is of another game, so that the next
+    // save has to write a new snapshot
+    private boolean journalStale;
+    // Positions along the recorded line of play of checkpointHistory, one
+    // every getCheckpointInterval() moves, made as seekMove passes them.
+    // Entry i is the position after i intervals, or null if not made yet.
+    private Checkpoint[] checkpoints;
+    private MoveHistory checkpointHistory;
     public static final int EMPTY = 0;
     public static final int O = 1;
     public static final int S = 2;
+    public static final int ARRAY_GRID = 0;
+    public static final int BIT_GRID = 1;
+    public static final int CHUNKED_GRID = 2;
+    // Indices of the group sizes given by generateOrderedMoves
+    public static final int SCORING_MOVES = 0;
+    public static final int SAFE_MOVES = 1;
+    // Longer boards are always chunked, as arrays of them would mostly hold
+    // empty cells
+    public static final int MAX_ARRAY_LENGTH = 1024;
+    public static final int MAX_LENGTH = Move.MAX_COORDINATE + 1;
+    // Histories of longer games grow as they are played instead
+    public static final int PREALLOCATED_MOVES = 1 << 12;
+    // Checkpoints are at least this many moves apart, and further apart on
+    // boards that would otherwise need more than MAX_CHECKPOINTS of them
+    public static final int CHECKPOINT_INTERVAL = 16;
+    public static final int MAX_CHECKPOINTS = 64;
 
     /**
      * Constructor that sets up game state.
      */
     public Sos() {
+        this(ARRAY_GRID);
+    }
+
+    /**
+     * Constructor that sets up game state using the given board representation.
+     *
+     * @param grid ARRAY_GRID to store the board as a 2D array, BIT_GRID to store
+     *             it as packed S and O bit planes, CHUNKED_GRID to store only
+     *             the chunks of it that have been played in
+     */
+    public Sos(int grid) {
+        gridType = grid;
         reset();
     }
 
+    /**
+     * Copy constructor. The copy shares no mutable state with the original,
+     * so it can be played on by another thread, e.g. by a computer player.
+     *
+     * @param other the game to copy
+     */
+    public Sos(Sos other) {
+        gridType = other.gridType;
+        board = other.board.copy();
+        scoring = new ScoringIndex(other.scoring, board);
+        cellHash = other.cellHash;
+        p1Points = other.p1Points;
+        p2Points = other.p2Points;
+        p1Turn = other.p1Turn;
+        piece = other.piece;
+        gameOver = other.gameOver;
+        binarySaves = other.binarySaves;
+        moves = new MoveHistory(other.moves);
+        // The saved game is only opened if the copy is saved or loaded
+        savedGame = null;
+        journal = null;
+    }
+
     /**
      * Resets the game state to start a new game. The length of the board's sides is
      * randomly chosen to be between 3 and 15, inclusive.
      */
     public void reset() {
-        int len = (int) (Math.random() * 13) + 3;
-        board = new int[len][len];
+        reset((int) (Math.random() * 13) + 3);
+    }
+
+    /**
+     * Resets the game state to start a new game on a board of the given length.
+     *
+     * @param len the length of the board's sides, from 1 to MAX_LENGTH
+     * @throws IllegalArgumentException if the length is out of range
+     */
+    public void reset(int len) {
+        if (len < 1 || len > MAX_LENGTH) {
+            throw new IllegalArgumentException("Boards must be 1 to " + MAX_LENGTH + " cells long");
+        }
+        board = newGrid(len);
+        scoring = new ScoringIndex(board);
+        cellHash = 0;
         p1Points = 0;
         p2Points = 0;
         p1Turn = true;
         piece = S;
         gameOver = false;
-        moves = new LinkedList<>();
-        savedGame = new SosIterator();
+        moves = newHistory(len);
+        // Opened when the game is first saved or loaded, so that games that
+        // never are, e.g. ones hosted by a server, hold no open file
+        savedGame = null;
+        journalStale = true;
+    }
+
+    /**
+     * Creates an empty board of the given length using this game's board
+     * representation. Boards longer than BitGrid.MAX_LENGTH are stored as
+     * arrays instead of bit planes, and boards longer than MAX_ARRAY_LENGTH
+     * are always chunked.
+     *
+     * @param len the length of each side of the board
+     * @return an empty board
+     */
+    private Grid newGrid(int len) {
+        if (gridType == CHUNKED_GRID || len > MAX_ARRAY_LENGTH) {
+            return new ChunkedGrid(len);
+        } else if (gridType == BIT_GRID && len <= BitGrid.MAX_LENGTH) {
+            return new BitGrid(len);
+        }
+        return new ArrayGrid(len);
+    }
+
+    /**
+     * Creates an empty move history for a board of the given length. Room is
+     * made for every move of small boards, and for PREALLOCATED_MOVES moves of
+     * larger ones.
+     *
+     * @param len the length of each side of the board
+     * @return an empty history
+     */
+    private static MoveHistory newHistory(int len) {
+        return new MoveHistory((int) Math.min((long) len * len, PREALLOCATED_MOVES));
     }
 
     /**
@@ -50,18 +165,53 @@ public class Sos {
      * @return true if move is successful, false otherwise
      */
     public boolean playMove(int c, int r) {
-        if (board[r][c] != EMPTY || gameOver) {
+        return playMove(c, r, piece);
+    }
+
+    /**
+     * Plays piece m at the given cell without changing the selected piece.
+     * Otherwise behaves exactly like playMove(c, r).
+     *
+     * @param c column to play in
+     * @param r row to play in
+     * @param m the piece to play
+     * @return true if move is successful, false otherwise
+     */
+    public boolean playMove(int c, int r, int m) {
+        long start = Metrics.start();
+        boolean played = placePiece(c, r, m);
+        Metrics.PLAY_MOVE.stop(start);
+        return played;
+    }
+
+    /**
+     * Plays piece m at the given cell, as playMove does, without timing it.
+     *
+     * @param c column to play in
+     * @param r row to play in
+     * @param m the piece to play
+     * @return true if move is successful, false otherwise
+     */
+    private boolean placePiece(int c, int r, int m) {
+        if (board.getCell(c, r) != EMPTY || gameOver) {
             return false;
         }
 
-        int gainedPoints = getAdditionalSOS(c, r, piece);
+        int gainedPoints = getAdditionalSOS(c, r, m);
         if (p1Turn) {
             p1Points += gainedPoints;
         } else {
             p2Points += gainedPoints;
         }
-        board[r][c] = piece;
-        moves.addLast(new Move(c, r, p1Turn, gainedPoints));
+        board.setCell(c, r, m);
+        scoring.update(c, r);
+        cellHash ^= Zobrist.cellKey(c, r, m);
+        int move = Move.pack(c, r, m, p1Turn, gainedPoints);
+        if (checkpointHistory == moves && !(moves.canRedo() && moves.peekRedo() == move)) {
+            // The line of play changes here, so later checkpoints no longer apply
+            discardCheckpoints(moves.size());
+        }
+        moves.push(move);
 
         if (checkWinner() == 0 && gainedPoints == 0) {
             p1Turn = !p1Turn;
@@ -76,22 +226,164 @@ public class Sos {
      * @return true if undo is successful, false otherwise
      */
     public boolean undoMove() {
-        if (moves.isEmpty() || gameOver) {
+        long start = Metrics.start();
+        boolean undone = !gameOver && retractMove();
+        Metrics.UNDO_MOVE.stop(start);
+        return undone;
+    }
+
+    /**
+     * Undoes the most recent move, even if that move ended the game. Search
+     * code uses this to unmake moves. Returns true if there was a move to undo.
+     *
+     * @return true if undo is successful, false otherwise
+     */
+    public boolean retractMove() {
+        if (moves.size() == 0) {
             return false;
         }
 
-        Move move = moves.removeLast();
-        board[move.getRow()][move.getColumn()] = EMPTY;
-        if (move.isP1Turn()) {
-            p1Points -= move.getPointsGained();
+        gameOver = false;
+        int move = moves.pop();
+        int c = Move.columnOf(move);
+        int r = Move.rowOf(move);
+        cellHash ^= Zobrist.cellKey(c, r, Move.pieceOf(move));
+        board.setCell(c, r, EMPTY);
+        scoring.update(c, r);
+        if (Move.isP1TurnOf(move)) {
+            p1Points -= Move.pointsOf(move);
             p1Turn = true;
         } else {
-            p2Points -= move.getPointsGained();
+            p2Points -= Move.pointsOf(move);
             p1Turn = false;
         }
         return true;
     }
 
+    /**
+     * Replays the most recently undone move. Returns true if the redo is
+     * successful and false otherwise. Playing any other move discards the
+     * moves that could have been redone.
+     *
+     * @return true if redo is successful, false otherwise
+     */
+    public boolean redoMove() {
+        if (!moves.canRedo() || gameOver) {
+            return false;
+        }
+        int move = moves.peekRedo();
+        return playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+    }
+
+    /**
+     * Moves to the position after the given number of moves along the
+     * recorded line of play, undoing or redoing as many moves as it takes.
+     * Long seeks start from the nearest checkpoint instead, so a seek replays
+     * at most about getCheckpointInterval() moves once the checkpoints it
+     * needs have been made. No moves are discarded.
+     *
+     * @param index the number of moves to leave played, from 0 to
+     *              getRecordedMoveCount()
+     * @return true if the seek is successful, false if the index is out of range
+     */
+    public boolean seekMove(int index) {
+        if (index < 0 || index > moves.recordedSize()) {
+            return false;
+        }
+        int interval = getCheckpointInterval();
+        if (checkpointHistory != moves) {
+            checkpoints = new Checkpoint[moves.recordedSize() / interval + 1];
+            checkpointHistory = moves;
+        }
+        int slot = Math.min(index / interval, checkpoints.length - 1);
+        while (slot > 0 && checkpoints[slot] == null) {
+            slot--;
+        }
+        int from = slot * interval;
+
+        int current = moves.size();
+        if (index < current && current - index <= index - from + interval) {
+            while (moves.size() > index) {
+                retractMove();
+            }
+        } else if (index < current || current < from) {
+            // Restoring a checkpoint costs about as much as replaying an interval
+            restoreCheckpoint(slot);
+        }
+        while (moves.size() < index) {
+            int move = moves.peekRedo();
+            placePiece(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+            if (moves.size() % interval == 0) {
+                saveCheckpoint(moves.size() / interval);
+            }
+        }
+        gameOver = false;
+        checkWinner();
+        return true;
+    }
+
+    /**
+     * Gets the number of moves between checkpoints on this board.
+     *
+     * @return the checkpoint interval
+     */
+    public int getCheckpointInterval() {
+        long cells = (long) board.getLength() * board.getLength();
+        return (int) Math.max(CHECKPOINT_INTERVAL, (cells + MAX_CHECKPOINTS - 1) / MAX_CHECKPOINTS);
+    }
+
+    /**
+     * Records the current position as a checkpoint, if there is none there yet.
+     *
+     * @param slot the number of intervals played
+     */
+    private void saveCheckpoint(int slot) {
+        if (slot >= checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, Math.max(slot + 1, 2 * checkpoints.length));
+        }
+        if (checkpoints[slot] == null) {
+            Grid copy = board.copy();
+            checkpoints[slot] = new Checkpoint(copy, new ScoringIndex(scoring, copy),
+                    cellHash, p1Points, p2Points, p1Turn);
+        }
+    }
+
+    /**
+     * Moves to a checkpoint's position, keeping the whole recorded line of play.
+     *
+     * @param slot the number of intervals played at the checkpoint, 0 being
+     *             the empty board
+     */
+    private void restoreCheckpoint(int slot) {
+        Checkpoint checkpoint = slot == 0 ? null : checkpoints[slot];
+        if (checkpoint == null) {
+            board = newGrid(board.getLength());
+            scoring = new ScoringIndex(board);
+        } else {
+            // Copying the index is much faster than rebuilding it from the board
+            board = checkpoint.board.copy();
+            scoring = new ScoringIndex(checkpoint.scoring, board);
+        }
+        cellHash = checkpoint == null ? 0 : checkpoint.cellHash;
+        p1Points = checkpoint == null ? 0 : checkpoint.p1Points;
+        p2Points = checkpoint == null ? 0 : checkpoint.p2Points;
+        p1Turn = checkpoint == null || checkpoint.p1Turn;
+        gameOver = false;
+        moves.seek(slot * getCheckpointInterval());
+    }
+
+    /**
+     * Discards the checkpoints made after the given number of moves.
+     *
+     * @param index the number of moves after which checkpoints no longer apply
+     */
+    private void discardCheckpoints(int index) {
+        int interval = getCheckpointInterval();
+        for (int slot = index / interval + 1; slot < checkpoints.length; slot++) {
+            checkpoints[slot] = null;
+        }
+    }
+
     /**
      * Sets the current piece to play the given piece.
      *
@@ -108,7 +400,7 @@ public class Sos {
      *         has won, and 3 if tied
      */
     public int checkWinner() {
-        if (moves.size() == board.length * board.length) {
+        if (moves.size() == board.getLength() * board.getLength()) {
             gameOver = true;
             if (p1Points > p2Points) {
                 return 1;
@@ -124,22 +416,373 @@ public class Sos {
 
     /**
      * Saves the current game state. If the game has already ended, nothing happens.
+     *
+     * @return true if the game was saved, false if it has ended or could not
+     *         be written
      */
-    public void saveGame() {
-        if (!gameOver) {
-            savedGame.rewriteToFile(board, p1Points, p2Points, p1Turn, piece, moves);
+    public boolean saveGame() {
+        if (!gameOver && journal != null) {
+            try {
+                if (journalStale) {
+                    journal.compact(board, p1Points, p2Points, p1Turn, piece, moves);
+                    journalStale = false;
+                } else {
+                    journal.save(board, p1Points, p2Points, p1Turn, piece, moves);
+                }
+                return true;
+            } catch (IOException e) {
+                System.out.println("Could not save the game to " + journal.getJournalPath());
+                journal.requestCompaction();
+                return false;
+            }
+        } else if (!gameOver && binarySaves) {
+            return saveBinaryGame(Paths.get(BinaryGameFile.FILE_PATH));
+        } else if (!gameOver) {
+            if (savedGame == null) {
+                savedGame = new SosIterator();
+            }
+            boolean saved = savedGame.rewriteToFile(board, p1Points, p2Points, p1Turn, piece, moves);
             savedGame.reset();
+            return saved;
+        }
+        return false;
+    }
+
+    /**
+     * Saves the current game state to the given file in the binary format. If
+     * the game has already ended, nothing happens.
+     *
+     * @param path the file to save to
+     * @return true if the game was saved, false if it has ended or could not
+     *         be written
+     */
+    public boolean saveBinaryGame(Path path) {
+        if (gameOver) {
+            return false;
+        }
+        try {
+            BinaryGameFile.write(path, board, p1Points, p2Points, p1Turn, piece, moves);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Could not save the game to " + path);
+            return false;
+        }
+    }
+
+    /**
+     * Saves the current game state to a slot of a save store. If the game has
+     * already ended, nothing happens.
+     *
+     * @param store the store to save to
+     * @param slot  the slot to save to
+     * @param name  the name to show for the slot
+     * @return true if the game was saved, false if it has ended or could not
+     *         be written
+     */
+    public boolean saveGame(SaveStore store, int slot, String name) {
+        if (gameOver) {
+            return false;
+        }
+        try {
+            store.save(slot, name, BinaryGameFile.encode(board, p1Points, p2Points, p1Turn, piece, moves));
+            return true;
+        } catch (IOException e) {
+            System.out.println("Could not save the game to slot " + slot);
+            return false;
+        }
+    }
+
+    /**
+     * Loads the game state saved in a slot of a save store. If the slot is
+     * empty, nothing changes.
+     *
+     * @param store the store to load from
+     * @param slot  the slot to load
+     * @return true if a saved game was loaded
+     */
+    public boolean loadGame(SaveStore store, int slot) {
+        BinaryGameFile file = store.load(slot);
+        if (file == null && store.isUsed(slot)) {
+            System.out.println("Slot " + slot + " may have been tampered with");
+        } else if (file != null) {
+            loadBinaryGame(file);
+        }
+        return file != null;
+    }
+
+    /**
+     * Chooses whether saveGame() writes the binary format to
+     * BinaryGameFile.FILE_PATH instead of the CSV format to SosIterator.FILE_PATH.
+     *
+     * @param binary true to save in the binary format
+     */
+    public void setBinarySaves(boolean binary) {
+        binarySaves = binary;
+    }
+
+    /**
+     * Chooses whether saveGame() appends to a journal instead of rewriting a
+     * save file. Saving is then cheap enough to do after every move. The
+     * previous journal, if any, is closed.
+     *
+     * @param journal the journal to save to, or null to stop journaling
+     */
+    public void setJournal(GameJournal journal) {
+        if (this.journal != null) {
+            this.journal.close();
+        }
+        this.journal = journal;
+    }
+
+    /**
+     * Captures the current position in an immutable snapshot, which other
+     * threads can read and fork games from while this game goes on.
+     *
+     * @return the snapshot
+     */
+    public SosSnapshot snapshot() {
+        return new SosSnapshot(this);
+    }
+
+    /**
+     * Takes a copy of the game to be saved on another thread. Unlike one made
+     * by the copy constructor, the copy saves to the same files and journal as
+     * this game. Snapshots must be saved in the order they were taken.
+     *
+     * @return a copy to call saveGame() on
+     */
+    public Sos snapshotForSave() {
+        Sos copy = copyWithSaveFiles();
+        // The next snapshot only has to journal the changes after this one
+        journalStale = false;
+        moves.markUnchanged();
+        return copy;
+    }
+
+    /**
+     * Takes a copy of the game that saves to and loads from the same files and
+     * journal as this game, e.g. to load a game on another thread and then
+     * restore() it.
+     *
+     * @return a copy that shares this game's save files
+     */
+    public Sos copyWithSaveFiles() {
+        Sos copy = new Sos(this);
+        copy.journal = journal;
+        copy.journalStale = journalStale;
+        return copy;
+    }
+
+    /**
+     * Folds an earlier snapshot that will not be saved into this one, so that
+     * saving this snapshot also journals the changes made before the earlier
+     * one was taken. Used when rapid saves are coalesced.
+     *
+     * @param earlier a snapshot taken before this one, which is then discarded
+     */
+    public void mergeUnsaved(Sos earlier) {
+        moves.limitUnchanged(earlier.moves.getUnchangedCount());
+        journalStale |= earlier.journalStale;
+    }
+
+    /**
+     * Replaces the game state with that of another game, e.g. one loaded on
+     * another thread. This game keeps its own save settings and journal.
+     *
+     * @param loaded the game to take the state of, which must not be used
+     *               afterwards
+     */
+    public void restore(Sos loaded) {
+        board = loaded.board;
+        scoring = loaded.scoring;
+        cellHash = loaded.cellHash;
+        p1Points = loaded.p1Points;
+        p2Points = loaded.p2Points;
+        p1Turn = loaded.p1Turn;
+        piece = loaded.piece;
+        gameOver = loaded.gameOver;
+        moves = loaded.moves;
+        journalStale = true;
+    }
+
+    /**
+     * Loads the saved game state if there is one. When journaling, the state
+     * is recovered from the journal's snapshot and records. Otherwise,
+     * whichever of the binary and CSV save files was written most recently is
+     * loaded. If there is no saved game state, nothing changes.
+     *
+     * @return true if a saved game was loaded
+     */
+    public boolean loadGame() {
+        long start = Metrics.start();
+        boolean loaded = loadSavedGame();
+        Metrics.LOAD_GAME.stop(start);
+        return loaded;
+    }
+
+    /**
+     * Loads the saved game state, as loadGame() does, without timing it.
+     *
+     * @return true if a saved game was loaded
+     */
+    private boolean loadSavedGame() {
+        if (journal != null && Files.exists(journal.getSnapshotPath())) {
+            return recoverJournal();
+        }
+        Path binary = Paths.get(BinaryGameFile.FILE_PATH);
+        if (Files.exists(binary) && !isOlder(binary, Paths.get(SosIterator.FILE_PATH))) {
+            return loadFile(binary);
+        }
+        if (savedGame == null) {
+            savedGame = new SosIterator();
         }
+        return loadCsvGame(savedGame);
     }
 
     /**
-     * Loads the saved game state if there is one. If there is no saved game state,
-     * nothing changes.
+     * Loads a saved game state from the given file, which may be in either the
+     * binary or the CSV format. If the file holds no saved game state, nothing
+     * changes.
+     *
+     * @param path the file to load from
+     * @return true if a saved game was loaded
+     */
+    public boolean loadGame(Path path) {
+        long start = Metrics.start();
+        boolean loaded = loadFile(path);
+        Metrics.LOAD_GAME.stop(start);
+        return loaded;
+    }
+
+    /**
+     * Loads a saved game state from the given file, as loadGame(path) does,
+     * without timing it.
+     *
+     * @param path the file to load from
+     * @return true if a saved game was loaded
+     */
+    private boolean loadFile(Path path) {
+        BinaryGameFile file = BinaryGameFile.open(path);
+        if (file == null && BinaryGameFile.isBinary(path)) {
+            System.out.println(path + " may have been tampered with");
+            return false;
+        } else if (file == null) {
+            return loadCsvGame(new SosIterator(path.toString()));
+        }
+        loadBinaryGame(file);
+        return true;
+    }
+
+    /**
+     * Loads the journal's snapshot, then replays the journal's records on top
+     * of it. Replay stops at the first record that cannot be applied.
+     *
+     * @return true if the snapshot was loaded
+     */
+    private boolean recoverJournal() {
+        BinaryGameFile snapshot = BinaryGameFile.open(journal.getSnapshotPath());
+        if (snapshot == null) {
+            System.out.println(journal.getSnapshotPath() + " may have been tampered with");
+            return false;
+        }
+        loadBinaryGame(snapshot);
+        for (int record : GameJournal.readRecords(journal.getJournalPath(), snapshot.getChecksum())) {
+            if (!replay(record)) {
+                System.out.println(journal.getJournalPath() + " may have been tampered with");
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies one journal record.
+     *
+     * @param record a packed move, or one of GameJournal's other records
+     * @return true if the record was applied, false if it does not fit the game
+     */
+    private boolean replay(int record) {
+        if (record == GameJournal.UNDO) {
+            return retractMove();
+        } else if (record == GameJournal.DISCARD_REDO) {
+            moves.discardRedo();
+            return true;
+        } else if (record < 0) {
+            int m = record ^ GameJournal.SELECT_PIECE;
+            piece = m;
+            return m == O || m == S;
+        }
+        int c = Move.columnOf(record);
+        int r = Move.rowOf(record);
+        if (c >= board.getLength() || r >= board.getLength()) {
+            return false;
+        }
+        // Moves are played rather than copied so the points are recomputed
+        return playMove(c, r, Move.pieceOf(record)) && moves.get(moves.size() - 1) == record;
+    }
+
+    /**
+     * Loads a saved game state from an opened binary save file.
+     *
+     * @param file the file to load from
+     */
+    private void loadBinaryGame(BinaryGameFile file) {
+        gameOver = false;
+        p1Points = file.getP1Points();
+        p2Points = file.getP2Points();
+        p1Turn = file.isP1Turn();
+        piece = file.getPiece();
+        int boardLength = file.getLength();
+        board = newGrid(boardLength);
+        for (int r = 0; r < boardLength; r++) {
+            for (int c = 0; c < boardLength; c++) {
+                int m = file.getCell(c, r);
+                // The board starts empty, and chunked boards stay smaller
+                // when empty cells are not set
+                if (m != EMPTY) {
+                    board.setCell(c, r, m);
+                }
+            }
+        }
+        moves = newHistory(boardLength);
+        for (int i = 0; i < file.getRecordedCount(); i++) {
+            moves.push(file.getMove(i));
+        }
+        // Moves past the move count were undone and can still be redone
+        for (int i = file.getMoveCount(); i < file.getRecordedCount(); i++) {
+            moves.pop();
+        }
+        rebuildIndexes();
+    }
+
+    /**
+     * Returns true if the first file was last modified before the second.
+     *
+     * @param first  the first file
+     * @param second the second file
+     * @return true if the first file is older, false if not or if unknown
+     */
+    private static boolean isOlder(Path first, Path second) {
+        try {
+            return Files.exists(second)
+                    && Files.getLastModifiedTime(first).compareTo(Files.getLastModifiedTime(second)) < 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads a saved game state in the CSV format. If there is no saved game
+     * state, nothing changes.
+     *
+     * @param savedGame iterator over the lines of the saved game
+     * @return true if the saved game was loaded without errors
      */
-    public void loadGame() {
+    private boolean loadCsvGame(SosIterator savedGame) {
         if (!savedGame.hasNext()) {
-            return;
+            return false;
         }
+        boolean loaded = true;
 
         gameOver = false;
 
@@ -150,27 +793,51 @@ public class Sos {
             piece = Integer.parseInt(savedGame.next());
 
             int boardLength = Integer.parseInt(savedGame.next());
-            board = new int[boardLength][boardLength];
+            if (boardLength < 1 || boardLength > MAX_LENGTH) {
+                throw new IllegalArgumentException("bad board length " + boardLength);
+            }
+            board = newGrid(boardLength);
             for (int r = 0; r < boardLength; r++) {
                 String[] row = savedGame.next().split(",");
                 for (int c = 0; c < boardLength; c++) {
-                    board[r][c] = Integer.parseInt(row[c]);
+                    board.setCell(c, r, Integer.parseInt(row[c]));
                 }
             }
 
-            moves = new LinkedList<>();
+            moves = newHistory(boardLength);
             while (savedGame.hasNext()) {
                 String[] move = savedGame.next().split(",");
                 int column = Integer.parseInt(move[0]);
                 int row = Integer.parseInt(move[1]);
                 boolean turn = Boolean.parseBoolean(move[2]);
                 int points = Integer.parseInt(move[3]);
-                moves.addLast(new Move(column, row, turn, points));
+                // The file has no pieces, but the board shows which was played
+                int m = board.getCell(column, row);
+                moves.push(Move.pack(column, row, m, turn, points));
             }
 
             savedGame.reset();
         } catch (Exception e) {
             System.out.println("gamestate.csv may have been tampered with");
+            loaded = false;
+        }
+        rebuildIndexes();
+        return loaded;
+    }
+
+    /**
+     * Recomputes the scoring index and the hash after the board has been
+     * replaced.
+     */
+    private void rebuildIndexes() {
+        journalStale = true;
+        scoring = new ScoringIndex(board);
+        cellHash = 0;
+        int len = board.getLength();
+        for (int cell : board.getFilledCells()) {
+            int c = cell % len;
+            int r = cell / len;
+            cellHash ^= Zobrist.cellKey(c, r, board.getCell(c, r));
         }
     }
 
@@ -182,88 +849,219 @@ public class Sos {
      *         S or O
      */
     public boolean possibleSOS() {
-        for (int r = 0; r < board.length; r++) {
-            for (int c = 0; c < board.length; c++) {
-                if (getAdditionalSOS(c, r, O) > 0 || getAdditionalSOS(c, r, S) > 0) {
-                    return true;
-                }
-            }
+        long start = Metrics.start();
+        boolean possible = scoring.hasScoringMove();
+        Metrics.POSSIBLE_SOS.stop(start);
+        return possible;
+    }
+
+    /**
+     * Gets the number of empty cells where playing piece m makes an SOS.
+     *
+     * @param m the piece that could be played
+     * @return the number of scoring moves with piece m
+     */
+    public int getScoringMoveCount(int m) {
+        return scoring.getScoringCells(m).size();
+    }
+
+    /**
+     * Gets one of the empty cells where playing piece m makes an SOS, without
+     * copying the others.
+     *
+     * @param m the piece that could be played
+     * @param i which scoring cell to get, from 0 to getScoringMoveCount(m) - 1
+     * @return the cell, as row * getLength() + column
+     */
+    public int getScoringMove(int m, int i) {
+        return scoring.getScoringCells(m).get(i);
+    }
+
+    /**
+     * Gets the number of distinct empty cells where an S or an O makes an SOS.
+     *
+     * @return the number of cells with at least one scoring move
+     */
+    public int getScoringCellCount() {
+        return scoring.getScoringCellCount();
+    }
+
+    /**
+     * Fills the given buffer with every empty cell where playing piece m makes
+     * an SOS. Cells are written as row * getLength() + column, in no particular
+     * order.
+     *
+     * @param m     the piece that could be played
+     * @param cells buffer to fill, at least getScoringMoveCount(m) long
+     * @return the number of cells written
+     */
+    public int getScoringMoves(int m, int[] cells) {
+        CellSet scoringCells = scoring.getScoringCells(m);
+        int count = scoringCells.size();
+        for (int i = 0; i < count; i++) {
+            cells[i] = scoringCells.get(i);
         }
-        return false;
+        return count;
     }
 
     /**
-     * Gets the number of potential additional SOS's if a move m is made
-     * at a given empty spot on the board.
+     * Fills the given buffer with every legal move in one pass over the empty
+     * cells, reading each cell's neighborhood once for both pieces. Moves are
+     * packed with Move.pack, including the player to move and the points the
+     * move gains, in row-major order, O before S. Nothing is allocated.
      *
-     * @param c column that could be played in
-     * @param r row that could be played in
-     * @param m move that could be played
-     * @return number of potential additional SOS's
+     * @param moves buffer to fill, at least getMoveBufferSize() long
+     * @return the number of moves written
      */
-    public int getAdditionalSOS(int c, int r, int m) {
-        int sosCount = 0;
+    public int generateMoves(int[] moves) {
+        return generateMoves(moves, false, null);
+    }
 
-        if (m == O) {
-            // horizontal check
-            if (c - 1 >= 0 && c + 1 < board.length &&
-                    board[r][c - 1] == S && board[r][c + 1] == S) {
-                sosCount++;
-            }
-            // vertical check
-            if (r - 1 >= 0 && r + 1 < board.length &&
-                    board[r - 1][c] == S && board[r + 1][c] == S) {
-                sosCount++;
-            }
-            // diagonals check
-            if (c - 1 >= 0 && c + 1 < board.length && r - 1 >= 0 && r + 1 < board.length) {
-                if (board[r - 1][c - 1] == S && board[r + 1][c + 1] == S) {
-                    sosCount++;
+    /**
+     * Fills the given buffer with every legal move like generateMoves(moves),
+     * but puts scoring moves first, then safe moves, which score nothing but
+     * leave no SOS for the next player, then the rest. Moves keep no
+     * particular order within each group.
+     *
+     * @param moves      buffer to fill, at least getMoveBufferSize() long
+     * @param groupSizes if not null, is given the number of scoring moves at
+     *                   index SCORING_MOVES and of safe moves at SAFE_MOVES
+     * @return the number of moves written
+     */
+    public int generateOrderedMoves(int[] moves, int[] groupSizes) {
+        return generateMoves(moves, true, groupSizes);
+    }
+
+    /**
+     * Fills the given buffer with every legal move.
+     *
+     * @param moves      buffer to fill
+     * @param ordered    true to put scoring and safe moves first
+     * @param groupSizes if not null, is given the sizes of the groups
+     * @return the number of moves written
+     */
+    private int generateMoves(int[] moves, boolean ordered, int[] groupSizes) {
+        int len = board.getLength();
+        int scoringCells = scoring.getScoringCellCount();
+        int front = 0;
+        int back = moves.length;
+        int scoringMoves = 0;
+        for (int r = 0; r < len; r++) {
+            for (int c = 0; c < len; c++) {
+                if (board.getCell(c, r) != EMPTY) {
+                    continue;
                 }
-                if (board[r - 1][c + 1] == S && board[r + 1][c - 1] == S) {
-                    sosCount++;
+                int gains = board.getGains(c, r);
+                int oPoints = gains & ((1 << Grid.S_GAIN_SHIFT) - 1);
+                int sPoints = gains >>> Grid.S_GAIN_SHIFT;
+                int oMove = Move.pack(c, r, O, p1Turn, oPoints);
+                int sMove = Move.pack(c, r, S, p1Turn, sPoints);
+                if (!ordered) {
+                    moves[front++] = oMove;
+                    moves[front++] = sMove;
+                    continue;
                 }
-            }
-        } else {
-            // horizontal check
-            if (c - 2 >= 0 && board[r][c - 2] == S && board[r][c - 1] == O) {
-                sosCount++;
-            }
-            if (c + 2 < board.length && board[r][c + 1] == O && board[r][c + 2] == S) {
-                sosCount++;
-            }
-            // vertical check
-            if (r - 2 >= 0 && board[r - 2][c] == S && board[r - 1][c] == O) {
-                sosCount++;
-            }
-            if (r + 2 < board.length && board[r + 1][c] == O && board[r + 2][c] == S) {
-                sosCount++;
-            }
-            // left diagonals check
-            if (c - 2 >= 0) {
-                // upper left diagonal check
-                if (r - 2 >= 0 && board[r - 2][c - 2] == S && board[r - 1][c - 1] == O) {
-                    sosCount++;
+                // A quiet move can only be safe if no other cell scores
+                boolean quietCanBeSafe = scoringCells == (gains != 0 ? 1 : 0);
+                for (int m = O; m <= S; m++) {
+                    int move = m == O ? oMove : sMove;
+                    if ((m == O ? oPoints : sPoints) > 0) {
+                        scoringMoves++;
+                        moves[front++] = move;
+                    } else if (quietCanBeSafe && !opensSOS(c, r, m)) {
+                        moves[front++] = move;
+                    } else {
+                        moves[--back] = move;
+                    }
                 }
-                // lower left diagonal check
-                if (r + 2 < board.length && board[r + 2][c - 2] == S && board[r + 1][c - 1] == O) {
-                    sosCount++;
+            }
+        }
+        if (!ordered) {
+            return front;
+        }
+
+        // Move the scoring moves ahead of the safe moves
+        for (int i = 0, j = front - 1; i < scoringMoves; i++) {
+            if (Move.pointsOf(moves[i]) == 0) {
+                while (Move.pointsOf(moves[j]) == 0) {
+                    j--;
                 }
+                int safe = moves[i];
+                moves[i] = moves[j];
+                moves[j] = safe;
             }
-            // right diagonals check
-            if (c + 2 < board.length) {
-                // upper right diagonal check
-                if (r - 2 >= 0 && board[r - 2][c + 2] == S && board[r - 1][c + 1] == O) {
-                    sosCount++;
+        }
+        if (groupSizes != null) {
+            groupSizes[SCORING_MOVES] = scoringMoves;
+            groupSizes[SAFE_MOVES] = front - scoringMoves;
+        }
+        System.arraycopy(moves, back, moves, front, moves.length - back);
+        return front + moves.length - back;
+    }
+
+    /**
+     * Gets the size of buffer the move generators need: two moves for every empty
+     * cell.
+     *
+     * @return the number of legal moves
+     */
+    public int getMoveBufferSize() {
+        return 2 * (board.getLength() * board.getLength() - moves.size());
+    }
+
+    /**
+     * Returns true if playing piece m at the given empty cell would leave a
+     * cell next to it where an S or an O makes an SOS.
+     *
+     * @param c column that could be played in
+     * @param r row that could be played in
+     * @param m the piece that could be played
+     * @return true if the move sets up an SOS
+     */
+    private boolean opensSOS(int c, int r, int m) {
+        for (int dc = -1; dc <= 1; dc++) {
+            for (int dr = -1; dr <= 1; dr++) {
+                if (dc == 0 && dr == 0) {
+                    continue;
                 }
-                // lower right diagonal check
-                if (r + 2 < board.length && board[r + 2][c + 2] == S && board[r + 1][c + 1] == O) {
-                    sosCount++;
+                int near = cellOrWall(c + dc, r + dr);
+                int far = cellOrWall(c + 2 * dc, r + 2 * dr);
+                if (m == S && (near == EMPTY && far == S || near == O && far == EMPTY)) {
+                    // S _ S with an O to come, or S O _ with an S to come
+                    return true;
+                }
+                if (m == O && near == S && cellOrWall(c - dc, r - dr) == EMPTY) {
+                    // S O _ with an S to come
+                    return true;
                 }
             }
         }
+        return false;
+    }
+
+    /**
+     * Gets the contents of a cell, or -1 for cells off the board.
+     *
+     * @param c column to retrieve
+     * @param r row to retrieve
+     * @return Sos.EMPTY, Sos.O, Sos.S or -1
+     */
+    private int cellOrWall(int c, int r) {
+        int len = board.getLength();
+        return c >= 0 && c < len && r >= 0 && r < len ? board.getCell(c, r) : -1;
+    }
 
-        return sosCount;
+    /**
+     * Gets the number of potential additional SOS's if a move m is made
+     * at a given empty spot on the board.
+     *
+     * @param c column that could be played in
+     * @param r row that could be played in
+     * @param m move that could be played
+     * @return number of potential additional SOS's
+     */
+    public int getAdditionalSOS(int c, int r, int m) {
+        return board.getAdditionalSOS(c, r, m);
     }
 
     /**
@@ -285,7 +1083,7 @@ public class Sos {
      *         game board. -1 = empty, 0 = O, 1 = S
      */
     public int getCell(int c, int r) {
-        return board[r][c];
+        return board.getCell(c, r);
     }
 
     /**
@@ -294,7 +1092,69 @@ public class Sos {
      * @return the length of each side of the board
      */
     public int getLength() {
-        return board.length;
+        return board.getLength();
+    }
+
+    /**
+     * Gets a 64-bit Zobrist hash of the position: the contents of every cell,
+     * whose turn it is and the score difference. It is updated incrementally
+     * by every move and undo.
+     *
+     * @return the hash of the current position
+     */
+    public long getHash() {
+        return getPositionHash() ^ Zobrist.scoreKey(p1Points - p2Points);
+    }
+
+    /**
+     * Gets a 64-bit Zobrist hash of the cells and whose turn it is, ignoring
+     * the score. The points still to be won from a position do not depend on
+     * the score, so search code can share results between positions that
+     * differ only in score.
+     *
+     * @return the hash of the current cells and player to move
+     */
+    public long getPositionHash() {
+        return p1Turn ? cellHash : cellHash ^ Zobrist.SIDE;
+    }
+
+    /**
+     * Gets one of the moves played so far.
+     *
+     * @param i the index of the move, 0 being the first move of the game
+     * @return the move
+     */
+    public Move getMove(int i) {
+        return Move.of(moves.get(i));
+    }
+
+    /**
+     * Gets one of the moves played so far without unpacking it.
+     *
+     * @param i the index of the move, 0 being the first move of the game
+     * @return the move, packed with Move.pack, including player and points
+     */
+    public int getPackedMove(int i) {
+        return moves.get(i);
+    }
+
+    /**
+     * Gets the number of moves played so far.
+     *
+     * @return the number of moves played
+     */
+    public int getMoveCount() {
+        return moves.size();
+    }
+
+    /**
+     * Gets the number of moves played so far plus the number that can be
+     * redone, i.e. the furthest move seekMove can go to.
+     *
+     * @return the length of the recorded line of play
+     */
+    public int getRecordedMoveCount() {
+        return moves.recordedSize();
     }
 
     /**
@@ -332,4 +1192,33 @@ public class Sos {
     public int getPiece() {
         return piece;
     }
-}
\ No newline at end of file
+
+    private static class Checkpoint {
+        final Grid board;
+        final ScoringIndex scoring;
+        final long cellHash;
+        final int p1Points;
+        final int p2Points;
+        final boolean p1Turn;
+
+        /**
+         * Constructor that records a position.
+         *
+         * @param board    a copy of the board, not to be changed
+         * @param scoring  a copy of the scoring index on that board
+         * @param cellHash the hash of the board's pieces
+         * @param p1Points the points Player 1 has
+         * @param p2Points the points Player 2 has
+         * @param p1Turn   true if Player 1's turn, false if Player 2's turn
+         */
+        Checkpoint(Grid board, ScoringIndex scoring, long cellHash, int p1Points, int p2Points,
+                   boolean p1Turn) {
+            this.board = board;
+            this.scoring = scoring;
+            this.cellHash = cellHash;
+            this.p1Points = p1Points;
+            this.p2Points = p2Points;
+            this.p1Turn = p1Turn;
+        }
+    }
+}
@@ -2,20 +2,66 @@ package main;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import javax.swing.*;
 
-public class SosBoard extends JPanel {
+public class SosBoard extends JPanel implements Scrollable {
     private final Sos sos;
     private final JLabel status;
     private final JLabel p1Points;
     private final JLabel p2Points;
     private int squareLength;
     private float fontSize;
+    private final Strategy computer;
+    // Set to stop the computer's search, which runs in search while it lasts
+    private final AtomicBoolean stopSearch;
+    private SwingWorker<Integer, Void> search;
+    private boolean computerPlayer;
+    private boolean computerThinking;
+    private boolean autosave;
+    private SaveStore store;
+    private final BackgroundPersistence persistence;
+    private boolean loading;
+    private boolean bufferedRendering;
+    // The board as last painted, at the device scale it was painted at
+    private BufferedImage buffer;
+    private double bufferScale;
+    // Pre-rendered glyphs for each device font size
+    private final Map<Float, Glyphs> glyphs;
+    // Incremented whenever the position changes other than by a computer move,
+    // so that a search started on an old position is discarded.
+    private int position;
+    // The move the game is at out of the recorded moves, for a move slider
+    private final BoundedRangeModel moveModel;
+    // The position as of the last change, for analysis on other threads
+    private volatile SosSnapshot snapshot;
     public static final int SMALL_SQUARE_LENGTH = 40;
     public static final int BIG_SQUARE_LENGTH = 50;
     public static final float SMALL_FONT_SIZE = 24;
     public static final float BIG_FONT_SIZE = 30;
     public static final int SMALL_BIG_BOUNDARY = 10;
+    public static final String DEFAULT_SLOT = "Default save";
+    public static final String NEW_SLOT = "New slot...";
+    public static final double S_OFFSET = 0.35;
+    public static final double O_OFFSET = 0.28;
+    public static final double BASELINE_OFFSET = 0.7;
+    public static final int MIN_SQUARE_LENGTH = 8;
+    public static final int MAX_SQUARE_LENGTH = 120;
+    public static final double ZOOM_STEP = 1.25;
+    // Boards bigger than this, in device pixels, are painted without a back buffer
+    public static final int MAX_BUFFERED_SIDE = 4096;
+    public static final int MAX_VIEWPORT_SIDE = 700;
+    private static final int PICKED_DEFAULT = -1;
+    private static final int PICKED_NOTHING = -2;
 
     /**
      * Initializes the game board.
@@ -26,6 +72,14 @@ public class SosBoard extends JPanel {
         setFocusable(true);
 
         sos = new Sos();
+        stopSearch = new AtomicBoolean();
+        computer = new AlphaBetaPlayer(AlphaBetaPlayer.DEFAULT_TIME_BUDGET_MILLIS,
+                new TranspositionTable(AlphaBetaPlayer.DEFAULT_TABLE_MEGABYTES), stopSearch, 0);
+        persistence = new BackgroundPersistence(SwingUtilities::invokeLater);
+        bufferedRendering = true;
+        glyphs = new HashMap<>();
+        moveModel = new DefaultBoundedRangeModel();
+        moveModel.addChangeListener(e -> seek(moveModel.getValue()));
         status = statusInit;
         p1Points = p1PointsInit;
         p2Points = p2PointsInit;
@@ -40,15 +94,35 @@ public class SosBoard extends JPanel {
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseReleased(MouseEvent e) {
+                if (computerThinking || loading) {
+                    return;
+                }
+                // Points are relative to the board, wherever it is scrolled to
                 Point p = e.getPoint();
                 int r = p.x / squareLength;
                 int c = p.y / squareLength;
-                if (r < sos.getLength() && c < sos.getLength()) {
-                    sos.playMove(r, c);
+                if (p.x >= 0 && p.y >= 0 && r < sos.getLength() && c < sos.getLength()
+                        && sos.playMove(r, c)) {
+                    cellChanged(r, c);
                 }
 
                 updateStatus();
-                repaint();
+                playComputerMove();
+            }
+        });
+
+        /*
+         * Zooms around the mouse on ctrl + mouse wheel. Other wheel events are
+         * passed on, so the enclosing scroll pane still scrolls.
+         */
+        addMouseWheelListener(e -> {
+            if (e.isControlDown()) {
+                zoom(e.getWheelRotation() < 0 ? ZOOM_STEP : 1 / ZOOM_STEP, e.getPoint());
+                return;
+            }
+            Container scrollPane = SwingUtilities.getAncestorOfClass(JScrollPane.class, this);
+            if (scrollPane != null) {
+                scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(this, e, scrollPane));
             }
         });
     }
@@ -58,13 +132,57 @@ public class SosBoard extends JPanel {
      */
     public void reset() {
         sos.reset();
+        newGameStarted();
+    }
+
+    /**
+     * Resets the game to its initial state on a board of the given length.
+     *
+     * @param len the length of the board's sides
+     */
+    public void reset(int len) {
+        sos.reset(len);
+        newGameStarted();
+    }
+
+    /**
+     * Asks for a board length and starts a new game on a board of that length.
+     */
+    public void chooseSize() {
+        String answer = JOptionPane.showInputDialog(this,
+                "Board length (3 to " + Sos.MAX_LENGTH + "):", sos.getLength());
+        if (answer == null) {
+            return;
+        }
+        try {
+            int len = Integer.parseInt(answer.trim());
+            if (len >= 3 && len <= Sos.MAX_LENGTH) {
+                reset(len);
+                return;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        JOptionPane.showMessageDialog(this, "The length must be a number from 3 to " + Sos.MAX_LENGTH + ".");
+    }
+
+    /**
+     * Updates the board after a new game has been started.
+     */
+    private void newGameStarted() {
+        stopSearch();
+        loading = false;
         status.setText("Player 1's Turn");
         p1Points.setText("Player 1: 0");
         p2Points.setText("Player 2: 0");
+        updateMoveModel();
+        snapshot = sos.snapshot();
         squareLength = sos.getLength() <= SMALL_BIG_BOUNDARY ? BIG_SQUARE_LENGTH
                 : SMALL_SQUARE_LENGTH;
         fontSize = sos.getLength() <= SMALL_BIG_BOUNDARY ? BIG_FONT_SIZE : SMALL_FONT_SIZE;
-        repaint();
+        boardReplaced();
+        if (autosave) {
+            saveInBackground(DEFAULT_SLOT, Sos::saveGame, false);
+        }
 
         // Makes sure this component has keyboard/mouse focus
         requestFocusInWindow();
@@ -81,29 +199,340 @@ public class SosBoard extends JPanel {
      * Undoes a move.
      */
     public void undo() {
-        if (sos.undoMove()) {
+        if (computerThinking || loading) {
+            return;
+        }
+        if (undoOne()) {
+            // Against the computer, also undo its moves back to Player 1's last move
+            while (computerPlayer && !sos.getCurrentPlayer()) {
+                if (!undoOne()) {
+                    break;
+                }
+            }
+            position++;
             updateStatus();
-            repaint();
         }
     }
 
     /**
-     * Saves the current game state.
+     * Redoes an undone move.
+     */
+    public void redo() {
+        if (computerThinking || loading) {
+            return;
+        }
+        if (redoOne()) {
+            // Against the computer, also redo its replies to Player 1's move
+            while (computerPlayer && !sos.getCurrentPlayer()) {
+                if (!redoOne()) {
+                    break;
+                }
+            }
+            position++;
+            updateStatus();
+            playComputerMove();
+        }
+    }
+
+    /**
+     * Moves to the position after the given number of moves, keeping the
+     * moves after it to redo. However far the seek goes, the board is redrawn
+     * once.
+     *
+     * @param moveNumber the number of moves to leave played
+     */
+    public void seek(int moveNumber) {
+        if (moveNumber == sos.getMoveCount()) {
+            return;
+        }
+        if (computerThinking || loading || !sos.seekMove(moveNumber)) {
+            updateMoveModel();
+            return;
+        }
+        position++;
+        buffer = null;
+        repaint();
+        updateStatus();
+    }
+
+    /**
+     * Gets the model of the move the game is at, from 0 to the number of
+     * recorded moves, which move sliders can share. Changing its value seeks
+     * to that move.
+     *
+     * @return the move model
+     */
+    public BoundedRangeModel getMoveModel() {
+        return moveModel;
+    }
+
+    /**
+     * Updates the move model to the game's move and recorded moves.
+     */
+    private void updateMoveModel() {
+        moveModel.setRangeProperties(sos.getMoveCount(), 0, 0, sos.getRecordedMoveCount(), false);
+    }
+
+    /**
+     * Undoes one move and repaints its cell.
+     *
+     * @return true if a move was undone
+     */
+    private boolean undoOne() {
+        if (sos.getMoveCount() == 0) {
+            return false;
+        }
+        Move last = sos.getMove(sos.getMoveCount() - 1);
+        if (!sos.undoMove()) {
+            return false;
+        }
+        cellChanged(last.getColumn(), last.getRow());
+        return true;
+    }
+
+    /**
+     * Redoes one move and repaints its cell.
+     *
+     * @return true if a move was redone
+     */
+    private boolean redoOne() {
+        if (!sos.redoMove()) {
+            return false;
+        }
+        Move last = sos.getMove(sos.getMoveCount() - 1);
+        cellChanged(last.getColumn(), last.getRow());
+        return true;
+    }
+
+    /**
+     * Gets the position as of the last change to the game. This may be called
+     * from any thread, e.g. to analyse the position in the background while
+     * the game goes on.
+     *
+     * @return the latest snapshot of the game
+     */
+    public SosSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Turns the computer opponent on or off. When on, the computer plays
+     * Player 2's moves.
+     *
+     * @param on true if Player 2 should be played by the computer
+     */
+    public void setComputerPlayer(boolean on) {
+        computerPlayer = on;
+        if (!on && computerThinking) {
+            stopSearch();
+            updateStatus();
+        }
+        playComputerMove();
+    }
+
+    /**
+     * Starts a search for the computer's move if it is the computer's turn. The
+     * search runs on a fork of the latest snapshot in a background thread, and the chosen
+     * move is played on the event dispatch thread. The computer keeps moving
+     * for as long as it keeps the turn.
+     */
+    private void playComputerMove() {
+        if (!computerPlayer || computerThinking || sos.gameIsOver() || sos.getCurrentPlayer()) {
+            return;
+        }
+
+        computerThinking = true;
+        status.setText("Computer is thinking...");
+        final SosSnapshot searched = snapshot;
+        final int searchedPosition = position;
+        search = new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return computer.chooseMove(searched.fork());
+            }
+
+            @Override
+            protected void done() {
+                if (searchedPosition != position) {
+                    return;
+                }
+                search = null;
+                computerThinking = false;
+                try {
+                    int move = get();
+                    if (sos.playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move))) {
+                        cellChanged(Move.columnOf(move), Move.rowOf(move));
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    System.out.println("The computer could not choose a move.");
+                }
+                updateStatus();
+                playComputerMove();
+            }
+        };
+        search.execute();
+    }
+
+    /**
+     * Stops the computer's search, if one is running, and waits for it to
+     * end. Its result is discarded. The computer player keeps state for the
+     * search it is running, so a new search must not start before the old one
+     * has ended.
+     */
+    private void stopSearch() {
+        position++;
+        computerThinking = false;
+        if (search == null) {
+            return;
+        }
+        stopSearch.set(true);
+        try {
+            // The search checks the flag every few thousand nodes
+            search.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {
+        }
+        stopSearch.set(false);
+        search = null;
+    }
+
+    /**
+     * Turns autosaving on or off. When on, saves go to a journal and the game
+     * is saved after every change.
+     *
+     * @param on true to save after every change
+     */
+    public void setAutosave(boolean on) {
+        autosave = on;
+        sos.setJournal(on ? new GameJournal() : null);
+        if (on) {
+            saveInBackground(DEFAULT_SLOT, Sos::saveGame, false);
+        }
+    }
+
+    /**
+     * Saves the current game state. A slot picker offers the default save
+     * file, the slots of the save store and a new slot. The game is written
+     * in the background.
      */
     public void save() {
-        sos.saveGame();
+        int slot = pickSlot("Save to:", true);
+        final SaveStore slots = store;
+        if (slot == PICKED_DEFAULT) {
+            saveInBackground(DEFAULT_SLOT, Sos::saveGame, true);
+        } else if (slot >= 0) {
+            String name = slots.isUsed(slot) ? slots.getName(slot)
+                    : JOptionPane.showInputDialog(this, "Name:", "Game " + (slot + 1));
+            if (name != null) {
+                saveInBackground(slot, game -> game.saveGame(slots, slot, name), true);
+            }
+        }
     }
 
     /**
-     * Loads the saved game state if there is one.
+     * Loads a saved game state. A slot picker offers the default save file
+     * and the used slots of the save store. The game is read in the
+     * background, and the board ignores moves until it has been swapped in.
      */
     public void load() {
-        sos.loadGame();
-        squareLength = sos.getLength() <= SMALL_BIG_BOUNDARY ? BIG_SQUARE_LENGTH
-                : SMALL_SQUARE_LENGTH;
-        fontSize = sos.getLength() <= SMALL_BIG_BOUNDARY ? BIG_FONT_SIZE : SMALL_FONT_SIZE;
-        updateStatus();
-        repaint();
+        int slot = pickSlot("Load from:", false);
+        if (slot == PICKED_NOTHING) {
+            return;
+        }
+        stopSearch();
+        loading = true;
+        status.setText("Loading...");
+        final SaveStore slots = store;
+        final int loadedPosition = position;
+        persistence.load(sos.copyWithSaveFiles(),
+                game -> slot == PICKED_DEFAULT ? game.loadGame() : game.loadGame(slots, slot),
+                loaded -> {
+                    // A reset while loading discards the loaded game
+                    if (loadedPosition != position) {
+                        return;
+                    }
+                    loading = false;
+                    if (loaded == null) {
+                        status.setText("Could not load a saved game");
+                        return;
+                    }
+                    sos.restore(loaded);
+                    squareLength = sos.getLength() <= SMALL_BIG_BOUNDARY ? BIG_SQUARE_LENGTH
+                            : SMALL_SQUARE_LENGTH;
+                    fontSize = sos.getLength() <= SMALL_BIG_BOUNDARY ? BIG_FONT_SIZE : SMALL_FONT_SIZE;
+                    updateStatus();
+                    boardReplaced();
+                    playComputerMove();
+                });
+    }
+
+    /**
+     * Takes a snapshot of the game and saves it in the background. Saves to
+     * the same target that are made faster than they can be written are
+     * coalesced, so only the newest snapshot is written.
+     *
+     * @param target   what is saved to: DEFAULT_SLOT or a slot number
+     * @param save     saves the snapshot, returning true if it was saved
+     * @param announce true to show progress in the status label; failures are
+     *                 always shown
+     */
+    private void saveInBackground(Object target, Predicate<Sos> save, boolean announce) {
+        if (sos.gameIsOver()) {
+            return;
+        }
+        if (announce) {
+            status.setText("Saving...");
+        }
+        persistence.save(target, sos.snapshotForSave(), save, saved -> {
+            if (!saved) {
+                status.setText("Could not save the game");
+            } else if (announce) {
+                status.setText("Saved");
+            }
+        });
+    }
+
+    /**
+     * Asks which slot to use. If the save store cannot be opened, the default
+     * save file is used without asking.
+     *
+     * @param message  the question to ask
+     * @param withNew true to also offer a new, empty slot
+     * @return the chosen slot, PICKED_DEFAULT for the default save file, or
+     *         PICKED_NOTHING if the picker was cancelled
+     */
+    private int pickSlot(String message, boolean withNew) {
+        if (store == null) {
+            try {
+                store = new SaveStore();
+            } catch (IOException e) {
+                System.out.println("Could not open the save store; using the default save");
+                return PICKED_DEFAULT;
+            }
+        }
+
+        List<String> choices = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        choices.add(DEFAULT_SLOT);
+        slots.add(PICKED_DEFAULT);
+        for (int slot = 0; slot < store.getSlotCount(); slot++) {
+            if (store.isUsed(slot)) {
+                choices.add(String.format("%d. %s (%dx%<d, %d moves, %tF %<tR)", slot + 1,
+                        store.getName(slot), store.getLength(slot), store.getMoveCount(slot),
+                        store.getTimestamp(slot)));
+                slots.add(slot);
+            }
+        }
+        if (withNew) {
+            choices.add(NEW_SLOT);
+            slots.add(store.getFreeSlot());
+        }
+
+        Object choice = JOptionPane.showInputDialog(this, message, "Slots", JOptionPane.PLAIN_MESSAGE,
+                null, choices.toArray(), DEFAULT_SLOT);
+        int picked = choices.indexOf(choice);
+        return picked < 0 ? PICKED_NOTHING : slots.get(picked);
     }
 
     /**
@@ -118,6 +547,8 @@ public class SosBoard extends JPanel {
 
         p1Points.setText("Player 1: " + sos.getP1Points());
         p2Points.setText("Player 2: " + sos.getP2Points());
+        updateMoveModel();
+        snapshot = sos.snapshot();
 
         int winner = sos.checkWinner();
         if (winner == 1) {
@@ -127,6 +558,55 @@ public class SosBoard extends JPanel {
         } else if (winner == 3) {
             status.setText("It's a tie.");
         }
+
+        // The status is updated after every change, so this saves each one
+        if (autosave) {
+            saveInBackground(DEFAULT_SLOT, Sos::saveGame, false);
+        }
+    }
+
+    /**
+     * Chooses how the board is painted. With buffered rendering, the board is
+     * kept in an image that is updated one cell at a time, and repaints only
+     * copy the changed part of it to the screen. Without, each repaint draws
+     * the cells inside the clip rectangle directly.
+     *
+     * @param on true to keep the board in an image
+     */
+    public void setBufferedRendering(boolean on) {
+        bufferedRendering = on;
+        buffer = null;
+        repaint();
+    }
+
+    /**
+     * Redraws the whole board, after it was replaced or resized.
+     */
+    private void boardReplaced() {
+        buffer = null;
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Redraws one cell in the back buffer and repaints only that cell.
+     *
+     * @param column the cell's column
+     * @param row    the cell's row
+     */
+    private void cellChanged(int column, int row) {
+        int x = column * squareLength;
+        int y = row * squareLength;
+        if (buffer != null) {
+            Graphics2D g = buffer.createGraphics();
+            g.scale(bufferScale, bufferScale);
+            // Clears the inside of the cell, leaving its grid lines
+            g.setColor(getBackground());
+            g.fillRect(x + 1, y + 1, squareLength - 1, squareLength - 1);
+            drawGlyph(g, glyphsFor(bufferScale), bufferScale, column, row);
+            g.dispose();
+        }
+        repaint(x, y, squareLength + 1, squareLength + 1);
     }
 
     /**
@@ -134,37 +614,272 @@ public class SosBoard extends JPanel {
      */
     @Override
     public void paintComponent(Graphics g) {
+        long start = Metrics.start();
         super.paintComponent(g);
-        g.setFont(g.getFont().deriveFont(fontSize));
-
-        // Draws grid
-        int lineLength = sos.getLength() * squareLength;
-        for (int i = 0; i <= sos.getLength(); i++) {
-            int pos = i * squareLength;
-            g.drawLine(pos, 0, pos, lineLength);
-            g.drawLine(0, pos, lineLength, pos);
-        }
-
-        // Draws S's and O's
-        for (int r = 0; r < sos.getLength(); r++) {
-            for (int c = 0; c < sos.getLength(); c++) {
-                int y = (int) ((c + 0.7) * squareLength);
-                if (sos.getCell(r, c) == Sos.S) {
-                    int x = (int) ((r + 0.35) * squareLength);
-                    g.drawString("S", x, y);
-                } else if (sos.getCell(r, c) == Sos.O) {
-                    int x = (int) ((r + 0.28) * squareLength);
-                    g.drawString("O", x, y);
-                }
+        paintBoard((Graphics2D) g);
+        Metrics.PAINT.stop(start);
+    }
+
+    /**
+     * Draws the cells inside the clip rectangle, from the buffered image of
+     * the whole board when it is small enough to keep one.
+     *
+     * @param g2 the graphics to draw with
+     */
+    private void paintBoard(Graphics2D g2) {
+        double scale = g2.getTransform().getScaleX();
+        int side = sos.getLength() * squareLength + 1;
+
+        int deviceSide = (int) Math.ceil(side * scale);
+        if (!bufferedRendering || deviceSide > MAX_BUFFERED_SIDE) {
+            // Large boards are only ever painted a viewport at a time
+            buffer = null;
+            Rectangle clip = g2.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, side, side);
             }
+            int last = sos.getLength() - 1;
+            drawCells(g2, scale, Math.min(clip.x / squareLength, last),
+                    Math.min((clip.x + clip.width) / squareLength, last),
+                    Math.min(clip.y / squareLength, last),
+                    Math.min((clip.y + clip.height) / squareLength, last));
+            return;
+        }
+
+        if (buffer == null || bufferScale != scale || buffer.getWidth() != deviceSide) {
+            buffer = new BufferedImage(deviceSide, deviceSide, BufferedImage.TYPE_INT_RGB);
+            bufferScale = scale;
+            Graphics2D bufferGraphics = buffer.createGraphics();
+            bufferGraphics.setColor(getBackground());
+            bufferGraphics.fillRect(0, 0, deviceSide, deviceSide);
+            bufferGraphics.scale(scale, scale);
+            drawCells(bufferGraphics, scale, 0, sos.getLength() - 1, 0, sos.getLength() - 1);
+            bufferGraphics.dispose();
+        }
+        // Only the clip rectangle is copied to the screen
+        g2.drawImage(buffer, 0, 0, side, side, null);
+    }
+
+    /**
+     * Draws the grid lines and pieces of a block of cells.
+     *
+     * @param g           the graphics to draw with
+     * @param scale       the device pixels per unit of g
+     * @param firstColumn the first column to draw
+     * @param lastColumn  the last column to draw
+     * @param firstRow    the first row to draw
+     * @param lastRow     the last row to draw
+     */
+    private void drawCells(Graphics2D g, double scale, int firstColumn, int lastColumn,
+                           int firstRow, int lastRow) {
+        g.setColor(getForeground());
+        int left = firstColumn * squareLength;
+        int right = (lastColumn + 1) * squareLength;
+        int top = firstRow * squareLength;
+        int bottom = (lastRow + 1) * squareLength;
+        for (int column = firstColumn; column <= lastColumn + 1; column++) {
+            g.drawLine(column * squareLength, top, column * squareLength, bottom);
+        }
+        for (int row = firstRow; row <= lastRow + 1; row++) {
+            g.drawLine(left, row * squareLength, right, row * squareLength);
+        }
+
+        Glyphs cached = glyphsFor(scale);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                drawGlyph(g, cached, scale, column, row);
+            }
+        }
+    }
+
+    /**
+     * Draws the piece in a cell, if there is one, from the glyph cache.
+     *
+     * @param g      the graphics to draw with
+     * @param cached the glyphs for the current font size and scale
+     * @param scale  the device pixels per unit of g
+     * @param column the cell's column
+     * @param row    the cell's row
+     */
+    private void drawGlyph(Graphics2D g, Glyphs cached, double scale, int column, int row) {
+        int piece = sos.getCell(column, row);
+        if (piece == Sos.EMPTY) {
+            return;
         }
+        double offset = piece == Sos.S ? S_OFFSET : O_OFFSET;
+        int x = column * squareLength + (int) (offset * squareLength);
+        int baseline = row * squareLength + (int) (BASELINE_OFFSET * squareLength);
+        // Glyphs are rendered at device resolution, so they are drawn 1:1
+        AffineTransform at = AffineTransform.getTranslateInstance(x, baseline);
+        at.scale(1 / scale, 1 / scale);
+        at.translate(-Glyphs.PADDING, -cached.ascent);
+        g.drawImage(cached.images[piece], at, null);
+    }
+
+    /**
+     * Gets the pre-rendered glyphs for the current font size at the given
+     * device scale, rendering them the first time they are needed.
+     *
+     * @param scale the device pixels per unit the glyphs will be drawn at
+     * @return the glyphs
+     */
+    private Glyphs glyphsFor(double scale) {
+        float deviceSize = (float) (fontSize * scale);
+        Glyphs cached = glyphs.get(deviceSize);
+        if (cached == null) {
+            cached = new Glyphs(getFont().deriveFont(deviceSize), getForeground());
+            glyphs.put(deviceSize, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Zooms in or out, keeping the middle of the visible part of the board in
+     * place.
+     *
+     * @param factor how many times larger squares should get
+     */
+    public void zoom(double factor) {
+        Rectangle visible = getVisibleRect();
+        zoom(factor, new Point(visible.x + visible.width / 2, visible.y + visible.height / 2));
     }
 
     /**
-     * Returns the size of the game board.
+     * Zooms in or out, keeping the given point of the board where it is on
+     * screen.
+     *
+     * @param factor how many times larger squares should get
+     * @param anchor the point to keep in place, relative to the board
+     */
+    private void zoom(double factor, Point anchor) {
+        int zoomed = (int) Math.round(squareLength * factor);
+        if (zoomed == squareLength) {
+            // Small squares would otherwise round back to the same length
+            zoomed += factor > 1 ? 1 : -1;
+        }
+        zoomed = Math.max(MIN_SQUARE_LENGTH, Math.min(MAX_SQUARE_LENGTH, zoomed));
+        if (zoomed == squareLength) {
+            return;
+        }
+
+        Rectangle visible = getVisibleRect();
+        double anchorColumn = anchor.x / (double) squareLength;
+        double anchorRow = anchor.y / (double) squareLength;
+        squareLength = zoomed;
+        fontSize = zoomed * BIG_FONT_SIZE / BIG_SQUARE_LENGTH;
+        setSize(getPreferredSize());
+        boardReplaced();
+
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+        if (viewport != null) {
+            Dimension extent = viewport.getExtentSize();
+            int x = (int) Math.round(anchorColumn * zoomed) - (anchor.x - visible.x);
+            int y = (int) Math.round(anchorRow * zoomed) - (anchor.y - visible.y);
+            x = Math.max(0, Math.min(x, getWidth() - extent.width));
+            y = Math.max(0, Math.min(y, getHeight() - extent.height));
+            viewport.setViewPosition(new Point(x, y));
+        }
+    }
+
+    /**
+     * Returns the size of the game board, including its last grid lines.
      */
     @Override
     public Dimension getPreferredSize() {
-        return new Dimension(sos.getLength() * squareLength, sos.getLength() * squareLength);
+        return new Dimension(sos.getLength() * squareLength + 1, sos.getLength() * squareLength + 1);
+    }
+
+    /**
+     * Returns the size of the viewport the board would like to be shown in.
+     * Boards that do not fit are scrolled.
+     */
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        Dimension size = getPreferredSize();
+        return new Dimension(Math.min(size.width, MAX_VIEWPORT_SIDE), Math.min(size.height, MAX_VIEWPORT_SIDE));
+    }
+
+    /**
+     * Scrolls by one square at a time.
+     */
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return squareLength;
+    }
+
+    /**
+     * Scrolls by a page at a time, keeping one row or column of squares in view.
+     */
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        int extent = orientation == SwingConstants.HORIZONTAL ? visibleRect.width : visibleRect.height;
+        return Math.max(squareLength, extent - squareLength);
+    }
+
+    /**
+     * The board keeps its own width, so the viewport scrolls it sideways.
+     */
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return false;
+    }
+
+    /**
+     * The board keeps its own height, so the viewport scrolls it vertically.
+     */
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+
+    /**
+     * The S and O glyphs rendered in one font, each in an image just big
+     * enough to hold it.
+     */
+    private static class Glyphs {
+        private final BufferedImage[] images;
+        private final int ascent;
+        // Room left around each glyph for antialiasing
+        private static final int PADDING = 1;
+
+        /**
+         * Constructor that renders the glyphs.
+         *
+         * @param font  the font to render them in
+         * @param color the color to render them in
+         */
+        private Glyphs(Font font, Color color) {
+            images = new BufferedImage[3];
+            BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D measure = scratch.createGraphics();
+            FontMetrics metrics = measure.getFontMetrics(font);
+            measure.dispose();
+            ascent = metrics.getAscent() + PADDING;
+            int height = ascent + metrics.getDescent() + PADDING;
+            images[Sos.S] = render("S", font, color, metrics, height);
+            images[Sos.O] = render("O", font, color, metrics, height);
+        }
+
+        /**
+         * Renders one glyph.
+         *
+         * @param text    the letter to render
+         * @param font    the font to render it in
+         * @param color   the color to render it in
+         * @param metrics the font's metrics
+         * @param height  the height of the image
+         * @return an image of the letter with its baseline at ascent
+         */
+        private BufferedImage render(String text, Font font, Color color, FontMetrics metrics, int height) {
+            BufferedImage image = new BufferedImage(metrics.stringWidth(text) + 2 * PADDING, height,
+                    BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(font);
+            g.setColor(color);
+            g.drawString(text, PADDING, ascent);
+            g.dispose();
+            return image;
+        }
     }
 }
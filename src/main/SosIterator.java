@@ -3,19 +3,29 @@ package main;
 import java.io.*;
 import java.nio.file.Paths;
 import java.util.Iterator;
-import java.util.List;
 import java.util.NoSuchElementException;
 
 public class SosIterator implements Iterator<String> {
     private boolean nextExists;
     private String nextLine;
     private BufferedReader reader;
+    private final String filePath;
     public static final String FILE_PATH = "files/gamestate.csv";
 
     /**
      * Initializes a FileIterator.
      */
     public SosIterator() {
+        this(FILE_PATH);
+    }
+
+    /**
+     * Initializes a FileIterator over the given file instead of FILE_PATH.
+     *
+     * @param path the file to read and write
+     */
+    public SosIterator(String path) {
+        filePath = path;
         reset();
     }
 
@@ -24,7 +34,7 @@ public class SosIterator implements Iterator<String> {
      */
     public void reset() {
         try {
-            reader = new BufferedReader(new FileReader(FILE_PATH));
+            reader = new BufferedReader(new FileReader(filePath));
             nextLine = reader.readLine();
             nextExists = nextLine != null;
         } catch (IOException e) {
@@ -82,13 +92,16 @@ public class SosIterator implements Iterator<String> {
      * @param p1Turn   true if Player 1's turn, false if Player 2's turn
      * @param piece    the selected piece
      * @param moves    the moves made in the game thus far
+     * @return true if the file was written
      */
-    public void rewriteToFile(
-            int[][] board, int p1Points, int p2Points,
-            boolean p1Turn, int piece, List<Move> moves
+    public boolean rewriteToFile(
+            Grid board, int p1Points, int p2Points,
+            boolean p1Turn, int piece, MoveHistory moves
     ) {
-        File file = Paths.get(FILE_PATH).toFile();
+        long start = Metrics.start();
+        File file = Paths.get(filePath).toFile();
         BufferedWriter writer = null;
+        boolean written = true;
 
         try {
             writer = new BufferedWriter(new FileWriter(file, false));
@@ -101,19 +114,20 @@ public class SosIterator implements Iterator<String> {
             writer.newLine();
             writer.write(String.valueOf(piece));
             writer.newLine();
-            writer.write(String.valueOf(board.length));
+            writer.write(String.valueOf(board.getLength()));
 
-            for (int[] row : board) {
+            for (int r = 0; r < board.getLength(); r++) {
                 writer.newLine();
-                for (int i = 0; i < board.length; i++) {
-                    writer.write(String.valueOf(row[i]));
-                    if (i != board.length - 1) {
+                for (int i = 0; i < board.getLength(); i++) {
+                    writer.write(String.valueOf(board.getCell(i, r)));
+                    if (i != board.getLength() - 1) {
                         writer.write(",");
                     }
                 }
             }
 
-            for (Move move : moves) {
+            for (int i = 0; i < moves.size(); i++) {
+                Move move = Move.of(moves.get(i));
                 writer.newLine();
                 String column = String.valueOf(move.getColumn());
                 String row = String.valueOf(move.getRow());
@@ -123,6 +137,7 @@ public class SosIterator implements Iterator<String> {
             }
         } catch (IOException e) {
             System.out.println("There is likely a bug in the code.");
+            written = false;
         }
 
         try {
@@ -131,5 +146,7 @@ public class SosIterator implements Iterator<String> {
             }
         } catch (IOException ignored) {
         }
+        Metrics.REWRITE_TO_FILE.stop(start);
+        return written;
     }
 }
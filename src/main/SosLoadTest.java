@@ -0,0 +1,277 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SosLoadTest {
+    private final int port;
+    private final int sessions;
+    private final int boardLength;
+    private final long seed;
+    private long[] latencies = new long[0];
+    private long failures;
+    private long elapsed;
+    // A session waiting longer than this to connect or for a reply fails, so
+    // that a server that stopped answering cannot hang the whole run
+    public static final int TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Constructor that sets up a load test of a server on the loopback address.
+     * Every session opens its own connection, creates a game and plays it to
+     * the end, both players' moves being sent over the same connection.
+     *
+     * @param port        the port the server listens on
+     * @param sessions    the number of games played at once
+     * @param boardLength the length of every game's board
+     * @param seed        seed for the order cells are played in
+     */
+    public SosLoadTest(int port, int sessions, int boardLength, long seed) {
+        this.port = port;
+        this.sessions = sessions;
+        this.boardLength = boardLength;
+        this.seed = seed;
+    }
+
+    /**
+     * Connects every session, then starts them all at once and waits until
+     * every game has been played. Each session runs on a thread of its own.
+     */
+    public void run() {
+        ExecutorService pool = newSessionExecutor();
+        CountDownLatch connected = new CountDownLatch(sessions);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            long sessionSeed = seed + i * 0x9E3779B97F4A7C15L;
+            results.add(pool.submit(() -> playSession(sessionSeed, connected, go)));
+        }
+
+        long start = 0;
+        List<long[]> times = new ArrayList<>();
+        try {
+            connected.await();
+            start = System.nanoTime();
+            go.countDown();
+            for (Future<long[]> result : results) {
+                try {
+                    times.add(result.get());
+                } catch (ExecutionException e) {
+                    failures++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+        elapsed = System.nanoTime() - start;
+
+        latencies = new long[times.stream().mapToInt(t -> t.length).sum()];
+        int n = 0;
+        for (long[] t : times) {
+            System.arraycopy(t, 0, latencies, n, t.length);
+            n += t.length;
+        }
+        Arrays.sort(latencies);
+    }
+
+    /**
+     * Creates the executor that runs one thread per session, using virtual
+     * threads when the JDK has them.
+     *
+     * @return an executor starting a new thread for every task
+     */
+    private static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "sos-load-test");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Plays one game over its own connection, filling the cells in a random
+     * order.
+     *
+     * @param sessionSeed seed for the order cells are played in
+     * @param connected   counted down once the game has been created
+     * @param go          released when every session should start moving
+     * @return the round trip time of every move, in nanoseconds
+     * @throws IOException if the connection fails or a command is rejected
+     */
+    private long[] playSession(long sessionSeed, CountDownLatch connected, CountDownLatch go)
+            throws IOException, InterruptedException {
+        int cells = boardLength * boardLength;
+        int[] order = new int[cells];
+        SplittableRandom random = new SplittableRandom(sessionSeed);
+        for (int i = 0; i < cells; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+
+        long[] times = new long[cells];
+        boolean counted = false;
+        try (Socket socket = connect();
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new BufferedWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+            socket.setTcpNoDelay(true);
+            expectOk(send(in, out, "CREATE " + boardLength));
+            connected.countDown();
+            counted = true;
+            go.await();
+
+            for (int i = 0; i < cells; i++) {
+                int cell = order[i];
+                String command = "MOVE " + cell % boardLength + " " + cell / boardLength
+                        + (random.nextBoolean() ? " S" : " O");
+                long start = System.nanoTime();
+                String reply = send(in, out, command);
+                times[i] = System.nanoTime() - start;
+                expectOk(reply);
+            }
+            send(in, out, "QUIT");
+        } finally {
+            if (!counted) {
+                connected.countDown();
+            }
+        }
+        return times;
+    }
+
+    /**
+     * Opens a connection to the server that gives up on connecting or on
+     * reading a reply after TIMEOUT_MILLIS.
+     *
+     * @return the connection
+     * @throws IOException if the server cannot be reached in time
+     */
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), TIMEOUT_MILLIS);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends one command and waits for its reply.
+     *
+     * @param in      the connection's input
+     * @param out     the connection's output
+     * @param command the command to send
+     * @return the reply
+     * @throws IOException if the connection fails or closes, or the reply
+     *                     takes longer than TIMEOUT_MILLIS
+     */
+    private static String send(BufferedReader in, Writer out, String command) throws IOException {
+        out.write(command);
+        out.write('\n');
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null) {
+            throw new IOException("The server closed the connection");
+        }
+        return reply;
+    }
+
+    /**
+     * Checks that a command succeeded.
+     *
+     * @param reply the command's reply
+     * @throws IOException if the command was rejected
+     */
+    private static void expectOk(String reply) throws IOException {
+        if (!reply.startsWith("OK")) {
+            throw new IOException("Unexpected reply: " + reply);
+        }
+    }
+
+    /**
+     * Gets a percentile of the moves' round trip times.
+     *
+     * @param percentile from 0 to 100
+     * @return the round trip time in nanoseconds, or 0 if no moves were made
+     */
+    public long getLatencyPercentile(double percentile) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        int i = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+        return latencies[Math.max(0, Math.min(i, latencies.length - 1))];
+    }
+
+    /**
+     * Gets the number of moves that were answered.
+     *
+     * @return the number of moves played
+     */
+    public long getMoves() {
+        return latencies.length;
+    }
+
+    /**
+     * Gets the number of sessions that did not finish their game.
+     *
+     * @return the number of failed sessions
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Describes the run's throughput and move round trip times.
+     *
+     * @return sessions, moves per second and latency percentiles
+     */
+    public String getReport() {
+        return String.format("sessions: %d (%d failed)%n", sessions, failures)
+                + String.format("moves: %d (%,.0f moves/sec)%n", getMoves(), getMoves() * 1e9 / Math.max(elapsed, 1))
+                + String.format("move round trip: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+                getLatencyPercentile(50) / 1e6, getLatencyPercentile(99) / 1e6,
+                getLatencyPercentile(99.9) / 1e6, getLatencyPercentile(100) / 1e6);
+    }
+
+    /**
+     * Plays games against a running server and prints the results.
+     * Arguments: sessions boardLength [port] [seed]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: SosLoadTest sessions boardLength [port] [seed]");
+            return;
+        }
+        SosLoadTest test = new SosLoadTest(args.length > 2 ? Integer.parseInt(args[2]) : SosServer.DEFAULT_PORT,
+                Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                args.length > 3 ? Long.parseLong(args[3]) : 0);
+        test.run();
+        System.out.println(test.getReport());
+    }
+}
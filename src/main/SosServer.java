@@ -0,0 +1,467 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SosServer implements AutoCloseable {
+    private final ServerSocket socket;
+    private final ExecutorService connections;
+    private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong movesHandled = new AtomicLong();
+    private final AtomicLong moveNanos = new AtomicLong();
+    private Thread acceptor;
+    // Pending connections the operating system queues while all are accepted
+    private static final int BACKLOG = 4096;
+    // How long to wait before accepting again after accept() fails, e.g.
+    // because the process is out of file descriptors
+    private static final long ACCEPT_RETRY_MILLIS = 50;
+    // The seats of a session once both players are seated
+    private static final int BOTH_SEATS = 3;
+    public static final int DEFAULT_PORT = 7070;
+
+    /**
+     * Constructor that listens on the given port of the loopback address. No
+     * connections are accepted until start() is called.
+     *
+     * @param port the port to listen on, or 0 to pick any free port
+     * @throws IOException if the port cannot be listened on
+     */
+    public SosServer(int port) throws IOException {
+        socket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        connections = newConnectionExecutor();
+    }
+
+    /**
+     * Creates the executor that runs one thread per connection. Virtual
+     * threads are used when the JDK has them, so that every connection can
+     * block on its socket without holding a platform thread. Older JDKs fall
+     * back to a pool of platform threads.
+     *
+     * @return an executor starting a new thread for every task
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "sos-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Starts accepting connections on a background thread.
+     */
+    public void start() {
+        acceptor = new Thread(this::acceptConnections, "sos-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Accepts connections until the server is closed, handing each one to a
+     * thread of its own. After a failed accept, the next one is delayed so
+     * that a lasting failure does not spin, and it is reported only once
+     * until an accept succeeds again.
+     */
+    private void acceptConnections() {
+        boolean failing = false;
+        while (!socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                failing = false;
+                client.setTcpNoDelay(true);
+                connections.execute(() -> serve(client));
+            } catch (IOException e) {
+                if (socket.isClosed()) {
+                    break;
+                }
+                if (!failing) {
+                    System.out.println("Could not accept a connection: " + e.getMessage());
+                    failing = true;
+                }
+                try {
+                    Thread.sleep(ACCEPT_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads commands from a connection and answers each with one line until
+     * the client quits or disconnects.
+     *
+     * @param client the connection to serve
+     */
+    private void serve(Socket client) {
+        Connection connection = new Connection();
+        try (client;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new BufferedWriter(
+                     new OutputStreamWriter(client.getOutputStream(), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String reply = handle(connection, line.trim());
+                out.write(reply);
+                out.write('\n');
+                out.flush();
+                if (reply.equals("BYE")) {
+                    break;
+                }
+            }
+        } catch (SocketException e) {
+            // The client disconnected
+        } catch (IOException e) {
+            System.out.println("Connection failed: " + e.getMessage());
+        } finally {
+            leave(connection);
+        }
+    }
+
+    /**
+     * Runs one command. Commands are:
+     * CREATE [length] to start a game and sit as Player 1,
+     * JOIN id to sit in a game's free seat,
+     * MOVE column row S|O, UNDO, STATE and QUIT.
+     * While only one seat is taken, its player plays for both players, so a
+     * game whose Player 1 left goes on with whoever joins next. Once both
+     * seats are taken, a player may only UNDO the most recent move if it was
+     * their own.
+     *
+     * @param connection the connection the command came from
+     * @param line       the command
+     * @return the reply, "OK ..." or "STATE ..." on success and "ERR ..." if not
+     */
+    private String handle(Connection connection, String line) {
+        String[] args = line.split("\\s+");
+        try {
+            switch (args[0].toUpperCase()) {
+                case "CREATE":
+                    return create(connection, args.length > 1 ? Integer.parseInt(args[1]) : 0);
+                case "JOIN":
+                    return join(connection, args.length > 1 ? Long.parseLong(args[1]) : 0);
+                case "MOVE":
+                    if (args.length < 4) {
+                        return "ERR usage: MOVE column row S|O";
+                    }
+                    return move(connection, Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                            parsePiece(args[3]));
+                case "UNDO":
+                    return undo(connection);
+                case "STATE":
+                    return state(connection);
+                case "QUIT":
+                    return "BYE";
+                default:
+                    return "ERR unknown command";
+            }
+        } catch (IllegalArgumentException e) {
+            return "ERR " + e.getMessage();
+        }
+    }
+
+    /**
+     * Starts a new game and seats the connection in it as Player 1, leaving
+     * its previous game.
+     *
+     * @param connection the creating connection
+     * @param len        the length of the board's sides, or 0 for a random length
+     * @return the reply, giving the new game's id
+     */
+    private String create(Connection connection, int len) {
+        Sos game = new Sos(Sos.BIT_GRID);
+        if (len != 0) {
+            game.reset(len);
+        }
+        leave(connection);
+        Session session = new Session(nextId.getAndIncrement(), game);
+        session.seats = 1;
+        sessions.put(session.id, session);
+        connection.session = session;
+        connection.player = 1;
+        return "OK " + session.id;
+    }
+
+    /**
+     * Seats the connection in an existing game, leaving its previous game.
+     * The connection takes Player 2's seat, or Player 1's if Player 1 has
+     * left.
+     *
+     * @param connection the joining connection
+     * @param id         the game to join
+     * @return the reply, giving the game's id and the player seated
+     */
+    private String join(Connection connection, long id) {
+        Session session = sessions.get(id);
+        if (session == null) {
+            return "ERR no game " + id;
+        }
+        if (session == connection.session) {
+            return "ERR already in game " + id;
+        }
+        int player;
+        synchronized (session) {
+            if (session.closed || session.seats == BOTH_SEATS) {
+                return "ERR game " + id + " is full";
+            }
+            player = (session.seats & 1) == 0 ? 1 : 2;
+            session.seats |= player;
+        }
+        leave(connection);
+        connection.session = session;
+        connection.player = player;
+        return "OK " + id + " " + player;
+    }
+
+    /**
+     * Plays a move for the connection's player.
+     *
+     * @param connection the playing connection
+     * @param c          column to play in
+     * @param r          row to play in
+     * @param m          the piece to play
+     * @return the reply, giving the points the move made
+     */
+    private String move(Connection connection, int c, int r, int m) {
+        Session session = connection.session;
+        if (session == null) {
+            return "ERR not in a game";
+        }
+        long start = System.nanoTime();
+        String reply;
+        synchronized (session) {
+            Sos game = session.game;
+            if (!session.isTurnOf(connection.player)) {
+                reply = "ERR not your turn";
+            } else if (c < 0 || r < 0 || c >= game.getLength() || r >= game.getLength()) {
+                reply = "ERR off the board";
+            } else {
+                int points = game.getCell(c, r) == Sos.EMPTY ? game.getAdditionalSOS(c, r, m) : 0;
+                reply = game.playMove(c, r, m) ? "OK " + points + " " + game.checkWinner()
+                        : "ERR cannot play there";
+            }
+        }
+        moveNanos.addAndGet(System.nanoTime() - start);
+        movesHandled.incrementAndGet();
+        return reply;
+    }
+
+    /**
+     * Undoes the most recent move of the connection's game, if the
+     * connection's player made it or plays for both players.
+     *
+     * @param connection the undoing connection
+     * @return the reply
+     */
+    private String undo(Connection connection) {
+        Session session = connection.session;
+        if (session == null) {
+            return "ERR not in a game";
+        }
+        synchronized (session) {
+            Sos game = session.game;
+            int count = game.getMoveCount();
+            if (count > 0 && session.seats == BOTH_SEATS
+                    && Move.isP1TurnOf(game.getPackedMove(count - 1)) != (connection.player == 1)) {
+                return "ERR not your move";
+            }
+            return game.undoMove() ? "OK" : "ERR nothing to undo";
+        }
+    }
+
+    /**
+     * Describes the connection's game as
+     * "STATE id length p1Points p2Points player winner cells", where cells
+     * lists the board row by row as S, O or . for empty cells.
+     *
+     * @param connection the asking connection
+     * @return the reply
+     */
+    private String state(Connection connection) {
+        Session session = connection.session;
+        if (session == null) {
+            return "ERR not in a game";
+        }
+        synchronized (session) {
+            Sos game = session.game;
+            int len = game.getLength();
+            StringBuilder reply = new StringBuilder(len * len + 48);
+            reply.append("STATE ").append(session.id).append(' ').append(len)
+                    .append(' ').append(game.getP1Points()).append(' ').append(game.getP2Points())
+                    .append(' ').append(game.getCurrentPlayer() ? 1 : 2)
+                    .append(' ').append(game.checkWinner()).append(' ');
+            for (int r = 0; r < len; r++) {
+                for (int c = 0; c < len; c++) {
+                    int m = game.getCell(c, r);
+                    reply.append(m == Sos.S ? 'S' : m == Sos.O ? 'O' : '.');
+                }
+            }
+            return reply.toString();
+        }
+    }
+
+    /**
+     * Takes the connection out of its game. A game is discarded once everyone
+     * seated in it has left.
+     *
+     * @param connection the leaving connection
+     */
+    private void leave(Connection connection) {
+        Session session = connection.session;
+        if (session == null) {
+            return;
+        }
+        connection.session = null;
+        synchronized (session) {
+            session.seats &= ~connection.player;
+            if (session.seats == 0) {
+                session.closed = true;
+                sessions.remove(session.id);
+            }
+        }
+    }
+
+    /**
+     * Parses a piece.
+     *
+     * @param piece S or O, in either case
+     * @return Sos.S or Sos.O
+     * @throws IllegalArgumentException if the piece is neither
+     */
+    private static int parsePiece(String piece) {
+        if (piece.equalsIgnoreCase("S")) {
+            return Sos.S;
+        } else if (piece.equalsIgnoreCase("O")) {
+            return Sos.O;
+        }
+        throw new IllegalArgumentException("pieces are S or O");
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Gets the number of games that someone is seated in.
+     *
+     * @return the number of open games
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Gets the number of moves handled so far, including rejected ones.
+     *
+     * @return the number of moves handled
+     */
+    public long getMovesHandled() {
+        return movesHandled.get();
+    }
+
+    /**
+     * Gets the average time spent handling a move, from receiving the command
+     * to having the reply ready, excluding network time.
+     *
+     * @return the average handling time in nanoseconds, or 0 if no moves were made
+     */
+    public double getAverageMoveNanos() {
+        long handled = movesHandled.get();
+        return handled == 0 ? 0 : moveNanos.get() / (double) handled;
+    }
+
+    /**
+     * Stops accepting connections and closes every open one.
+     */
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.out.println("Could not close the server socket: " + e.getMessage());
+        }
+        connections.shutdownNow();
+    }
+
+    /**
+     * Runs a server until the process is killed.
+     * Arguments: [port]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SosServer server = new SosServer(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+        server.start();
+        System.out.println("Serving SOS games on localhost:" + server.getPort());
+        server.acceptor.join();
+    }
+
+    /**
+     * One game and the players seated in it. Everything in a session is
+     * guarded by the session's own lock, so games never wait on each other.
+     */
+    private static class Session {
+        private final long id;
+        private final Sos game;
+        // Bit 1 is set while Player 1 is seated, bit 2 while Player 2 is
+        private int seats;
+        private boolean closed;
+
+        /**
+         * Constructor.
+         *
+         * @param id   the game's id
+         * @param game the game
+         */
+        private Session(long id, Sos game) {
+            this.id = id;
+            this.game = game;
+        }
+
+        /**
+         * Returns true if the given player may move. A player whose opponent's
+         * seat is empty plays both sides.
+         *
+         * @param player 1 or 2
+         * @return true if it is that player's turn
+         */
+        private boolean isTurnOf(int player) {
+            if (seats != BOTH_SEATS) {
+                return true;
+            }
+            return game.getCurrentPlayer() == (player == 1);
+        }
+    }
+
+    /**
+     * The state of one connection. Only the connection's own thread uses it.
+     */
+    private static class Connection {
+        private Session session;
+        // 1 or 2, the seat bit of the player
+        private int player;
+    }
+}
@@ -0,0 +1,122 @@
+package main;
+
+public class SosSnapshot {
+    // A copy of the game that is never played on or handed out. Copying only
+    // reads it, so any number of threads can fork it at once, and since it is
+    // only reachable through a final field, a snapshot can be handed to
+    // another thread without locking.
+    private final Sos position;
+
+    /**
+     * Constructor that captures the board, scores, turn, selected piece and
+     * history of a game. Must be called on the thread that plays the game.
+     *
+     * @param game the game to capture
+     */
+    public SosSnapshot(Sos game) {
+        position = new Sos(game);
+    }
+
+    /**
+     * Creates a game to analyse the captured position on. Each fork is
+     * independent of the snapshot, of other forks and of the original game,
+     * so it can be played on freely by the thread that forked it.
+     *
+     * @return a new game in the captured position
+     */
+    public Sos fork() {
+        return new Sos(position);
+    }
+
+    /**
+     * Gets the length of the board's sides.
+     *
+     * @return the length of the board's sides
+     */
+    public int getLength() {
+        return position.getLength();
+    }
+
+    /**
+     * Gets the points Player 1 had.
+     *
+     * @return Player 1's points
+     */
+    public int getP1Points() {
+        return position.getP1Points();
+    }
+
+    /**
+     * Gets the points Player 2 had.
+     *
+     * @return Player 2's points
+     */
+    public int getP2Points() {
+        return position.getP2Points();
+    }
+
+    /**
+     * Gets whose turn it was.
+     *
+     * @return true if it was Player 1's turn, false if Player 2's
+     */
+    public boolean getCurrentPlayer() {
+        return position.getCurrentPlayer();
+    }
+
+    /**
+     * Gets the piece that was selected.
+     *
+     * @return Sos.S or Sos.O
+     */
+    public int getPiece() {
+        return position.getPiece();
+    }
+
+    /**
+     * Returns true if the game was over.
+     *
+     * @return true if the game was over
+     */
+    public boolean gameIsOver() {
+        return position.gameIsOver();
+    }
+
+    /**
+     * Gets the number of moves that had been played.
+     *
+     * @return the number of moves played
+     */
+    public int getMoveCount() {
+        return position.getMoveCount();
+    }
+
+    /**
+     * Gets the number of moves that had been played plus the number that
+     * could be redone.
+     *
+     * @return the length of the recorded line of play
+     */
+    public int getRecordedMoveCount() {
+        return position.getRecordedMoveCount();
+    }
+
+    /**
+     * Gets one of the moves that had been played, without unpacking it.
+     *
+     * @param i the index of the move, 0 being the first move of the game
+     * @return the move, packed with Move.pack, including player and points
+     */
+    public int getPackedMove(int i) {
+        return position.getPackedMove(i);
+    }
+
+    /**
+     * Gets the hash of the captured position, as Sos.getHash gives it.
+     *
+     * @return the position's hash
+     */
+    public long getHash() {
+        return position.getHash();
+    }
+}
@@ -0,0 +1,12 @@
+package main;
+
+public interface Strategy {
+    /**
+     * Chooses a move for the player whose turn it is. The game is left in the
+     * state it was given in.
+     *
+     * @param game the game to choose a move in, must not be over
+     * @return the chosen move, packed with Move.pack
+     */
+    int chooseMove(Sos game);
+}
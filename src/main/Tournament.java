@@ -0,0 +1,592 @@
+package main;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+
+public class Tournament {
+    private final String[] names;
+    private final List<LongFunction<Strategy>> players;
+    private final int format;
+    private final int minLength;
+    private final int maxLength;
+    private final long seed;
+    private final Path resultsPath;
+    // Every finished game, in the order they finished
+    private final List<int[]> results = new ArrayList<>();
+    private final Set<String> finished = new HashSet<>();
+    // The player who sat out each Swiss round paired so far, or NO_BYE
+    private final List<Integer> byes = new ArrayList<>();
+    private Writer out;
+    public static final int ROUND_ROBIN = 0;
+    public static final int SWISS = 1;
+    public static final int MIN_LENGTH = 3;
+    public static final int MAX_LENGTH = 15;
+    // Indices into a game's result
+    private static final int ROUND = 0;
+    private static final int FIRST = 1;
+    private static final int SECOND = 2;
+    private static final int LENGTH = 3;
+    private static final int FIRST_POINTS = 4;
+    private static final int SECOND_POINTS = 5;
+    private static final int FIELDS = 6;
+    private static final int NO_BYE = -1;
+    // Elo points per natural log of the odds of winning
+    private static final double ELO_SCALE = 400 / Math.log(10);
+    private static final double Z_95 = 1.96;
+    private static final int RATING_ITERATIONS = 1000;
+    private static final double RATING_TOLERANCE = 1e-9;
+
+    /**
+     * Constructor that sets up a tournament and loads the results of any
+     * games already recorded in the results file, so that an interrupted
+     * tournament resumes where it stopped. Recorded games of players no
+     * longer taking part are ignored.
+     *
+     * @param names       the players' names, as written to the results file
+     * @param players     creates each player's strategy from a seed
+     * @param format      ROUND_ROBIN or SWISS
+     * @param minLength   the smallest board length to play on
+     * @param maxLength   the largest board length to play on
+     * @param seed        seed for the strategies
+     * @param resultsPath the file every finished game is appended to
+     * @throws IOException if the results file exists but cannot be read
+     */
+    public Tournament(List<String> names, List<LongFunction<Strategy>> players, int format,
+                      int minLength, int maxLength, long seed, Path resultsPath) throws IOException {
+        if (names.size() != players.size() || names.size() < 2) {
+            throw new IllegalArgumentException("A tournament needs a name for each of at least two players");
+        }
+        this.names = names.toArray(new String[0]);
+        this.players = players;
+        this.format = format;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.seed = seed;
+        this.resultsPath = resultsPath;
+        if (Files.exists(resultsPath)) {
+            for (String line : Files.readAllLines(resultsPath, StandardCharsets.UTF_8)) {
+                int[] result = parse(line);
+                if (result != null && finished.add(key(result))) {
+                    results.add(result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays the given number of rounds on a pool of worker threads, skipping
+     * games already in the results file. In a round, every pairing plays one
+     * game on every board length with each player moving first. A round
+     * robin pairs every player with every other each round; a Swiss
+     * tournament pairs players with similar scores who have not met yet. If
+     * the number of players is odd, the lowest-ranked player with the fewest
+     * byes sits the round out and is credited as if they had won all of its
+     * games, as a bye is a win in Swiss pairing. Rounds are
+     * played one after another, and the games of a round in parallel.
+     *
+     * @param rounds  the number of rounds to play
+     * @param threads the number of worker threads
+     * @throws IOException if the results file cannot be written
+     */
+    public void run(int rounds, int threads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        out = openResults();
+        try {
+            for (int round = 0; round < rounds; round++) {
+                playRound(round, pool);
+            }
+        } finally {
+            pool.shutdownNow();
+            out.close();
+        }
+    }
+
+    /**
+     * Plays every game of one round that has not been played yet.
+     *
+     * @param round the round to play
+     * @param pool  the worker threads
+     * @throws IOException if the results file cannot be written
+     */
+    private void playRound(int round, ExecutorService pool) throws IOException {
+        List<Future<?>> games = new ArrayList<>();
+        for (int[] pair : pair(round)) {
+            for (int len = minLength; len <= maxLength; len++) {
+                for (int swap = 0; swap < 2; swap++) {
+                    int[] game = new int[FIELDS];
+                    game[ROUND] = round;
+                    game[FIRST] = pair[swap];
+                    game[SECOND] = pair[1 - swap];
+                    game[LENGTH] = len;
+                    if (!isFinished(game)) {
+                        games.add(pool.submit(() -> play(game)));
+                    }
+                }
+            }
+        }
+
+        try {
+            for (Future<?> game : games) {
+                game.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The tournament was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IllegalStateException("A tournament game failed", e);
+        }
+    }
+
+    /**
+     * Plays one game and records its result.
+     *
+     * @param game the game's round, players and board length, to which the
+     *             points are added
+     */
+    private void play(int[] game) {
+        // The seed depends only on the game, so a resumed run plays the same games
+        long gameSeed = seed + ((((long) game[ROUND] * names.length + game[FIRST]) * names.length
+                + game[SECOND]) * (Sos.MAX_LENGTH + 1) + game[LENGTH]) * 0x9E3779B97F4A7C15L;
+        Strategy first = players.get(game[FIRST]).apply(gameSeed);
+        Strategy second = players.get(game[SECOND]).apply(~gameSeed);
+        Sos finishedGame = SelfPlay.playGame(game[LENGTH], first, second);
+        game[FIRST_POINTS] = finishedGame.getP1Points();
+        game[SECOND_POINTS] = finishedGame.getP2Points();
+        try {
+            record(game);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds a finished game to the results and appends it to the results file,
+     * flushing it so that the file can be watched while the tournament runs.
+     *
+     * @param game the finished game
+     * @throws IOException if the results file cannot be written
+     */
+    private synchronized void record(int[] game) throws IOException {
+        results.add(game);
+        finished.add(key(game));
+        out.write(format(game));
+        out.write('\n');
+        out.flush();
+    }
+
+    /**
+     * Returns true if a game has already been played.
+     *
+     * @param game the game's round, players and board length
+     * @return true if it is in the results
+     */
+    private synchronized boolean isFinished(int[] game) {
+        return finished.contains(key(game));
+    }
+
+    /**
+     * Opens the results file for appending. If the last line was cut short,
+     * e.g. by the previous run being killed, it is ended first so that it is
+     * skipped rather than joined to the next result.
+     *
+     * @return a writer appending to the results file
+     * @throws IOException if the results file cannot be opened
+     */
+    private Writer openResults() throws IOException {
+        if (Files.exists(resultsPath) && Files.size(resultsPath) > 0) {
+            try (RandomAccessFile file = new RandomAccessFile(resultsPath.toFile(), "rw")) {
+                file.seek(file.length() - 1);
+                if (file.read() != '\n') {
+                    file.write('\n');
+                }
+            }
+        }
+        return new BufferedWriter(Files.newBufferedWriter(resultsPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+    }
+
+    /**
+     * Chooses the pairings of a round.
+     *
+     * @param round the round to pair
+     * @return pairs of player indices
+     */
+    private synchronized List<int[]> pair(int round) {
+        List<int[]> pairs = new ArrayList<>();
+        if (format == ROUND_ROBIN) {
+            for (int i = 0; i < names.length; i++) {
+                for (int j = i + 1; j < names.length; j++) {
+                    pairs.add(new int[]{i, j});
+                }
+            }
+            return pairs;
+        }
+
+        // Pairings only depend on earlier rounds, which have all been played
+        // when this round is paired, so a resumed run pairs the same way
+        pairByes(round);
+        double[] scores = new double[names.length];
+        boolean[][] met = new boolean[names.length][names.length];
+        for (int[] game : results) {
+            if (game[ROUND] < round) {
+                double score = score(game);
+                scores[game[FIRST]] += score;
+                scores[game[SECOND]] += 1 - score;
+                met[game[FIRST]][game[SECOND]] = true;
+                met[game[SECOND]][game[FIRST]] = true;
+            }
+        }
+        int[] byeCounts = new int[names.length];
+        for (int r = 0; r < round; r++) {
+            if (byes.get(r) != NO_BYE) {
+                scores[byes.get(r)] += getByeCredit();
+                byeCounts[byes.get(r)]++;
+            }
+        }
+        Integer[] order = new Integer[names.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        boolean[] paired = new boolean[names.length];
+        int bye = NO_BYE;
+        if (names.length % 2 == 1) {
+            // The lowest-ranked of the players with the fewest byes
+            for (int i = order.length - 1; i >= 0; i--) {
+                if (bye == NO_BYE || byeCounts[order[i]] < byeCounts[bye]) {
+                    bye = order[i];
+                }
+            }
+            paired[bye] = true;
+        }
+        if (byes.size() == round) {
+            byes.add(bye);
+        }
+        for (int i = 0; i < order.length; i++) {
+            int player = order[i];
+            if (paired[player]) {
+                continue;
+            }
+            // The highest-scoring opponent not met yet, or else the highest-scoring one
+            int opponent = -1;
+            for (int j = i + 1; j < order.length; j++) {
+                int candidate = order[j];
+                if (!paired[candidate] && (opponent == -1 || !met[player][candidate] && met[player][opponent])) {
+                    opponent = candidate;
+                }
+            }
+            if (opponent != -1) {
+                paired[player] = true;
+                paired[opponent] = true;
+                pairs.add(new int[]{player, opponent});
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Pairs every Swiss round before the given one that has not been paired
+     * yet, so that the byes given in them are known.
+     *
+     * @param round the round whose earlier rounds must be paired
+     */
+    private synchronized void pairByes(int round) {
+        while (byes.size() < round) {
+            pair(byes.size());
+        }
+    }
+
+    /**
+     * Gets the points a bye is worth: those of winning every game of a round.
+     *
+     * @return the points credited for a bye
+     */
+    private int getByeCredit() {
+        return 2 * (maxLength - minLength + 1);
+    }
+
+    /**
+     * Fits Elo ratings to every result so far by maximum likelihood, using the
+     * Bradley-Terry model with ties counting half a win for each player. One
+     * tied game between every two players is added as a prior, so that
+     * players who won or lost every game get finite ratings. Ratings average
+     * 0; only the differences between them mean anything.
+     *
+     * @return the rating of each player, in the order they were given
+     */
+    public double[] getRatings() {
+        return fitRatings()[0];
+    }
+
+    /**
+     * Gets the half-width of the 95% confidence interval of each player's
+     * rating, from the curvature of the likelihood at the fitted ratings.
+     *
+     * @return the confidence interval of each player, in Elo points
+     */
+    public double[] getRatingErrors() {
+        return fitRatings()[1];
+    }
+
+    /**
+     * Fits the ratings and their confidence intervals.
+     *
+     * @return the ratings, then the confidence intervals
+     */
+    private double[][] fitRatings() {
+        int n = names.length;
+        double[] wins = new double[n];
+        double[][] games = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            wins[i] = 0.5 * (n - 1);
+            for (int j = 0; j < n; j++) {
+                games[i][j] = i == j ? 0 : 1;
+            }
+        }
+        synchronized (this) {
+            for (int[] game : results) {
+                double score = score(game);
+                wins[game[FIRST]] += score;
+                wins[game[SECOND]] += 1 - score;
+                games[game[FIRST]][game[SECOND]]++;
+                games[game[SECOND]][game[FIRST]]++;
+            }
+        }
+
+        // Minorization-maximization updates of each player's strength
+        double[] strength = new double[n];
+        Arrays.fill(strength, 1);
+        for (int iteration = 0; iteration < RATING_ITERATIONS; iteration++) {
+            double change = 0;
+            double logSum = 0;
+            for (int i = 0; i < n; i++) {
+                double denominator = 0;
+                for (int j = 0; j < n; j++) {
+                    denominator += games[i][j] / (strength[i] + strength[j]);
+                }
+                double updated = wins[i] / denominator;
+                change = Math.max(change, Math.abs(Math.log(updated / strength[i])));
+                strength[i] = updated;
+                logSum += Math.log(updated);
+            }
+            double mean = Math.exp(logSum / n);
+            for (int i = 0; i < n; i++) {
+                strength[i] /= mean;
+            }
+            if (change < RATING_TOLERANCE) {
+                break;
+            }
+        }
+
+        double[] ratings = new double[n];
+        double[] errors = new double[n];
+        for (int i = 0; i < n; i++) {
+            ratings[i] = ELO_SCALE * Math.log(strength[i]);
+            double information = 0;
+            for (int j = 0; j < n; j++) {
+                double p = strength[i] / (strength[i] + strength[j]);
+                information += games[i][j] * p * (1 - p);
+            }
+            errors[i] = Z_95 * ELO_SCALE / Math.sqrt(information);
+        }
+        return new double[][]{ratings, errors};
+    }
+
+    /**
+     * Gets the number of games played, including those loaded from the
+     * results file.
+     *
+     * @return the number of games played
+     */
+    public synchronized int getGames() {
+        return results.size();
+    }
+
+    /**
+     * Gets the points a player has scored in the tournament: 1 for each game
+     * won and 0.5 for each tie, plus the points credited for any byes.
+     *
+     * @param player the index of the player
+     * @return the player's score
+     */
+    public synchronized double getScore(int player) {
+        double total = 0;
+        int rounds = 0;
+        for (int[] game : results) {
+            if (game[FIRST] == player) {
+                total += score(game);
+            } else if (game[SECOND] == player) {
+                total += 1 - score(game);
+            }
+            rounds = Math.max(rounds, game[ROUND] + 1);
+        }
+        return total + getByes(player, rounds) * getByeCredit();
+    }
+
+    /**
+     * Gets the number of byes a player has had in the rounds played so far.
+     *
+     * @param player the index of the player
+     * @return the number of rounds the player sat out
+     */
+    public synchronized int getByes(int player) {
+        int rounds = 0;
+        for (int[] game : results) {
+            rounds = Math.max(rounds, game[ROUND] + 1);
+        }
+        return getByes(player, rounds);
+    }
+
+    /**
+     * Gets the number of byes a player had in the given number of rounds.
+     *
+     * @param player the index of the player
+     * @param rounds the number of rounds to count byes in
+     * @return the number of rounds the player sat out
+     */
+    private int getByes(int player, int rounds) {
+        if (format != SWISS) {
+            return 0;
+        }
+        pairByes(rounds);
+        int count = 0;
+        for (int r = 0; r < rounds; r++) {
+            if (byes.get(r) == player) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Describes the standings, best rated first.
+     *
+     * @return each player's rating with its 95% confidence interval, score and
+     *         number of games
+     */
+    public String getReport() {
+        double[][] fit = fitRatings();
+        Integer[] order = new Integer[names.length];
+        int[] played = new int[names.length];
+        synchronized (this) {
+            for (int[] game : results) {
+                played[game[FIRST]]++;
+                played[game[SECOND]]++;
+            }
+        }
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(fit[0][b], fit[0][a]));
+
+        StringBuilder report = new StringBuilder(String.format("games: %d%n", getGames()));
+        for (int i : order) {
+            report.append(String.format("%-12s %7.1f +/- %5.1f  score %6.1f / %d%n",
+                    names[i], fit[0][i], fit[1][i], getScore(i), played[i]));
+        }
+        return report.toString().trim();
+    }
+
+    /**
+     * Gets the score of the player who moved first in a game.
+     *
+     * @param game a finished game
+     * @return 1 for a win, 0.5 for a tie, 0 for a loss
+     */
+    private static double score(int[] game) {
+        return Integer.signum(game[FIRST_POINTS] - game[SECOND_POINTS]) * 0.5 + 0.5;
+    }
+
+    /**
+     * Identifies a game by its round, players and board length.
+     *
+     * @param game the game
+     * @return a key unique to the game within the tournament
+     */
+    private String key(int[] game) {
+        return game[ROUND] + "," + names[game[FIRST]] + "," + names[game[SECOND]] + "," + game[LENGTH];
+    }
+
+    /**
+     * Writes a finished game as a line of the results file:
+     * round,first,second,length,firstPoints,secondPoints.
+     *
+     * @param game the finished game
+     * @return the line, without a line break
+     */
+    private String format(int[] game) {
+        return key(game) + "," + game[FIRST_POINTS] + "," + game[SECOND_POINTS];
+    }
+
+    /**
+     * Reads a line of the results file.
+     *
+     * @param line the line
+     * @return the game, or null if the line is malformed or names a player
+     *         not taking part
+     */
+    private int[] parse(String line) {
+        String[] fields = line.split(",");
+        if (fields.length != FIELDS) {
+            return null;
+        }
+        int[] game = new int[FIELDS];
+        try {
+            game[ROUND] = Integer.parseInt(fields[0]);
+            game[LENGTH] = Integer.parseInt(fields[3]);
+            game[FIRST_POINTS] = Integer.parseInt(fields[4]);
+            game[SECOND_POINTS] = Integer.parseInt(fields[5]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        game[FIRST] = Arrays.asList(names).indexOf(fields[1]);
+        game[SECOND] = Arrays.asList(names).indexOf(fields[2]);
+        return game[FIRST] < 0 || game[SECOND] < 0 ? null : game;
+    }
+
+    /**
+     * Runs a tournament between strategies and prints the standings. Running
+     * it again with the same results file resumes it.
+     * Arguments: rounds threads roundrobin|swiss resultsFile player1 player2 [player...]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            System.out.println("Usage: Tournament rounds threads roundrobin|swiss resultsFile player1 player2 [player...]");
+            System.out.println("Players: random, greedy, alphabeta, mcts");
+            return;
+        }
+        List<String> names = new ArrayList<>();
+        List<LongFunction<Strategy>> players = new ArrayList<>();
+        for (int i = 4; i < args.length; i++) {
+            // The same strategy may take part more than once under different names
+            names.add(args[i] + (names.contains(args[i]) ? "#" + i : ""));
+            players.add(SelfPlay.strategy(args[i]));
+        }
+        int format = args[2].equalsIgnoreCase("swiss") ? SWISS : ROUND_ROBIN;
+        Tournament tournament = new Tournament(names, players, format, MIN_LENGTH, MAX_LENGTH, 0,
+                Path.of(args[3]));
+        tournament.run(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        System.out.println(tournament.getReport());
+    }
+}
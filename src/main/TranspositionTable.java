@@ -0,0 +1,148 @@
+package main;
+
+import java.util.Arrays;
+
+public class TranspositionTable {
+    // Each entry is a key word and a data word. The key word holds the hash
+    // XOR the data, so an entry torn by two threads writing at once simply
+    // fails to match instead of returning another position's data.
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    private int generation;
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+    public static final int MAX_DEPTH = 255;
+    public static final int MAX_VALUE = (1 << 19) - 1;
+    // Layout of a data word
+    private static final long MOVE_MASK = (1L << 26) - 1;
+    private static final int DEPTH_SHIFT = 26;
+    private static final int BOUND_SHIFT = 34;
+    private static final int VALUE_SHIFT = 36;
+    private static final int GENERATION_SHIFT = 56;
+    private static final long VALID = 1L << 63;
+    private static final int GENERATION_MASK = 0x7F;
+
+    /**
+     * Constructor that creates a table using about the given amount of memory.
+     * Each bucket holds two entries: one kept for the deepest search that
+     * reached it, and one that is always replaced.
+     *
+     * @param megabytes the memory to use, in megabytes
+     */
+    public TranspositionTable(int megabytes) {
+        long buckets = Math.max(1, (long) megabytes * 1024 * 1024 / 32);
+        int size = Integer.highestOneBit((int) Math.min(buckets, 1 << 28));
+        keys = new long[2 * size];
+        data = new long[2 * size];
+        bucketMask = size - 1;
+    }
+
+    /**
+     * Starts a new search. Entries from earlier searches are replaced first.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Removes every entry from the table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param key the position's hash
+     * @return the stored entry, or 0 if the position is not in the table
+     */
+    public long probe(long key) {
+        int slot = (int) key & bucketMask;
+        slot += slot;
+        long entry = data[slot];
+        if ((keys[slot] ^ entry) == key && entry != 0) {
+            return entry;
+        }
+        entry = data[slot + 1];
+        if ((keys[slot + 1] ^ entry) == key && entry != 0) {
+            return entry;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of searching a position. The deep slot of the bucket is
+     * replaced if the new search was at least as deep or the old entry is from
+     * an earlier search; otherwise the always-replace slot is used.
+     *
+     * @param key   the position's hash
+     * @param value the value of the position, between -MAX_VALUE and MAX_VALUE
+     * @param depth the depth the position was searched to
+     * @param bound EXACT, LOWER or UPPER
+     * @param move  the best move found, packed with Move.pack, or 0 if none
+     */
+    public void store(long key, int value, int depth, int bound, int move) {
+        long entry = VALID
+                | ((long) generation << GENERATION_SHIFT)
+                | (((long) value & 0xFFFFF) << VALUE_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) Math.min(depth, MAX_DEPTH) << DEPTH_SHIFT)
+                | (move & MOVE_MASK);
+        int slot = (int) key & bucketMask;
+        slot += slot;
+        long deep = data[slot];
+        if ((keys[slot] ^ deep) == key
+                || depth >= depthOf(deep)
+                || ((deep >>> GENERATION_SHIFT) & GENERATION_MASK) != generation) {
+            keys[slot] = key ^ entry;
+            data[slot] = entry;
+        } else {
+            keys[slot + 1] = key ^ entry;
+            data[slot + 1] = entry;
+        }
+    }
+
+    /**
+     * Gets the value of a stored entry.
+     *
+     * @param entry an entry returned by probe
+     * @return the stored value
+     */
+    public static int valueOf(long entry) {
+        return (int) (entry << (64 - VALUE_SHIFT - 20) >> (64 - 20));
+    }
+
+    /**
+     * Gets the depth of a stored entry.
+     *
+     * @param entry an entry returned by probe
+     * @return the depth the position was searched to
+     */
+    public static int depthOf(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /**
+     * Gets the bound type of a stored entry.
+     *
+     * @param entry an entry returned by probe
+     * @return EXACT, LOWER or UPPER
+     */
+    public static int boundOf(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & 3;
+    }
+
+    /**
+     * Gets the best move of a stored entry.
+     *
+     * @param entry an entry returned by probe
+     * @return the best move, packed with Move.pack, or 0 if none was stored
+     */
+    public static int moveOf(long entry) {
+        return (int) (entry & MOVE_MASK);
+    }
+}
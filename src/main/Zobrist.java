@@ -0,0 +1,48 @@
+package main;
+
+public class Zobrist {
+    /**
+     * Key mixed into the hash when it is Player 2's turn.
+     */
+    public static final long SIDE = mix(0x5D0E5D0E5D0E5D0EL);
+    private static final long SCORE_SALT = 0x2545F4914F6CDD1DL;
+
+    private Zobrist() {
+    }
+
+    /**
+     * Gets the key for piece m standing on the given cell. Keys are derived from
+     * the cell's coordinates rather than drawn from a table, so they are the
+     * same for every board size and every Sos instance.
+     *
+     * @param c column of the cell
+     * @param r row of the cell
+     * @param m Sos.S or Sos.O
+     * @return the key for the piece on that cell
+     */
+    public static long cellKey(int c, int r, int m) {
+        return mix(((long) r << 32) | ((long) c << 2) | m);
+    }
+
+    /**
+     * Gets the key for a given score difference.
+     *
+     * @param difference Player 1's points minus Player 2's points
+     * @return the key for the score difference, 0 if the scores are level
+     */
+    public static long scoreKey(int difference) {
+        return difference == 0 ? 0 : mix(difference ^ SCORE_SALT);
+    }
+
+    /**
+     * Scrambles a value with the SplitMix64 finalizer.
+     *
+     * @param z the value to scramble
+     * @return a well-mixed 64-bit value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
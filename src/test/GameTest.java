@@ -6,6 +6,16 @@ import org.junit.jupiter.api.*;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 
 import static main.Sos.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -311,4 +321,695 @@ public class GameTest {
         assertTrue(game.getCurrentPlayer());
         assertFalse(game.gameIsOver());
     }
+
+    @Test
+    public void testBitGridMatchesArrayGrid() {
+        Random random = new Random(42);
+        for (int len = 3; len <= BitGrid.MAX_LENGTH; len++) {
+            ArrayGrid arrayGrid = new ArrayGrid(len);
+            BitGrid bitGrid = new BitGrid(len);
+            for (int r = 0; r < len; r++) {
+                for (int c = 0; c < len; c++) {
+                    int m = random.nextInt(3);
+                    arrayGrid.setCell(c, r, m);
+                    bitGrid.setCell(c, r, m);
+                }
+            }
+            for (int r = 0; r < len; r++) {
+                for (int c = 0; c < len; c++) {
+                    assertEquals(arrayGrid.getCell(c, r), bitGrid.getCell(c, r));
+                    assertEquals(arrayGrid.getAdditionalSOS(c, r, O), bitGrid.getAdditionalSOS(c, r, O));
+                    assertEquals(arrayGrid.getAdditionalSOS(c, r, S), bitGrid.getAdditionalSOS(c, r, S));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testChunkedGridMatchesArrayGrid() {
+        Random random = new Random(11);
+        int len = 2 * ChunkedGrid.CHUNK_SIZE + 5;
+        for (int fill = 1; fill <= 3; fill++) {
+            ArrayGrid arrayGrid = new ArrayGrid(len);
+            ChunkedGrid chunkedGrid = new ChunkedGrid(len);
+            for (int r = 0; r < len; r++) {
+                for (int c = 0; c < len; c++) {
+                    // Sparse, then denser boards
+                    int m = random.nextInt(4) < fill ? random.nextInt(3) : EMPTY;
+                    arrayGrid.setCell(c, r, m);
+                    chunkedGrid.setCell(c, r, m);
+                }
+            }
+            for (int r = 0; r < len; r++) {
+                for (int c = 0; c < len; c++) {
+                    assertEquals(arrayGrid.getCell(c, r), chunkedGrid.getCell(c, r));
+                    assertEquals(arrayGrid.getAdditionalSOS(c, r, O), chunkedGrid.getAdditionalSOS(c, r, O));
+                    assertEquals(arrayGrid.getAdditionalSOS(c, r, S), chunkedGrid.getAdditionalSOS(c, r, S));
+                }
+            }
+            int[] expected = arrayGrid.getFilledCells();
+            int[] actual = chunkedGrid.getFilledCells();
+            Arrays.sort(actual);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testChunkedGridGameAcrossChunks() {
+        Sos game = new Sos(CHUNKED_GRID);
+        game.reset(MAX_LENGTH);
+        // An SOS straddling the corner where four chunks meet
+        int edge = 3 * ChunkedGrid.CHUNK_SIZE;
+        game.setPiece(S);
+        game.playMove(edge - 1, edge - 1);
+        game.setPiece(O);
+        game.playMove(edge, edge);
+        assertEquals(1, game.getScoringMoveCount(S));
+        assertEquals((edge + 1) * MAX_LENGTH + edge + 1, game.getScoringMove(S, 0));
+        game.setPiece(S);
+        game.playMove(edge + 1, edge + 1);
+        assertEquals(1, game.getP1Points());
+        assertEquals(0, game.getScoringMoveCount(S));
+        assertEquals(0, game.getScoringMoveCount(O));
+
+        Sos copy = new Sos(game);
+        assertTrue(copy.undoMove());
+        assertEquals(EMPTY, copy.getCell(edge + 1, edge + 1));
+        assertEquals(S, game.getCell(edge + 1, edge + 1), "Copies should not share chunks");
+    }
+
+    @Test
+    public void testHashedCellSetMatchesDirectCellSet() {
+        Random random = new Random(5);
+        int capacity = 2 * CellSet.MAX_DIRECT_CAPACITY;
+        CellSet direct = new CellSet(CellSet.MAX_DIRECT_CAPACITY);
+        CellSet hashed = new CellSet(capacity);
+        for (int i = 0; i < 200000; i++) {
+            // Few distinct cells, so that removals often hit present cells
+            int cell = random.nextInt(3000) * 17 % CellSet.MAX_DIRECT_CAPACITY;
+            if (random.nextInt(3) == 0) {
+                direct.remove(cell);
+                hashed.remove(cell);
+            } else {
+                direct.add(cell);
+                hashed.add(cell);
+            }
+            assertEquals(direct.contains(cell), hashed.contains(cell));
+            assertEquals(direct.size(), hashed.size());
+        }
+        for (int i = 0; i < hashed.size(); i++) {
+            assertTrue(direct.contains(hashed.get(i)));
+        }
+        assertTrue(new CellSet(hashed).contains(hashed.get(0)));
+        hashed.clear();
+        assertEquals(0, hashed.size());
+        assertFalse(hashed.contains(direct.get(0)));
+    }
+
+    @Test
+    public void testBitGridGame() {
+        Sos game = new Sos(BIT_GRID);
+        game.setPiece(S);
+        game.playMove(0, 0);
+        game.setPiece(O);
+        game.playMove(1, 1);
+        game.setPiece(S);
+        game.playMove(2, 2);
+        assertEquals(1, game.getP1Points(), "Player 1 should have 1 point");
+        assertTrue(game.getCurrentPlayer());
+        assertTrue(game.undoMove());
+        assertEquals(EMPTY, game.getCell(2, 2));
+        assertEquals(0, game.getP1Points());
+    }
+
+    @Test
+    public void testLargeBoard() {
+        Sos game = new Sos(BIT_GRID);
+        game.reset(100);
+        assertEquals(100, game.getLength());
+        game.setPiece(S);
+        game.playMove(97, 99);
+        game.setPiece(O);
+        game.playMove(98, 98);
+        game.setPiece(S);
+        game.playMove(99, 97);
+        assertEquals(1, game.getP1Points(), "Player 1 should score on the far corner");
+        assertTrue(game.undoMove());
+        assertEquals(EMPTY, game.getCell(99, 97));
+        assertEquals(0, game.getP1Points());
+
+        assertThrows(IllegalArgumentException.class, () -> game.reset(0));
+        assertThrows(IllegalArgumentException.class, () -> game.reset(MAX_LENGTH + 1));
+        assertEquals(100, game.getLength(), "A rejected length should leave the board as it was");
+    }
+
+    @Test
+    public void testScoringIndexTracksPlayAndUndo() {
+        Random random = new Random(7);
+        Sos game = new Sos(BIT_GRID);
+        int len = game.getLength();
+        int[] cells = new int[len * len];
+        for (int i = 0; i < 4 * len * len && !game.gameIsOver(); i++) {
+            if (random.nextInt(4) == 0) {
+                game.undoMove();
+            } else {
+                game.setPiece(random.nextBoolean() ? S : O);
+                game.playMove(random.nextInt(len), random.nextInt(len));
+            }
+
+            for (int m = O; m <= S; m++) {
+                int expected = 0;
+                for (int r = 0; r < len; r++) {
+                    for (int c = 0; c < len; c++) {
+                        if (game.getCell(c, r) == EMPTY && game.getAdditionalSOS(c, r, m) > 0) {
+                            expected++;
+                        }
+                    }
+                }
+                int count = game.getScoringMoves(m, cells);
+                assertEquals(expected, count);
+                for (int j = 0; j < count; j++) {
+                    int c = cells[j] % len;
+                    int r = cells[j] / len;
+                    assertTrue(game.getAdditionalSOS(c, r, m) > 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGeneratedMovesMatchPlayedMoves() {
+        Random random = new Random(11);
+        for (int grid : new int[]{ARRAY_GRID, BIT_GRID, CHUNKED_GRID}) {
+            Sos game = new Sos(grid);
+            int len = 7;
+            game.reset(len);
+            int[] moves = new int[game.getMoveBufferSize()];
+            int[] groupSizes = new int[2];
+            while (!game.gameIsOver()) {
+                int count = game.generateMoves(moves);
+                assertEquals(game.getMoveBufferSize(), count);
+                for (int i = 0; i < count; i++) {
+                    int c = Move.columnOf(moves[i]);
+                    int r = Move.rowOf(moves[i]);
+                    assertEquals(EMPTY, game.getCell(c, r));
+                    assertEquals(game.getAdditionalSOS(c, r, Move.pieceOf(moves[i])), Move.pointsOf(moves[i]));
+                    assertEquals(game.getCurrentPlayer(), Move.isP1TurnOf(moves[i]));
+                }
+
+                assertEquals(count, game.generateOrderedMoves(moves, groupSizes));
+                int scoring = groupSizes[SCORING_MOVES];
+                int safe = groupSizes[SAFE_MOVES];
+                for (int i = 0; i < count; i++) {
+                    int c = Move.columnOf(moves[i]);
+                    int r = Move.rowOf(moves[i]);
+                    assertEquals(i < scoring, Move.pointsOf(moves[i]) > 0);
+                    if (i >= scoring) {
+                        game.playMove(c, r, Move.pieceOf(moves[i]));
+                        assertEquals(i < scoring + safe, !game.possibleSOS(), "Move " + i + " safety");
+                        game.retractMove();
+                    }
+                }
+
+                int move = moves[random.nextInt(count)];
+                game.playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+            }
+        }
+    }
+
+    @Test
+    public void testRedoReplaysUndoneMoves() {
+        Sos game = new Sos();
+        game.setPiece(S);
+        game.playMove(0, 0);
+        game.setPiece(O);
+        game.playMove(1, 0);
+        game.setPiece(S);
+        game.playMove(2, 0);
+        assertFalse(game.redoMove(), "Nothing has been undone yet");
+
+        assertTrue(game.undoMove());
+        assertTrue(game.undoMove());
+        assertTrue(game.redoMove());
+        assertEquals(O, game.getCell(1, 0));
+        assertTrue(game.redoMove());
+        assertEquals(S, game.getCell(2, 0));
+        assertEquals(1, game.getP1Points());
+        assertTrue(game.getCurrentPlayer());
+        assertFalse(game.redoMove());
+
+        Move move = game.getMove(2);
+        assertEquals(2, move.getColumn());
+        assertEquals(S, move.getPiece());
+        assertTrue(move.isP1Turn());
+        assertEquals(1, move.getPointsGained());
+    }
+
+    @Test
+    public void testNewMoveDiscardsRedo() {
+        Sos game = new Sos();
+        game.setPiece(S);
+        game.playMove(0, 0);
+        game.playMove(1, 1);
+        game.undoMove();
+        game.playMove(2, 2);
+        assertFalse(game.redoMove());
+        assertEquals(EMPTY, game.getCell(1, 1));
+        assertEquals(2, game.getMoveCount());
+    }
+
+    @Test
+    public void testBinarySaveAndLoad() throws IOException {
+        Path path = Files.createTempFile("gamestate", ".sos");
+        Sos game = new Sos(BIT_GRID);
+        game.reset(7);
+        game.playMove(0, 0, S);
+        game.playMove(1, 0, O);
+        game.playMove(2, 0, S); // Player 1 scores
+        game.playMove(6, 6, O);
+        game.undoMove();
+        game.setPiece(O);
+        game.saveBinaryGame(path);
+
+        Sos loaded = new Sos();
+        loaded.loadGame(path);
+        assertEquals(7, loaded.getLength());
+        for (int r = 0; r < 7; r++) {
+            for (int c = 0; c < 7; c++) {
+                assertEquals(game.getCell(c, r), loaded.getCell(c, r));
+            }
+        }
+        assertEquals(1, loaded.getP1Points());
+        assertTrue(loaded.getCurrentPlayer());
+        assertEquals(O, loaded.getPiece());
+        assertEquals(3, loaded.getMoveCount());
+        assertEquals(game.getHash(), loaded.getHash());
+        assertTrue(loaded.redoMove(), "Undone moves should survive a save");
+        assertEquals(O, loaded.getCell(6, 6));
+
+        // A corrupted file is rejected
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(path, bytes);
+        Sos rejected = new Sos();
+        rejected.reset(3);
+        rejected.loadGame(path);
+        assertEquals(3, rejected.getLength());
+        Files.delete(path);
+    }
+
+    @Test
+    public void testBinaryLoadRejectsBadCounts() throws IOException {
+        Path path = Files.createTempFile("gamestate", ".sos");
+        Sos game = new Sos(BIT_GRID);
+        game.reset(3);
+        game.playMove(0, 0, S);
+        game.playMove(1, 0, O);
+        game.saveBinaryGame(path);
+        byte[] saved = Files.readAllBytes(path);
+
+        // Length, move count and recorded count, each with a valid checksum
+        int[][] corruptions = {{8, 0}, {24, -1}, {24, 3}, {28, 10}};
+        for (int[] corruption : corruptions) {
+            ByteBuffer bytes = ByteBuffer.wrap(saved.clone());
+            bytes.putInt(corruption[0], corruption[1]);
+            CRC32 crc = new CRC32();
+            crc.update(bytes.array(), 0, 32);
+            crc.update(bytes.array(), 36, saved.length - 36);
+            bytes.putInt(32, (int) crc.getValue());
+            assertNull(BinaryGameFile.wrap(bytes));
+            Files.write(path, bytes.array());
+
+            Sos rejected = new Sos();
+            rejected.reset(5);
+            assertFalse(rejected.loadGame(path));
+            assertEquals(5, rejected.getLength());
+            assertEquals(0, rejected.getMoveCount());
+        }
+        Files.delete(path);
+    }
+
+    @Test
+    public void testLoadDetectsCsvFormat() throws IOException {
+        Path path = Files.createTempFile("gamestate", ".dat");
+        Files.write(path, "2\n0\ntrue\n2\n3\n2,1,2\n0,0,0\n0,0,0\n0,0,true,0\n1,0,false,0\n2,0,true,1".getBytes());
+        Sos game = new Sos(BIT_GRID);
+        game.loadGame(path);
+        assertEquals(3, game.getLength());
+        assertEquals(O, game.getCell(1, 0));
+        assertEquals(2, game.getP1Points());
+        assertEquals(3, game.getMoveCount());
+        Files.delete(path);
+    }
+
+    @Test
+    public void testLoadPicksNewestSaveFile() throws IOException {
+        Path binary = Paths.get(BinaryGameFile.FILE_PATH);
+        Sos game = new Sos();
+        game.setBinarySaves(true);
+        game.reset(4);
+        game.playMove(3, 3, O);
+        game.saveGame();
+
+        Sos loaded = new Sos();
+        loaded.reset(9);
+        loaded.loadGame();
+        assertEquals(4, loaded.getLength());
+        assertEquals(O, loaded.getCell(3, 3));
+        Files.delete(binary);
+    }
+
+    @Test
+    public void testJournalRecoversEverySave() throws IOException {
+        Path dir = Files.createTempDirectory("journal");
+        Path snapshot = dir.resolve("journal.sos");
+        Path log = dir.resolve("journal.log");
+        Sos game = new Sos(BIT_GRID);
+        game.reset(9);
+        // A small compaction limit makes some saves write new snapshots
+        game.setJournal(new GameJournal(snapshot, log, 5));
+        Random random = new Random(11);
+
+        for (int i = 0; i < 60; i++) {
+            int action = random.nextInt(6);
+            if (action == 0) {
+                game.undoMove();
+            } else if (action == 1) {
+                game.redoMove();
+            } else if (action == 2) {
+                game.setPiece(game.getPiece() == S ? O : S);
+            } else {
+                game.playMove(random.nextInt(9), random.nextInt(9), random.nextBoolean() ? S : O);
+            }
+            if (game.checkWinner() != 0) {
+                break;
+            }
+            game.saveGame();
+
+            Sos loaded = new Sos();
+            loaded.setJournal(new GameJournal(snapshot, log, 5));
+            loaded.loadGame();
+            assertEquals(game.getHash(), loaded.getHash());
+            assertEquals(game.getP1Points(), loaded.getP1Points());
+            assertEquals(game.getP2Points(), loaded.getP2Points());
+            assertEquals(game.getPiece(), loaded.getPiece());
+            assertEquals(game.getMoveCount(), loaded.getMoveCount());
+            for (int j = 0; j < game.getMoveCount(); j++) {
+                assertEquals(game.getMove(j).getColumn(), loaded.getMove(j).getColumn());
+                assertEquals(game.getMove(j).getRow(), loaded.getMove(j).getRow());
+            }
+            Sos redone = new Sos(game);
+            while (redone.redoMove() && loaded.redoMove()) {
+                assertEquals(redone.getHash(), loaded.getHash());
+            }
+            assertEquals(redone.redoMove(), loaded.redoMove());
+            loaded.setJournal(null);
+        }
+        game.setJournal(null);
+        try (var files = Files.list(dir)) {
+            files.forEach(path -> path.toFile().delete());
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testJournalIgnoresTornRecord() throws IOException {
+        Path dir = Files.createTempDirectory("journal");
+        Path snapshot = dir.resolve("journal.sos");
+        Path log = dir.resolve("journal.log");
+        Sos game = new Sos();
+        game.reset(5);
+        game.setJournal(new GameJournal(snapshot, log, 100));
+        game.saveGame();
+        game.playMove(0, 0, S);
+        game.saveGame();
+        game.playMove(1, 0, O);
+        game.saveGame();
+        game.setJournal(null);
+        assertTrue(Files.size(log) > 0);
+
+        // A crash while appending leaves part of a record behind
+        byte[] bytes = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOf(bytes, bytes.length - 3));
+        Sos loaded = new Sos();
+        loaded.setJournal(new GameJournal(snapshot, log, 100));
+        loaded.loadGame();
+        assertEquals(1, loaded.getMoveCount());
+        assertEquals(S, loaded.getCell(0, 0));
+        assertEquals(EMPTY, loaded.getCell(1, 0));
+        loaded.setJournal(null);
+
+        Files.delete(snapshot);
+        Files.delete(log);
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testSaveStoreSlots() throws IOException {
+        Path dir = Files.createTempDirectory("saves");
+        SaveStore store = new SaveStore(dir);
+        Sos game = new Sos();
+        for (int slot = 0; slot < 3; slot++) {
+            game.reset(4 + slot);
+            game.playMove(0, 0, S);
+            game.saveGame(store, slot, "Game " + slot);
+        }
+        game.playMove(1, 0, O);
+        game.saveGame(store, 2, "\u00dcberschrieben"); // replaces slot 2
+        game.saveGame(store, 5, "A name much longer than thirty-two bytes");
+        store.delete(0);
+        store.close();
+
+        SaveStore reopened = new SaveStore(dir);
+        assertEquals(6, reopened.getSlotCount());
+        assertFalse(reopened.isUsed(0));
+        assertEquals(0, reopened.getFreeSlot());
+        assertEquals("Game 1", reopened.getName(1));
+        assertEquals(5, reopened.getLength(1));
+        assertEquals("\u00dcberschrieben", reopened.getName(2));
+        assertEquals(2, reopened.getMoveCount(2));
+        assertEquals(SaveStore.MAX_NAME_BYTES, reopened.getName(5).length());
+        assertTrue(reopened.getTimestamp(2) > 0);
+
+        Sos loaded = new Sos();
+        loaded.loadGame(reopened, 2);
+        assertEquals(6, loaded.getLength());
+        assertEquals(O, loaded.getCell(1, 0));
+        assertEquals(game.getHash(), loaded.getHash());
+        loaded.loadGame(reopened, 0); // empty, so nothing changes
+        assertEquals(6, loaded.getLength());
+
+        // Compaction drops the replaced games and keeps the others loadable
+        long before = reopened.getDataSize();
+        reopened.compact();
+        assertTrue(reopened.getDataSize() < before);
+        loaded.loadGame(reopened, 1);
+        assertEquals(5, loaded.getLength());
+        assertEquals(S, loaded.getCell(0, 0));
+        reopened.close();
+
+        SaveStore compacted = new SaveStore(dir);
+        loaded.loadGame(compacted, 5);
+        assertEquals(game.getHash(), loaded.getHash());
+        compacted.close();
+        try (var files = Files.list(dir)) {
+            files.forEach(path -> path.toFile().delete());
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testBackgroundSavesAreCoalesced() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        Path snapshot = dir.resolve("journal.sos");
+        Path log = dir.resolve("journal.log");
+        Sos game = new Sos(BIT_GRID);
+        game.reset(8);
+        game.setJournal(new GameJournal(snapshot, log, 1000));
+        BackgroundPersistence persistence = new BackgroundPersistence(Runnable::run);
+        AtomicInteger callbacks = new AtomicInteger();
+        for (int c = 0; c < 4; c++) {
+            game.playMove(c, 0, O);
+            persistence.save("journal", game.snapshotForSave(), Sos::saveGame, saved -> callbacks.incrementAndGet());
+        }
+        persistence.flush();
+        int written = callbacks.get();
+        assertTrue(written >= 1 && written <= 4);
+
+        // Hold up the background thread so the next saves queue up behind it
+        CountDownLatch release = new CountDownLatch(1);
+        persistence.load(new Sos(), loading -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }, loaded -> { });
+        AtomicBoolean allSaved = new AtomicBoolean(true);
+        game.undoMove();
+        game.undoMove();
+        for (int c = 0; c < 8; c++) {
+            game.playMove(c, 5, S);
+            if (c == 4) {
+                game.undoMove();
+            }
+            persistence.save("journal", game.snapshotForSave(), Sos::saveGame, saved -> {
+                callbacks.incrementAndGet();
+                allSaved.compareAndSet(true, saved);
+            });
+        }
+        release.countDown();
+        persistence.flush();
+        assertEquals(written + 1, callbacks.get(), "The queued saves should be written as one");
+        assertTrue(allSaved.get());
+
+        Sos loaded = new Sos();
+        loaded.setJournal(new GameJournal(snapshot, log, 1000));
+        assertTrue(loaded.loadGame());
+        assertEquals(game.getHash(), loaded.getHash());
+        assertEquals(game.getMoveCount(), loaded.getMoveCount());
+        loaded.setJournal(null);
+        game.setJournal(null);
+        persistence.shutdown();
+        try (var files = Files.list(dir)) {
+            files.forEach(path -> path.toFile().delete());
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testSeekMoveMatchesReplay() {
+        Sos game = SelfPlay.playGame(12, new RandomPlayer(3), new RandomPlayer(4));
+        int count = game.getMoveCount();
+        assertEquals(CHECKPOINT_INTERVAL, game.getCheckpointInterval());
+        // The position after each move, as reached by playing the moves in order
+        long[] hashes = new long[count + 1];
+        int[] points = new int[count + 1];
+        Sos replay = new Sos();
+        replay.reset(12);
+        for (int i = 0; i <= count; i++) {
+            hashes[i] = replay.getHash();
+            points[i] = replay.getP1Points() - replay.getP2Points();
+            if (i < count) {
+                Move move = game.getMove(i);
+                replay.playMove(move.getColumn(), move.getRow(), move.getPiece());
+            }
+        }
+
+        Random random = new Random(5);
+        for (int seek = 0; seek < 200; seek++) {
+            int index = random.nextInt(count + 1);
+            assertTrue(game.seekMove(index));
+            assertEquals(index, game.getMoveCount());
+            assertEquals(count, game.getRecordedMoveCount());
+            assertEquals(hashes[index], game.getHash());
+            assertEquals(points[index], game.getP1Points() - game.getP2Points());
+            assertEquals(index == count, game.gameIsOver());
+        }
+        assertFalse(game.seekMove(count + 1));
+        assertFalse(game.seekMove(-1));
+
+        // Playing another move discards the later moves and their checkpoints
+        game.seekMove(0);
+        game.seekMove(count);
+        game.seekMove(40);
+        Move next = game.getMove(40 - 1);
+        game.seekMove(39);
+        int piece = next.getPiece() == S ? O : S;
+        assertTrue(game.playMove(next.getColumn(), next.getRow(), piece));
+        assertEquals(40, game.getRecordedMoveCount());
+        game.seekMove(0);
+        game.seekMove(40);
+        assertEquals(piece, game.getCell(next.getColumn(), next.getRow()));
+        while (!game.gameIsOver()) {
+            int move = new RandomPlayer(6).chooseMove(game);
+            game.playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+        }
+        long end = game.getHash();
+        int p1 = game.getP1Points();
+        game.seekMove(0);
+        game.seekMove(game.getRecordedMoveCount());
+        assertEquals(end, game.getHash());
+        assertEquals(p1, game.getP1Points());
+    }
+
+    @Test
+    public void testSnapshotsAreIndependentOfTheGame() throws Exception {
+        Sos game = new Sos(CHUNKED_GRID);
+        game.reset(40);
+        Random random = new Random(8);
+        for (int i = 0; i < 300; i++) {
+            game.playMove(random.nextInt(40), random.nextInt(40), random.nextBoolean() ? S : O);
+        }
+        SosSnapshot snapshot = game.snapshot();
+        long hash = game.getHash();
+        int moves = game.getMoveCount();
+        int p1 = game.getP1Points();
+
+        // Workers fork and play out the snapshot while the game goes on
+        Thread[] workers = new Thread[4];
+        long[] results = new long[workers.length];
+        for (int t = 0; t < workers.length; t++) {
+            int worker = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 20; i++) {
+                    Sos fork = snapshot.fork();
+                    results[worker] |= fork.getHash() != hash ? 1 : 0;
+                    while (!fork.gameIsOver()) {
+                        int move = new RandomPlayer(worker).chooseMove(fork);
+                        fork.playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (int i = 0; i < 300; i++) {
+            game.playMove(random.nextInt(40), random.nextInt(40), random.nextBoolean() ? S : O);
+            game.undoMove();
+            game.redoMove();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertArrayEquals(new long[workers.length], results);
+        assertEquals(hash, snapshot.getHash());
+        assertEquals(moves, snapshot.getMoveCount());
+        assertEquals(p1, snapshot.getP1Points());
+        assertNotEquals(moves, game.getMoveCount());
+        Sos fork = snapshot.fork();
+        assertEquals(hash, fork.getHash());
+        for (int i = 0; i < moves; i++) {
+            assertEquals(snapshot.getPackedMove(i), fork.getPackedMove(i));
+        }
+    }
+
+    @Test
+    public void testLatencyRecorderPercentiles() {
+        LatencyRecorder recorder = new LatencyRecorder("test");
+        for (int i = 0; i < 99; i++) {
+            recorder.record(100);
+        }
+        recorder.record(1_000_000);
+        assertEquals(100, recorder.getCount());
+        assertEquals((99 * 100 + 1_000_000) / 100.0, recorder.getMeanNanos(), 1e-9);
+        assertEquals(1_000_000, recorder.getMaxNanos());
+        // Percentiles are rounded up to the next power of two
+        assertEquals(128, recorder.getMedianNanos());
+        assertEquals(128, recorder.getP99Nanos());
+        assertEquals(1_000_000, recorder.getPercentileNanos(1));
+        recorder.reset();
+        assertEquals(0, recorder.getCount());
+        assertEquals(0, recorder.getMaxNanos());
+
+        // Metrics are off unless the sos.metrics property is set
+        assertFalse(Metrics.ENABLED);
+        long played = Metrics.PLAY_MOVE.getCount();
+        Sos game = new Sos();
+        game.reset(3);
+        assertTrue(game.playMove(0, 0));
+        assertEquals(played, Metrics.PLAY_MOVE.getCount());
+        assertEquals(6, Metrics.getRecorders().size());
+    }
 }
@@ -0,0 +1,280 @@
+package test;
+
+import main.*;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static main.Sos.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchTest {
+    @Test
+    public void testAlphaBetaTakesImmediateSOS() {
+        Sos game = new Sos(BIT_GRID);
+        game.reset(5);
+        game.playMove(0, 0, S); // Player 1
+        game.playMove(2, 0, S); // Player 2
+        game.playMove(4, 4, O); // Player 1
+
+        int move = new AlphaBetaPlayer(200).chooseMove(game);
+        assertEquals(1, Move.columnOf(move));
+        assertEquals(0, Move.rowOf(move));
+        assertEquals(O, Move.pieceOf(move));
+    }
+
+    @Test
+    public void testAlphaBetaLeavesGameUnchanged() {
+        Sos game = new Sos(BIT_GRID);
+        game.reset(4);
+        game.playMove(1, 1, O);
+        game.playMove(2, 2, S);
+
+        AlphaBetaPlayer player = new AlphaBetaPlayer(200);
+        player.chooseMove(game);
+        assertEquals(2, game.getMoveCount());
+        assertEquals(O, game.getCell(1, 1));
+        assertEquals(S, game.getCell(2, 2));
+        assertTrue(game.getCurrentPlayer());
+        assertTrue(player.getNodes() > 0);
+    }
+
+    @Test
+    public void testAlphaBetaSolvesSmallEndgame() {
+        Sos game = new Sos(BIT_GRID);
+        game.reset(3);
+        int[] cells = {S, O, S, O, EMPTY, O, S, O, EMPTY};
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != EMPTY) {
+                game.playMove(i % 3, i / 3, cells[i]);
+            }
+        }
+        boolean p1 = game.getCurrentPlayer();
+        int pointsBefore = p1 ? game.getP1Points() : game.getP2Points();
+        AlphaBetaPlayer player = new AlphaBetaPlayer(1000);
+        while (!game.gameIsOver()) {
+            int move = player.chooseMove(game);
+            assertEquals(9 - game.getMoveCount(), player.getCompletedDepth(),
+                    "The remaining cells should be searched to the end");
+            game.playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+            assertEquals(p1, game.getCurrentPlayer(), "Every remaining move should score");
+        }
+        int pointsAfter = p1 ? game.getP1Points() : game.getP2Points();
+        assertEquals(4, pointsAfter - pointsBefore);
+    }
+
+    @Test
+    public void testHashIgnoresMoveOrder() {
+        Sos first = new Sos(BIT_GRID);
+        first.reset(5);
+        first.playMove(0, 0, S);
+        first.playMove(3, 3, O);
+        first.playMove(1, 4, S);
+        first.playMove(4, 1, O);
+
+        Sos second = new Sos();
+        second.reset(5);
+        second.playMove(1, 4, S);
+        second.playMove(4, 1, O);
+        second.playMove(0, 0, S);
+        second.playMove(3, 3, O);
+
+        assertEquals(first.getHash(), second.getHash());
+        long hash = first.getHash();
+        first.playMove(2, 2, S);
+        assertNotEquals(hash, first.getHash());
+        first.undoMove();
+        assertEquals(hash, first.getHash());
+    }
+
+    @Test
+    public void testHashCoversTurnAndScore() {
+        Sos game = new Sos(BIT_GRID);
+        game.reset(5);
+        game.playMove(0, 0, S);
+        game.playMove(1, 0, O);
+        long hash = game.getHash();
+        long positionHash = game.getPositionHash();
+        game.playMove(2, 0, S); // Player 1 scores and keeps the turn
+
+        Sos other = new Sos(BIT_GRID);
+        other.reset(5);
+        other.playMove(0, 0, S);
+        other.playMove(2, 0, S);
+        other.playMove(1, 0, O); // Player 1 scores and keeps the turn
+        assertEquals(game.getHash(), other.getHash());
+        other.playMove(4, 4, S);
+        other.undoMove();
+        assertEquals(game.getHash(), other.getHash());
+
+        assertNotEquals(hash, game.getHash());
+        assertNotEquals(positionHash, game.getPositionHash());
+    }
+
+    @Test
+    public void testTranspositionTableStoreAndProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        int move = Move.pack(3, 7, S);
+        table.store(42, -17, 5, TranspositionTable.LOWER, move);
+        long entry = table.probe(42);
+        assertNotEquals(0, entry);
+        assertEquals(-17, TranspositionTable.valueOf(entry));
+        assertEquals(5, TranspositionTable.depthOf(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.boundOf(entry));
+        assertEquals(move, TranspositionTable.moveOf(entry));
+        assertEquals(0, table.probe(43));
+
+        table.clear();
+        assertEquals(0, table.probe(42));
+    }
+
+    @Test
+    public void testParallelSearchTakesImmediateSOS() {
+        Sos game = new Sos(BIT_GRID);
+        game.reset(6);
+        game.playMove(0, 5, S); // Player 1
+        game.playMove(0, 3, S); // Player 2
+        game.playMove(5, 0, O); // Player 1
+
+        ParallelSearch search = new ParallelSearch(2, 200);
+        int move = search.chooseMove(game);
+        search.shutdown();
+        assertEquals(0, Move.columnOf(move));
+        assertEquals(4, Move.rowOf(move));
+        assertEquals(O, Move.pieceOf(move));
+        assertEquals(3, game.getMoveCount());
+        assertTrue(search.getTotalNodesPerSecond() > 0);
+    }
+
+    @Test
+    public void testMctsTakesImmediateSOS() {
+        Sos game = new Sos(BIT_GRID);
+        game.reset(4);
+        game.playMove(0, 0, S); // Player 1
+        game.playMove(1, 1, O); // Player 2
+        game.playMove(3, 0, O); // Player 1
+
+        MctsPlayer player = new MctsPlayer(2, 0, 20000, 1);
+        int move = player.chooseMove(game);
+        player.shutdown();
+        assertEquals(Move.pack(2, 2, S), move);
+        assertEquals(20000, player.getPlayouts());
+        assertEquals(3, game.getMoveCount());
+    }
+
+    @Test
+    public void testEndgameTableSolvesSmallEndgame() throws IOException {
+        Path path = Files.createTempFile("endgame", ".sose");
+        try {
+            EndgameTable table = EndgameTable.generate(path, 3, 2);
+            Sos game = new Sos(BIT_GRID);
+            game.reset(3);
+            int[] cells = {S, O, S, O, EMPTY, O, S, O, EMPTY};
+            for (int i = 0; i < cells.length; i++) {
+                if (cells[i] != EMPTY) {
+                    game.playMove(i % 3, i / 3, cells[i]);
+                }
+            }
+            assertEquals(4, table.probe(game));
+            int move = table.bestMove(game);
+            int gain = game.getAdditionalSOS(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+            assertTrue(gain > 0);
+            game.playMove(Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move));
+            assertEquals(4, gain + table.probe(game));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testEndgameTableResumesGeneration() throws IOException {
+        Path path = Files.createTempFile("endgame", ".sose");
+        try {
+            int empty = EndgameTable.generate(path, 3, 1).probe(0);
+            // Pretend generation stopped after the first four layers
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.seek(12);
+                file.writeInt(4);
+            }
+            assertNull(EndgameTable.open(path));
+            assertEquals(empty, EndgameTable.generate(path, 3, 3).probe(0));
+            assertNotNull(EndgameTable.open(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testEndgamePlayerNeverLosesSmallBoards() throws IOException {
+        Path path = Files.createTempFile("endgame", ".sose");
+        try {
+            EndgamePlayer perfect = new EndgamePlayer(new GreedyPlayer(1), EndgameTable.generate(path, 3, 2));
+            for (int seed = 0; seed < 20; seed++) {
+                Sos first = SelfPlay.playGame(3, perfect, new RandomPlayer(seed));
+                assertTrue(first.getP1Points() >= first.getP2Points());
+                Sos second = SelfPlay.playGame(3, new GreedyPlayer(seed), perfect);
+                assertTrue(second.getP2Points() >= second.getP1Points());
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testOpeningBookFoldsSymmetricPositions() throws IOException {
+        Path path = Files.createTempFile("book", ".sosk");
+        try {
+            OpeningBook book = OpeningBook.build(path, 5, 3, 2000, 2, GreedyPlayer::new, 1, 1);
+            assertTrue(book.getEntryCount() > 0);
+            assertEquals(book.getEntryCount(), OpeningBook.open(path).getEntryCount());
+
+            // (1, 0) is on no axis of symmetry, so its mirror images have
+            // mirrored book moves
+            Sos game = new Sos(BIT_GRID);
+            game.reset(5);
+            game.playMove(1, 0, S);
+            int move = book.probe(game);
+            assertNotEquals(OpeningBook.NO_MOVE, move);
+            Sos mirrored = new Sos(BIT_GRID);
+            mirrored.reset(5);
+            mirrored.playMove(3, 0, S);
+            assertEquals(Move.pack(4 - Move.columnOf(move), Move.rowOf(move), Move.pieceOf(move)),
+                    book.probe(mirrored));
+            Sos transposed = new Sos(BIT_GRID);
+            transposed.reset(5);
+            transposed.playMove(0, 1, S);
+            assertEquals(Move.pack(Move.rowOf(move), Move.columnOf(move), Move.pieceOf(move)),
+                    book.probe(transposed));
+
+            // Past the book's depth and on other boards, nothing is found
+            game.playMove(4, 4, O);
+            game.playMove(4, 3, O);
+            assertEquals(OpeningBook.NO_MOVE, book.probe(game));
+            Sos other = new Sos(BIT_GRID);
+            other.reset(6);
+            assertEquals(OpeningBook.NO_MOVE, book.probe(other));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testBookPlayerPlaysBookMoves() throws IOException {
+        Path path = Files.createTempFile("book", ".sosk");
+        try {
+            OpeningBook book = OpeningBook.build(path, 4, 2, 500, 1, GreedyPlayer::new, 1, 2);
+            Sos game = new Sos(BIT_GRID);
+            game.reset(4);
+            BookPlayer player = new BookPlayer(g -> {
+                throw new AssertionError("The first move should come from the book");
+            }, book);
+            assertEquals(book.probe(game), player.chooseMove(game));
+            assertEquals(0, game.getMoveCount());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package test;
+
+import main.*;
+import org.junit.jupiter.api.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulationTest {
+    @Test
+    public void testSelfPlayIsDeterministic() {
+        SelfPlay single = new SelfPlay(GreedyPlayer::new, RandomPlayer::new, 3, 8, 99);
+        single.run(200, 1);
+        SelfPlay parallel = new SelfPlay(GreedyPlayer::new, RandomPlayer::new, 3, 8, 99);
+        parallel.run(200, 4);
+
+        assertEquals(200, single.getGames());
+        assertEquals(200, single.getP1Wins() + single.getP2Wins() + single.getTies());
+        assertEquals(single.getP1Wins(), parallel.getP1Wins());
+        assertEquals(single.getP2Wins(), parallel.getP2Wins());
+        assertEquals(single.getTotalPoints(), parallel.getTotalPoints());
+        assertEquals(single.getTotalMoves(), parallel.getTotalMoves());
+    }
+
+    @Test
+    public void testAlphaBetaSelfPlayIsDeterministic() {
+        SelfPlay single = new SelfPlay(SelfPlay.strategy("alphabeta"), RandomPlayer::new, 3, 4, 17);
+        single.run(12, 1);
+        SelfPlay parallel = new SelfPlay(SelfPlay.strategy("alphabeta"), RandomPlayer::new, 3, 4, 17);
+        parallel.run(12, 3);
+
+        assertEquals(single.getP1Wins(), parallel.getP1Wins());
+        assertEquals(single.getP2Wins(), parallel.getP2Wins());
+        assertEquals(single.getTotalPoints(), parallel.getTotalPoints());
+        assertEquals(single.getTotalMoves(), parallel.getTotalMoves());
+    }
+
+    @Test
+    public void testGreedyBeatsRandom() {
+        SelfPlay selfPlay = new SelfPlay(GreedyPlayer::new, RandomPlayer::new, 5, 10, 7);
+        selfPlay.run(100, 2);
+        assertTrue(selfPlay.getP1Wins() > selfPlay.getP2Wins());
+    }
+
+    @Test
+    public void testServerSeatsTwoPlayers() throws IOException {
+        try (SosServer server = new SosServer(0)) {
+            server.start();
+            try (Socket p1 = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                 Socket p2 = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                BufferedReader in1 = new BufferedReader(new InputStreamReader(p1.getInputStream()));
+                PrintWriter out1 = new PrintWriter(p1.getOutputStream(), true);
+                BufferedReader in2 = new BufferedReader(new InputStreamReader(p2.getInputStream()));
+                PrintWriter out2 = new PrintWriter(p2.getOutputStream(), true);
+
+                out1.println("CREATE 3");
+                String id = in1.readLine().substring(3);
+                out1.println("JOIN " + id);
+                assertEquals("ERR already in game " + id, in1.readLine());
+                out2.println("JOIN " + id);
+                assertEquals("OK " + id + " 2", in2.readLine());
+                out2.println("MOVE 0 0 S");
+                assertEquals("ERR not your turn", in2.readLine());
+                out1.println("MOVE 0 0 S");
+                assertEquals("OK 0 0", in1.readLine());
+                out2.println("MOVE 0 0 O");
+                assertEquals("ERR cannot play there", in2.readLine());
+                out2.println("MOVE 1 0 O");
+                assertEquals("OK 0 0", in2.readLine());
+                out1.println("MOVE 2 0 S");
+                assertEquals("OK 1 0", in1.readLine());
+                out1.println("STATE");
+                assertEquals("STATE " + id + " 3 1 0 1 0 SOS......", in1.readLine());
+                // Only the player who made a move can take it back
+                out2.println("UNDO");
+                assertEquals("ERR not your move", in2.readLine());
+                out1.println("UNDO");
+                assertEquals("OK", in1.readLine());
+                out2.println("STATE");
+                assertEquals("STATE " + id + " 3 0 0 1 0 SO.......", in2.readLine());
+                assertEquals(1, server.getSessionCount());
+
+                // Player 1 leaves; Player 2 plays alone until the seat is filled
+                out1.println("CREATE 3");
+                assertTrue(in1.readLine().startsWith("OK "));
+                out2.println("MOVE 2 0 S");
+                assertEquals("OK 1 0", in2.readLine());
+                assertEquals(2, server.getSessionCount());
+                out1.println("JOIN " + id);
+                assertEquals("OK " + id + " 1", in1.readLine());
+                assertEquals(1, server.getSessionCount());
+                out2.println("MOVE 0 1 S");
+                assertEquals("ERR not your turn", in2.readLine());
+                out1.println("MOVE 0 1 S");
+                assertEquals("OK 0 0", in1.readLine());
+                out1.println("MOVE 1 1 O");
+                assertEquals("ERR not your turn", in1.readLine());
+                out2.println("MOVE 1 1 O");
+                assertEquals("OK 0 0", in2.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void testServerUnderLoad() throws IOException {
+        try (SosServer server = new SosServer(0)) {
+            server.start();
+            SosLoadTest load = new SosLoadTest(server.getPort(), 200, 5, 3);
+            load.run();
+            assertEquals(0, load.getFailures());
+            assertEquals(200 * 25, load.getMoves());
+            assertEquals(200 * 25, server.getMovesHandled());
+        }
+    }
+
+    @Test
+    public void testTournamentRatesGreedyAboveRandom() throws IOException {
+        Path results = Files.createTempFile("tournament", ".csv");
+        try {
+            Tournament tournament = new Tournament(List.of("greedy", "random", "random2"),
+                    List.of(GreedyPlayer::new, RandomPlayer::new, RandomPlayer::new),
+                    Tournament.ROUND_ROBIN, 3, 8, 5, results);
+            tournament.run(1, 4);
+
+            // Three pairings, six board lengths, each player moving first once
+            assertEquals(3 * 6 * 2, tournament.getGames());
+            assertEquals(tournament.getGames(), Files.readAllLines(results).size());
+            double[] ratings = tournament.getRatings();
+            double[] errors = tournament.getRatingErrors();
+            assertTrue(ratings[0] > ratings[1] && ratings[0] > ratings[2]);
+            assertEquals(0, ratings[0] + ratings[1] + ratings[2], 1e-6);
+            assertTrue(errors[0] > 0);
+        } finally {
+            Files.deleteIfExists(results);
+        }
+    }
+
+    @Test
+    public void testSwissByesRotateWithOddPlayers() throws IOException {
+        Path results = Files.createTempFile("tournament", ".csv");
+        try {
+            List<String> names = List.of("a", "b", "c", "d", "e");
+            List<java.util.function.LongFunction<Strategy>> players = List.of(GreedyPlayer::new,
+                    GreedyPlayer::new, GreedyPlayer::new, RandomPlayer::new, RandomPlayer::new);
+            Tournament swiss = new Tournament(names, players, Tournament.SWISS, 3, 4, 2, results);
+            swiss.run(5, 2);
+            // Two pairings of 2 lengths times 2 colors in each round
+            assertEquals(5 * 2 * 2 * 2, swiss.getGames());
+            for (int player = 0; player < names.size(); player++) {
+                // No one sits out twice before everyone has sat out once
+                assertEquals(1, swiss.getByes(player), names.get(player));
+            }
+
+            // The byes are credited the same way after resuming
+            Tournament resumed = new Tournament(names, players, Tournament.SWISS, 3, 4, 2, results);
+            for (int player = 0; player < names.size(); player++) {
+                assertEquals(1, resumed.getByes(player));
+                assertEquals(swiss.getScore(player), resumed.getScore(player), 1e-9);
+            }
+            double total = 0;
+            for (int player = 0; player < names.size(); player++) {
+                total += swiss.getScore(player);
+            }
+            // Every game is worth a point, and every bye a round of wins
+            assertEquals(swiss.getGames() + 5 * 2 * 2, total, 1e-9);
+        } finally {
+            Files.deleteIfExists(results);
+        }
+    }
+
+    @Test
+    public void testTournamentResumesFromResults() throws IOException {
+        Path results = Files.createTempFile("tournament", ".csv");
+        try {
+            List<String> names = List.of("a", "b", "c", "d", "e");
+            List<java.util.function.LongFunction<Strategy>> players = List.of(GreedyPlayer::new,
+                    GreedyPlayer::new, RandomPlayer::new, RandomPlayer::new, RandomPlayer::new);
+            Tournament first = new Tournament(names, players, Tournament.SWISS, 3, 5, 1, results);
+            first.run(1, 2);
+            // Two pairings and a bye in each round
+            assertEquals(2 * 3 * 2, first.getGames());
+            // A line cut short by a killed run is skipped
+            Files.writeString(results, "1,a,b", java.nio.file.StandardOpenOption.APPEND);
+
+            Tournament resumed = new Tournament(names, players, Tournament.SWISS, 3, 5, 1, results);
+            assertEquals(first.getGames(), resumed.getGames());
+            resumed.run(2, 2);
+            assertEquals(2 * 2 * 3 * 2, resumed.getGames());
+            assertArrayEquals(resumed.getRatings(),
+                    new Tournament(names, players, Tournament.SWISS, 3, 5, 1, results).getRatings(), 1e-9);
+        } finally {
+            Files.deleteIfExists(results);
+        }
+    }
+
+    @Test
+    public void testArchiveReplaysSelfPlay() throws IOException {
+        Path path = Files.createTempFile("games", ".sosa");
+        Files.delete(path);
+        try {
+            SelfPlay selfPlay = new SelfPlay(GreedyPlayer::new, RandomPlayer::new, 3, 12, 5);
+            try (GameArchive archive = new GameArchive(path)) {
+                selfPlay.setArchive(archive);
+                selfPlay.run(300, 4);
+                assertEquals(300, archive.getGameCount());
+            }
+            ArchiveStatistics statistics = new ArchiveStatistics(true);
+            statistics.scan(path);
+            assertEquals(0, statistics.getRejected());
+            ArchiveStatistics trusted = new ArchiveStatistics();
+            trusted.scan(path);
+            long games = 0;
+            for (int len = 3; len <= 12; len++) {
+                games += statistics.getGames(len);
+                assertEquals(statistics.getFirstPlayerAdvantage(len), trusted.getFirstPlayerAdvantage(len));
+            }
+            assertEquals(300, games);
+
+            long points = 0;
+            long moves = 0;
+            Sos game = new Sos();
+            try (GameArchiveReader reader = new GameArchiveReader(path)) {
+                while (reader.next()) {
+                    assertTrue(reader.replay(game));
+                    assertEquals(reader.getMoveCount(), game.getMoveCount());
+                    for (int i = 0; i < game.getMoveCount(); i++) {
+                        assertEquals(game.getPackedMove(i), reader.getMove(i));
+                    }
+                    points += game.getP1Points() + game.getP2Points();
+                    moves += game.getMoveCount();
+                }
+            }
+            assertEquals(selfPlay.getTotalPoints(), points);
+            assertEquals(selfPlay.getTotalMoves(), moves);
+
+            // A record torn by a crash is cut off before new ones are appended
+            long size = Files.size(path);
+            Files.write(path, new byte[]{12, 40, 1, 2, 3}, java.nio.file.StandardOpenOption.APPEND);
+            try (GameArchive archive = new GameArchive(path)) {
+                assertEquals(300, archive.getGameCount());
+                archive.append(game, 1);
+            }
+            assertTrue(Files.size(path) > size);
+            statistics = new ArchiveStatistics(true);
+            statistics.scan(path);
+            assertEquals(0, statistics.getRejected());
+            long appended = 0;
+            for (int len = 3; len <= 12; len++) {
+                appended += statistics.getGames(len);
+            }
+            assertEquals(games + 1, appended);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}